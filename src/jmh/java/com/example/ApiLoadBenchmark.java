@@ -0,0 +1,74 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+
+import spark.Spark;
+
+/**
+ * Load test of the REST API on platform threads versus virtual threads
+ *
+ * Many client threads hit the database-backed routes at once, so requests
+ * queue for server threads and database permits. Each mode runs in its own
+ * fork because Spark keeps one server per JVM. SampleTime reports the latency
+ * percentiles; status codes are returned so 503s are not optimized away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(128)
+@Fork(1)
+public class ApiLoadBenchmark {
+
+    private static final String BASE_URL = "http://localhost:4567";
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    ApiServer.ExecutionMode mode;
+
+    private Path dir;
+    private HttpClient client;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkSupport.openDatabase();
+        TaskRepository.addTasks(BenchmarkSupport.tasks(10_000));
+        TaskRepository.enableWritePipeline(WritePipeline.DEFAULT_BATCH_SIZE,
+                WritePipeline.DEFAULT_LINGER_MILLIS, WritePipeline.DEFAULT_QUEUE_DEPTH);
+        new ApiServer(mode, ApiServer.DEFAULT_DB_CONCURRENCY);
+        Spark.awaitInitialization();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Spark.stop();
+        Spark.awaitStop();
+        BenchmarkSupport.closeDatabase(dir);
+    }
+
+    @Benchmark
+    public int getPage() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + "/tasks?completed=false&limit=50")).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int addTask() throws Exception {
+        long n = counter.incrementAndGet();
+        String body = "{\"name\":\"load-" + n + "\",\"dueDate\":\"" + BenchmarkSupport.dueDate((int) (n % 1000)) + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + "/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
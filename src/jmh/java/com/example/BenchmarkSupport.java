@@ -0,0 +1,70 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared setup for the JMH benchmarks: throwaway databases and generated tasks
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Points TaskRepository at a fresh database file in a temporary directory
+     * and quiets logging so it does not skew the measurements
+     *
+     * @return the temporary directory holding the database
+     * @throws IOException if the directory cannot be created
+     */
+    static Path openDatabase() throws IOException {
+        Logger.setLevel(Logger.Level.WARN);
+        Path dir = Files.createTempDirectory("taskmanager-bench");
+        TaskRepository.setDatabase("jdbc:sqlite:" + dir.resolve("bench.db"));
+        return dir;
+    }
+
+    /**
+     * Closes the repository and deletes the temporary database
+     *
+     * @param dir the directory returned by openDatabase()
+     * @throws IOException if the files cannot be deleted
+     */
+    static void closeDatabase(Path dir) throws IOException {
+        TaskRepository.shutdown();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * Generates tasks named "task-0" to "task-(count-1)" with spread out due dates
+     *
+     * @param count number of tasks
+     * @return the tasks
+     */
+    static List<TaskItem> tasks(int count) {
+        List<TaskItem> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new TaskItem("task-" + i, dueDate(i), i % 3 == 0));
+        }
+        return tasks;
+    }
+
+    /**
+     * Builds a valid MM-dd-yyyy due date that varies with i
+     *
+     * @param i any non-negative number
+     * @return the due date
+     */
+    static String dueDate(int i) {
+        return String.format("%02d-%02d-%04d", i % 12 + 1, i % 28 + 1, 2025 + i % 5);
+    }
+}
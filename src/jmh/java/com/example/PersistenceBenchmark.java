@@ -0,0 +1,72 @@
+package com.example;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares write throughput of the SQLite and journal persistence engines
+ *
+ * Four writer threads add and update tasks. SQLITE writes every statement in
+ * its own transaction, SQLITE_PIPELINED group-commits through the write
+ * pipeline, JOURNAL forces the journal every DEFAULT_SYNC_EVERY writes, and
+ * JOURNAL_SYNC_EACH forces it after every write like a SQLite commit does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({ "SQLITE", "SQLITE_PIPELINED", "JOURNAL", "JOURNAL_SYNC_EACH" })
+    String engine;
+
+    private static final int SIZE = 10_000;
+
+    private Path dir;
+    private TaskPersistence persistence;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkSupport.openDatabase();
+        persistence = switch (engine) {
+            case "SQLITE" -> SqlitePersistence.INSTANCE;
+            case "SQLITE_PIPELINED" -> {
+                TaskRepository.enableWritePipeline(WritePipeline.DEFAULT_BATCH_SIZE,
+                        WritePipeline.DEFAULT_LINGER_MILLIS, WritePipeline.DEFAULT_QUEUE_DEPTH);
+                yield SqlitePersistence.INSTANCE;
+            }
+            case "JOURNAL" -> new JournalPersistence(dir, JournalPersistence.DEFAULT_SYNC_EVERY,
+                    JournalPersistence.DEFAULT_SNAPSHOT_BYTES);
+            case "JOURNAL_SYNC_EACH" -> new JournalPersistence(dir, 1, JournalPersistence.DEFAULT_SNAPSHOT_BYTES);
+            default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+        };
+        persistence.addTasks(BenchmarkSupport.tasks(SIZE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (persistence instanceof JournalPersistence journal) {
+            journal.close();
+        }
+        BenchmarkSupport.closeDatabase(dir);
+    }
+
+    @Benchmark
+    public int addTask() {
+        long n = counter.getAndIncrement();
+        return persistence.addTask(new TaskItem("added-" + n, BenchmarkSupport.dueDate((int) (n % 1000))));
+    }
+
+    @Benchmark
+    public int updateTask() {
+        long n = counter.getAndIncrement();
+        return persistence.updateTask(new TaskItem("task-" + (n % SIZE), BenchmarkSupport.dueDate(0), n % 2 == 0));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the Gson serialization ApiServer does for task listings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({ "1000", "100000" })
+    int size;
+
+    private final Gson gson = new Gson();
+    private List<TaskItem> tasks;
+    private String taskJson;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tasks = BenchmarkSupport.tasks(size);
+        taskJson = gson.toJson(tasks.get(0));
+    }
+
+    @Benchmark
+    public String toJson_taskList() {
+        return gson.toJson(tasks);
+    }
+
+    @Benchmark
+    public TaskItem fromJson_task() {
+        return gson.fromJson(taskJson, TaskItem.class);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks TaskItem construction, due date validation, and the trusted
+ * factory used for database rows
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskItemBenchmark {
+
+    private final TaskItem task = new TaskItem("Finish Homework", "09-02-2025");
+
+    @Benchmark
+    public TaskItem construct() {
+        return new TaskItem("Finish Homework", "09-02-2025");
+    }
+
+    @Benchmark
+    public TaskItem constructWithCompletion() {
+        return new TaskItem("Finish Homework", "09-02-2025", true);
+    }
+
+    @Benchmark
+    public Object constructInvalidDate() {
+        try {
+            return new TaskItem("Finish Homework", "2025-09-02");
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public TaskItem ofTrusted() {
+        return TaskItem.ofTrusted("Finish Homework", 20_333, true, false);
+    }
+
+    @Benchmark
+    public String getDueDate() {
+        return task.getDueDate();
+    }
+
+    @Benchmark
+    public LocalDate getDueLocalDate() {
+        return task.getDueLocalDate();
+    }
+}
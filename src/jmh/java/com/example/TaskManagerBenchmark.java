@@ -0,0 +1,71 @@
+package com.example;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks TaskManager lookups, searches, and inserts at different task
+ * counts, for both storage engines
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskManagerBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int size;
+
+    @Param({ "OBJECTS", "COLUMNAR" })
+    TaskManager.Storage storage;
+
+    private Path dir;
+    private TaskManager manager;
+    private String existingName;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkSupport.openDatabase();
+        TaskRepository.addTasks(BenchmarkSupport.tasks(size));
+        manager = new TaskManager(storage);
+        existingName = "TASK-" + (size - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSupport.closeDatabase(dir);
+    }
+
+    @Benchmark
+    public boolean checkName_hit() {
+        return manager.checkName(existingName);
+    }
+
+    @Benchmark
+    public boolean checkName_miss() {
+        return manager.checkName("no-such-task");
+    }
+
+    /** A short prefix that matches most names: the first page must not scan them all */
+    @Benchmark
+    public int search_prefix() {
+        return manager.search("task-1", 20).size();
+    }
+
+    @Benchmark
+    public int search_miss() {
+        return manager.search("zzz", 20).size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean addTask() {
+        long n = counter++;
+        return manager.addTask(new TaskItem("added-" + n, BenchmarkSupport.dueDate((int) (n % 1000))));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the TaskRepository calls made on every API request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskRepositoryBenchmark {
+
+    @Param({ "1000", "100000" })
+    int size;
+
+    private Path dir;
+    private TaskItem existing;
+    private TaskItem missing;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkSupport.openDatabase();
+        TaskRepository.addTasks(BenchmarkSupport.tasks(size));
+        existing = new TaskItem("task-" + (size / 2), BenchmarkSupport.dueDate(size / 2));
+        missing = new TaskItem("no-such-task", BenchmarkSupport.dueDate(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSupport.closeDatabase(dir);
+    }
+
+    @Benchmark
+    public int addTask() {
+        long n = counter++;
+        return TaskRepository.addTask(new TaskItem("added-" + n, BenchmarkSupport.dueDate((int) (n % 1000))));
+    }
+
+    @Benchmark
+    public boolean containsTask_hit() {
+        return TaskRepository.containsTask(existing);
+    }
+
+    @Benchmark
+    public boolean containsTask_miss() {
+        return TaskRepository.containsTask(missing);
+    }
+
+    @Benchmark
+    public List<TaskItem> getAllTasks() {
+        return TaskRepository.getAllTasks();
+    }
+}
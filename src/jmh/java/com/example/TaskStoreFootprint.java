@@ -0,0 +1,68 @@
+package com.example;
+
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Measures how much heap the in-memory task storage engines retain
+ *
+ * JMH measures time, not retained memory, so this is a plain program: it
+ * builds each engine from the same tasks, forces garbage collection before
+ * and after, and reports the difference per task. Run it with
+ * mvn -P benchmark compile exec:exec@footprint -Dfootprint.size=1000000
+ */
+public final class TaskStoreFootprint {
+
+    private TaskStoreFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Path dir = BenchmarkSupport.openDatabase();
+        try {
+            TaskRepository.addTasks(BenchmarkSupport.tasks(size));
+
+            report("ArrayList<TaskItem>", size, () -> BenchmarkSupport.tasks(size));
+            report("TaskManager OBJECTS", size, () -> new TaskManager(TaskManager.Storage.OBJECTS));
+            report("TaskManager COLUMNAR", size, () -> new TaskManager(TaskManager.Storage.COLUMNAR));
+
+            ColumnarTaskStore columns = ColumnarTaskStore.of(TaskRepository.getAllTasks());
+            System.out.printf("%-22s %,12d bytes in arrays  %6.1f bytes/task%n",
+                    "ColumnarTaskStore", columns.getFootprintBytes(), (double) columns.getFootprintBytes() / size);
+        } finally {
+            BenchmarkSupport.closeDatabase(dir);
+        }
+    }
+
+    /**
+     * Builds one engine and prints the heap it retains
+     *
+     * @param label   the engine name
+     * @param size    number of tasks
+     * @param builder builds the engine
+     */
+    private static void report(String label, int size, Supplier<Object> builder) throws InterruptedException {
+        long before = usedHeapAfterGc();
+        Object held = builder.get();
+        long after = usedHeapAfterGc();
+        Reference.reachabilityFence(held);
+
+        long retained = after - before;
+        System.out.printf("%-22s %,12d bytes retained  %6.1f bytes/task%n", label, retained, (double) retained / size);
+        if (held instanceof List<?> list && list.size() != size) {
+            throw new IllegalStateException("Expected " + size + " tasks");
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the encodings GET /tasks can answer with: CPU to encode and
+ * decode a task list, and bytes on the wire, which setup prints once per
+ * format since they do not change between runs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({ "JSON", "JSON_GZIP", "JSON_DEFLATE", "BINARY", "BINARY_GZIP", "BINARY_DEFLATE" })
+    String format;
+
+    @Param({ "10000" })
+    int size;
+
+    private static final Type TASK_LIST = new TypeToken<List<TaskItem>>() {
+    }.getType();
+
+    private final Gson gson = new Gson();
+    private List<TaskItem> tasks;
+    private boolean binary;
+    private WireFormat.Coding coding;
+    private byte[] wire;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tasks = BenchmarkSupport.tasks(size);
+        // Listed tasks are stored, so they carry row ids
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).assignId(i + 1);
+        }
+        binary = format.startsWith("BINARY");
+        coding = format.endsWith("GZIP") ? WireFormat.Coding.GZIP
+                : format.endsWith("DEFLATE") ? WireFormat.Coding.DEFLATE
+                : WireFormat.Coding.IDENTITY;
+        wire = encode();
+        System.out.printf("%n%s: %d task(s) in %d bytes on the wire, %.1f bytes per task%n",
+                format, size, wire.length, (double) wire.length / size);
+    }
+
+    /** Encodes and compresses the list the way ApiServer.sendBody() does */
+    @Benchmark
+    public byte[] encode() {
+        byte[] body = binary
+                ? WireFormat.encode(tasks)
+                : gson.toJson(tasks).getBytes(StandardCharsets.UTF_8);
+        return WireFormat.compress(body, coding);
+    }
+
+    /** Decompresses and decodes the list the way a client would */
+    @Benchmark
+    public List<TaskItem> decode() throws IOException {
+        InputStream in = new ByteArrayInputStream(wire);
+        if (coding == WireFormat.Coding.GZIP) {
+            in = new GZIPInputStream(in);
+        } else if (coding == WireFormat.Coding.DEFLATE) {
+            in = new InflaterInputStream(in);
+        }
+        if (binary) {
+            return WireFormat.decode(in.readAllBytes());
+        }
+        return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), TASK_LIST);
+    }
+}
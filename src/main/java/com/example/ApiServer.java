@@ -3,22 +3,138 @@ package com.example;
 //REST API
 import static spark.Spark.*;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 // OTHER
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * REST API server for Task Manager using Spark Java with exception handling.
+ *
+ * Handlers run either on Jetty's platform thread pool or on virtual threads
+ * (see ExecutionMode). Either way, routes that reach the database first take a
+ * permit from a semaphore, so a burst of requests queues in front of SQLite
+ * instead of piling up inside it; a request that waits too long gets 503.
  */
 public class ApiServer {
 
+    /** How /tasks handlers are run */
+    public enum ExecutionMode {
+        /** Spark's default Jetty pool of platform threads */
+        PLATFORM,
+        /** One virtual thread per request, see VirtualThreadPool */
+        VIRTUAL;
+
+        /**
+         * Reads the mode from the 'tasks.threads' system property
+         *
+         * @return the configured mode; PLATFORM if the property is not set
+         * @throws IllegalArgumentException if the property is not platform or virtual
+         */
+        public static ExecutionMode fromSystemProperty() throws IllegalArgumentException {
+            return valueOf(System.getProperty("tasks.threads", "platform").toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /** Response header of GET /tasks carrying the change sequence the list is current to */
+    private static final String CHANGE_SEQ_HEADER = "X-Change-Seq";
+
+    /** Response header of a binary GET /tasks page carrying the cursor of the next page */
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /** Maximum number of changes returned or written at once */
+    private static final int MAX_CHANGES = 500;
+
+    /** Default and maximum seconds GET /tasks/changes waits for a change */
+    private static final int DEFAULT_CHANGES_WAIT_SECONDS = 25;
+    private static final int MAX_CHANGES_WAIT_SECONDS = 60;
+
+    /** How often an idle event stream sends a comment to keep the connection open */
+    private static final long SSE_HEARTBEAT_MILLIS = 15_000;
+
+    /** Number of tasks GET /tasks/due/next returns when n is not given */
+    private static final int DEFAULT_NEXT_DUE = 10;
+
+    /** Number of tasks GET /tasks/search returns when limit is not given */
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+
+    /** Default number of requests allowed on the database path at once */
+    public static final int DEFAULT_DB_CONCURRENCY = 16;
+
+    /** How long a request waits for a database permit before getting 503 */
+    private static final long DB_PERMIT_TIMEOUT_MILLIS = 1_000;
+
+    /** Content type of GET /metrics, the Prometheus text format */
+    private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Platform threads kept for Jetty's acceptors and selectors in VIRTUAL mode */
+    private static final int MAX_PLATFORM_THREADS = 16;
+
     private static final Gson gson = new Gson();
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
+
+    /** Query parameters that switch GET /tasks to a paged, filtered listing */
+    private static final Set<String> PAGE_PARAMS = Set.of(
+            "limit", "cursor", "completed", "dueBefore", "dueAfter", "namePrefix");
+
+    /** Sets this process's ETags apart from an earlier run's, whose versions also started at 0 */
+    private final String etagEpoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /** Encoded GET /tasks bodies of the latest task list version */
+    private final ResponseCache jsonListing = new ResponseCache();
+    private final ResponseCache binaryListing = new ResponseCache();
+
+    private final Semaphore dbPermits;
+    private final AtomicLong rejected = new AtomicLong();
 
+    /**
+     * Starts the server in the mode given by the 'tasks.threads' system property
+     */
     public ApiServer() {
+        this(ExecutionMode.fromSystemProperty(), DEFAULT_DB_CONCURRENCY);
+    }
+
+    /**
+     * Starts the server
+     *
+     * @param mode          - Whether handlers run on platform or virtual threads
+     * @param dbConcurrency - The maximum number of requests on the database path at once
+     */
+    public ApiServer(ExecutionMode mode, int dbConcurrency) {
         System.out.println("Starting REST API");
+        dbPermits = new Semaphore(dbConcurrency);
+
+        if (mode == ExecutionMode.VIRTUAL) {
+            EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                    new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool(MAX_PLATFORM_THREADS)));
+        }
         port(4567);
 
-        Logger.info("Starting Task Manager REST API");
+        Logger.info("Starting Task Manager REST API (%s threads, %d database permits)", mode, dbConcurrency);
+
+        registerMetrics();
 
         // Global exception handler
         exception(Exception.class, (e, req, res) -> {
@@ -27,22 +143,82 @@ public class ApiServer {
             res.body(gson.toJson("Internal server error"));
         });
 
-        // GET all tasks
-        get("/tasks", (req, res) -> {
+        // GET all tasks, served from the in-memory task cache, or one page of
+        // tasks when any paging/filter parameter is given. stream=true streams
+        // every matching row straight from the database instead.
+        get("/tasks", timed("GET /tasks", (req, res) -> {
             res.type("application/json");
 
             try {
-                List<TaskItem> tasks = TaskRepository.getAllTasks();
+                if ("true".equalsIgnoreCase(req.queryParams("stream"))) {
+                    TaskQuery query;
+                    try {
+                        query = parseQuery(req);
+                    } catch (IllegalArgumentException e) {
+                        res.status(400);
+                        return gson.toJson(e.getMessage());
+                    }
+                    return withDatabasePermit(req, res, (rq, rs) -> {
+                        streamTasks(query, rq, rs);
+                        return "";
+                    });
+                }
+
+                if (isPageRequest(req)) {
+                    TaskQuery query;
+                    try {
+                        query = parseQuery(req);
+                    } catch (IllegalArgumentException e) {
+                        res.status(400);
+                        return gson.toJson(e.getMessage());
+                    }
+                    return withDatabasePermit(req, res, (rq, rs) -> {
+                        rs.status(200);
+                        TaskPage page = App.manager.getPersistence().getTasksPage(query);
+                        if (WireFormat.acceptsBinary(rq.headers("Accept"))) {
+                            if (page.getNextCursor() != null) {
+                                rs.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+                            }
+                            return sendTasks(rq, rs, page.getTasks());
+                        }
+                        return sendBody(rq, rs, gson.toJson(page).getBytes(StandardCharsets.UTF_8));
+                    });
+                }
+
+                // Read the sequence first, then the version, then the tasks: each is
+                // at least as new as the one before, so no change is missed
+                long seq = App.manager.getChanges().getLastSequence();
+                long version = App.manager.getVersion();
+                res.header(CHANGE_SEQ_HEADER, Long.toString(seq));
+
+                boolean binary = WireFormat.acceptsBinary(req.headers("Accept"));
+                if (version >= 0) {
+                    String etag = "W/\"" + etagEpoch + "-" + version + (binary ? "-bin" + WireFormat.FORMAT_VERSION : "-json") + "\"";
+                    res.header("ETag", etag);
+                    res.raw().setDateHeader("Last-Modified", App.manager.getLastModified());
+                    if (notModified(req, etag, App.manager.getLastModified())) {
+                        res.header("Vary", "Accept, Accept-Encoding");
+                        res.status(304);
+                        return "";
+                    }
+                }
+
                 res.status(200);
-                return gson.toJson(tasks);
+                if (binary) {
+                    res.type(WireFormat.BINARY_CONTENT_TYPE);
+                    return sendBody(req, res, binaryListing.get(version,
+                            () -> WireFormat.encode(App.manager.getTaskList())));
+                }
+                return sendBody(req, res, jsonListing.get(version,
+                        () -> gson.toJson(App.manager.getTaskList()).getBytes(StandardCharsets.UTF_8)));
             } catch (Exception e) {
                 res.status(500);
                 return gson.toJson("Error retrieving tasks: " + e.getMessage());
             }
-        });
+        }));
 
         // POST a new task
-        post("/tasks", (req, res) -> {
+        post("/tasks", timed("POST /tasks", limited((req, res) -> {
             res.type("application/json");
 
             try {
@@ -52,73 +228,873 @@ public class ApiServer {
                     res.status(400);
                     return gson.toJson("Task name is required");
                 }
-                if (TaskRepository.containsTask(task)) {
+                if (App.manager.checkName(task.getName())) {
                     res.status(400);
                     return gson.toJson("Task already exists");
                 }
 
-                Logger.info("POST Body: " + req.body());
+                Logger.info("POST Body: %s", req.body());
 
-                App.manager.addTask(task);
+                if (!App.manager.addTask(task)) {
+                    res.status(400);
+                    return gson.toJson("Task could not be added");
+                }
 
                 res.status(201);
                 return gson.toJson(task);
+            } catch (JsonParseException e) {
+                res.status(400);
+                return gson.toJson("Invalid task: " + e.getMessage());
             } catch (Exception e) {
                 res.status(500);
                 return gson.toJson("Error adding task: " + e.getMessage());
             }
-        });
+        })));
 
         // PUT update a task
-        put("/tasks", (req, res) -> {
+        put("/tasks", timed("PUT /tasks", limited((req, res) -> {
             res.type("application/json");
             try {
                 TaskItem task = gson.fromJson(req.body(), TaskItem.class);
 
-                if (!TaskRepository.containsTask(task)) {
+                if (!App.manager.checkName(task.getName())) {
                     res.status(404);
                     return gson.toJson("Task not found");
                 }
+                long ifMatch = ifMatchVersion(req);
+                if (ifMatch < 0) {
+                    return preconditionFailed(res);
+                }
+                if (ifMatch > 0) {
+                    task.assignVersion(ifMatch);
+                }
 
-                Logger.info("POST Body: " + req.body());
+                Logger.info("POST Body: %s", req.body());
 
                 App.manager.updateTask(task);
 
+                TaskItem updated = App.manager.getTask(task.getName());
+                if (updated == null) {
+                    res.status(404);
+                    return gson.toJson("Task not found");
+                }
+                res.header("ETag", etag(updated.getVersion()));
                 res.status(200);
-                return gson.toJson(task);
+                return gson.toJson(updated);
+            } catch (JsonParseException e) {
+                res.status(400);
+                return gson.toJson("Invalid task: " + e.getMessage());
+            } catch (VersionConflictException e) {
+                return conflict(req, res, e);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
             } catch (Exception e) {
                 res.status(500);
                 return gson.toJson("Error updating task: " + e.getMessage());
             }
-        });
+        })));
 
         // DELETE a task
-        delete("/tasks", (req, res) -> {
+        delete("/tasks", timed("DELETE /tasks", limited((req, res) -> {
             res.type("application/json");
             try {
                 TaskItem task = gson.fromJson(req.body(), TaskItem.class);
 
-                if (!TaskRepository.containsTask(task)) {
+                if (!App.manager.checkName(task.getName())) {
                     res.status(404);
                     return gson.toJson("Task not found");
                 }
 
-                Logger.info("POST Body: " + req.body());
-                
+                Logger.info("POST Body: %s", req.body());
+
                 App.manager.removeTask(task);
 
                 res.status(200);
                 return gson.toJson(task);
+            } catch (JsonParseException e) {
+                res.status(400);
+                return gson.toJson("Invalid task: " + e.getMessage());
             } catch (Exception e) {
                 res.status(500);
                 return gson.toJson("Error deleting task: " + e.getMessage());
             }
+        })));
+
+        // POST many tasks at once: {"add": [...], "update": [...], "remove": [...]}
+        post("/tasks/batch", timed("POST /tasks/batch", limited((req, res) -> {
+            res.type("application/json");
+            try {
+                BatchRequest batch = gson.fromJson(req.body(), BatchRequest.class);
+                if (batch == null) {
+                    res.status(400);
+                    return gson.toJson("Batch body is required");
+                }
+
+                Logger.info("Batch request: %d task(s)", batch.size());
+
+                BatchResult result = new BatchResult();
+                result.added = batch.add == null ? 0 : App.manager.addTasks(batch.add);
+                result.updated = batch.update == null ? 0 : App.manager.updateTasks(batch.update);
+                result.removed = batch.remove == null ? 0 : App.manager.removeTasks(batch.remove);
+
+                res.status(200);
+                return gson.toJson(result);
+            } catch (Exception e) {
+                res.status(500);
+                return gson.toJson("Error processing batch: " + e.getMessage());
+            }
+        })));
+
+        // GET tasks due in a window: ?from=MM-dd-yyyy&to=MM-dd-yyyy, both inclusive
+        get("/tasks/due", timed("GET /tasks/due", (req, res) -> {
+            res.type("application/json");
+            try {
+                LocalDate from = parseDate(req.queryParams("from"), "from");
+                LocalDate to = parseDate(req.queryParams("to"), "to");
+                if (from == null || to == null) {
+                    res.status(400);
+                    return gson.toJson("from and to are required");
+                }
+                return gson.toJson(App.manager.getTasksDueBetween(from, to));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            }
+        }));
+
+        // GET incomplete tasks due before today (or ?today=MM-dd-yyyy)
+        get("/tasks/due/overdue", timed("GET /tasks/due/overdue", (req, res) -> {
+            res.type("application/json");
+            try {
+                return gson.toJson(App.manager.getOverdue(parseToday(req)));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            }
+        }));
+
+        // GET the next n incomplete tasks due from today on: ?n=10 (default), ?today=MM-dd-yyyy
+        get("/tasks/due/next", timed("GET /tasks/due/next", (req, res) -> {
+            res.type("application/json");
+            try {
+                int n = DEFAULT_NEXT_DUE;
+                String count = req.queryParams("n");
+                if (count != null) {
+                    try {
+                        n = Integer.parseInt(count);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("n must be a number.");
+                    }
+                    if (n < 1 || n > TaskQuery.MAX_LIMIT) {
+                        throw new IllegalArgumentException("n must be between 1 and " + TaskQuery.MAX_LIMIT + ".");
+                    }
+                }
+                return gson.toJson(App.manager.getNextDue(parseToday(req), n));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            }
+        }));
+
+        // GET tasks by name prefix or word prefix: ?q=text&limit=20, best matches first
+        get("/tasks/search", timed("GET /tasks/search", (req, res) -> {
+            res.type("application/json");
+            try {
+                String q = req.queryParams("q");
+                if (q == null || q.isBlank()) {
+                    throw new IllegalArgumentException("q is required.");
+                }
+                int limit = DEFAULT_SEARCH_LIMIT;
+                String value = req.queryParams("limit");
+                if (value != null) {
+                    try {
+                        limit = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("limit must be a number.");
+                    }
+                    if (limit < 1 || limit > TaskQuery.MAX_LIMIT) {
+                        throw new IllegalArgumentException("limit must be between 1 and " + TaskQuery.MAX_LIMIT + ".");
+                    }
+                }
+                return gson.toJson(App.manager.search(q, limit));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            }
+        }));
+
+        // GET the changes after sequence number 'since' (0 for all kept changes).
+        // Long-polls up to 'wait' seconds when there are none; with
+        // Accept: text/event-stream or stream=true it streams Server-Sent Events.
+        get("/tasks/changes", timed("GET /tasks/changes", (req, res) -> {
+            res.type("application/json");
+            long since;
+            int waitSeconds;
+            try {
+                String lastEventId = req.headers("Last-Event-ID");
+                since = parseLong(lastEventId != null ? lastEventId : req.queryParams("since"), 0, "since");
+                waitSeconds = (int) parseLong(req.queryParams("wait"), DEFAULT_CHANGES_WAIT_SECONDS, "wait");
+                if (since < 0 || waitSeconds < 0 || waitSeconds > MAX_CHANGES_WAIT_SECONDS) {
+                    throw new IllegalArgumentException("since must not be negative and wait must be between 0 and "
+                            + MAX_CHANGES_WAIT_SECONDS + ".");
+                }
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            }
+
+            ChangeFeed feed = App.manager.getChanges();
+            String accept = req.headers("Accept");
+            if ("true".equalsIgnoreCase(req.queryParams("stream"))
+                    || (accept != null && accept.contains("text/event-stream"))) {
+                streamChanges(feed, since, res);
+                return "";
+            }
+            res.status(200);
+            return gson.toJson(feed.await(since, MAX_CHANGES, TimeUnit.SECONDS.toMillis(waitSeconds)));
+        }));
+
+        // Task cache metrics
+        get("/tasks/cache", timed("GET /tasks/cache", (req, res) -> {
+            res.type("application/json");
+            CacheStats stats = new CacheStats();
+            stats.size = App.manager.getTaskList().size();
+            stats.hits = App.manager.getCacheHits();
+            stats.misses = App.manager.getCacheMisses();
+            stats.hitRate = App.manager.getCacheHitRate();
+            stats.warm = App.manager.isWarm();
+            return gson.toJson(stats);
+        }));
+
+        // Drop the task cache; the next read reloads it from the database
+        post("/tasks/cache/invalidate", timed("POST /tasks/cache/invalidate", (req, res) -> {
+            res.type("application/json");
+            App.manager.invalidate();
+            return gson.toJson("Task cache invalidated");
+        }));
+
+        // GET, replace (PUT), change some fields of (PATCH), or DELETE one task by
+        // its id. Registered after every other /tasks/ route, which :id matches too.
+        get("/tasks/:id", timed("GET /tasks/:id", limited((req, res) -> {
+            res.type("application/json");
+            try {
+                TaskItem task = App.manager.getTaskById(taskId(req));
+                if (task == null) {
+                    res.status(404);
+                    return gson.toJson("Task not found");
+                }
+                res.header("ETag", etag(task.getVersion()));
+                res.status(200);
+                return gson.toJson(task);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            }
+        })));
+
+        put("/tasks/:id", timed("PUT /tasks/:id", limited((req, res) -> patchTask(req, res, true))));
+
+        patch("/tasks/:id", timed("PATCH /tasks/:id", limited((req, res) -> patchTask(req, res, false))));
+
+        delete("/tasks/:id", timed("DELETE /tasks/:id", limited((req, res) -> {
+            res.type("application/json");
+            try {
+                long id = taskId(req);
+                long ifMatch = ifMatchVersion(req);
+                if (ifMatch < 0) {
+                    return preconditionFailed(res);
+                }
+                if (!App.manager.removeTaskById(id, ifMatch)) {
+                    res.status(404);
+                    return gson.toJson("Task not found");
+                }
+                res.status(204);
+                return "";
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(e.getMessage());
+            } catch (VersionConflictException e) {
+                return conflict(req, res, e);
+            }
+        })));
+
+        // Counters, gauges, and latencies in the Prometheus text format
+        get("/metrics", (req, res) -> {
+            res.type(METRICS_CONTENT_TYPE);
+            return Metrics.scrape();
         });
 
         // Health check
-        get("/health", (req, res) -> {
+        get("/health", timed("GET /health", (req, res) -> {
             res.type("application/json");
             return gson.toJson("API is running");
+        }));
+    }
+
+    /**
+     * Registers the gauges and counters read from App.manager and this server
+     */
+    private void registerMetrics() {
+        Metrics.gauge("tasks_manager_tasks", "Tasks held in memory", null, () -> App.manager.size());
+        Metrics.gauge("tasks_manager_warm", "1 once the tasks were first loaded into memory", null,
+                () -> App.manager.isWarm() ? 1 : 0);
+        Metrics.counter("tasks_manager_reads_total", "Reads served from memory (hit) or persistence (miss)",
+                "result=\"hit\"", () -> App.manager.getCacheHits());
+        Metrics.counter("tasks_manager_reads_total", "Reads served from memory (hit) or persistence (miss)",
+                "result=\"miss\"", () -> App.manager.getCacheMisses());
+        Metrics.gauge("tasks_change_sequence", "Sequence number of the latest published change", null,
+                () -> App.manager.getChanges().getLastSequence());
+        Metrics.gauge("tasks_http_db_permits_available", "Database permits free right now", null,
+                dbPermits::availablePermits);
+        Metrics.counter("tasks_http_rejected_total", "Requests answered 503 while waiting for a database permit",
+                null, rejected::get);
+    }
+
+    /**
+     * Wraps a route so its latency and response status are recorded under an
+     * endpoint label. The histogram and counters are looked up here, once, so
+     * a request only adds to them. Streaming routes record how long the
+     * stream stayed open.
+     * 
+     * @param endpoint the label, such as "GET /tasks"
+     * @param route    the route to time
+     * @return the timed route
+     */
+    private static Route timed(String endpoint, Route route) {
+        String label = "endpoint=\"" + endpoint + "\"";
+        LatencyHistogram latency = Metrics.latency("tasks_http_request_seconds",
+                "Time to handle a request, by endpoint", label);
+        LongAdder[] responses = new LongAdder[6];
+        for (int i = 1; i < responses.length; i++) {
+            responses[i] = Metrics.counter("tasks_http_responses_total", "Responses sent, by endpoint and status class",
+                    label + ",code=\"" + i + "xx\"");
+        }
+        return (req, res) -> {
+            long start = System.nanoTime();
+            try {
+                Object body = route.handle(req, res);
+                int status = res.status();
+                responses[status >= 100 && status < 600 ? status / 100 : 5].increment();
+                return body;
+            } catch (Exception e) {
+                responses[5].increment();
+                throw e;
+            } finally {
+                latency.recordSince(start);
+            }
+        };
+    }
+
+    /**
+     * Wraps a route so it only runs while holding a database permit
+     * 
+     * @param route the route that reaches the database
+     * @return the limited route
+     */
+    private Route limited(Route route) {
+        return (req, res) -> withDatabasePermit(req, res, route);
+    }
+
+    /**
+     * Runs a route while holding a database permit. If no permit frees up in
+     * time, responds 503 with a Retry-After header instead.
+     * 
+     * @param req   the request
+     * @param res   the response
+     * @param route the route that reaches the database
+     * @return the route's response body
+     * @throws Exception if the route fails
+     */
+    private Object withDatabasePermit(Request req, Response res, Route route) throws Exception {
+        if (!dbPermits.tryAcquire(DB_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            long count = rejected.incrementAndGet();
+            Logger.warn("Database busy, rejected %s %s (%d rejected so far)", req.requestMethod(), req.pathInfo(), count);
+            res.type("application/json");
+            res.status(503);
+            res.header("Retry-After", "1");
+            return gson.toJson("Server busy, try again later");
+        }
+        try {
+            return route.handle(req, res);
+        } finally {
+            dbPermits.release();
+        }
+    }
+
+    /**
+     * Handles PUT and PATCH /tasks/:id. PUT replaces the task, so name and
+     * dueDate are required and a missing completed means false; PATCH only
+     * changes the fields in the body. Either way only the columns that end up
+     * different are written.
+     * 
+     * The change is made conditional on a version by If-Match or, failing
+     * that, by a version in the body; a task changed since then is answered
+     * with 412 or 409 respectively, and the ETag of its current version.
+     * 
+     * @param req     the request
+     * @param res     the response
+     * @param replace true for PUT
+     * @return the response body: the task after the change
+     */
+    private static Object patchTask(Request req, Response res, boolean replace) {
+        res.type("application/json");
+        try {
+            long id = taskId(req);
+            long ifMatch = ifMatchVersion(req);
+            if (ifMatch < 0) {
+                return preconditionFailed(res);
+            }
+            TaskFields fields = gson.fromJson(req.body(), TaskFields.class);
+            if (fields == null) {
+                throw new IllegalArgumentException("Task body is required.");
+            }
+            if (replace && (fields.name == null || fields.dueDate == null)) {
+                throw new IllegalArgumentException("name and dueDate are required.");
+            }
+            TaskPatch patch = new TaskPatch()
+                    .name(fields.name)
+                    .dueDate(fields.dueDate)
+                    .completed(replace && fields.completed == null ? Boolean.FALSE : fields.completed)
+                    .ifVersion(ifMatch != 0 ? ifMatch : fields.version != null ? fields.version : 0);
+
+            Logger.info("%s Body: %s", req.requestMethod(), req.body());
+
+            TaskItem task = App.manager.patchTask(id, patch);
+            if (task == null) {
+                res.status(404);
+                return gson.toJson("Task not found");
+            }
+            res.header("ETag", etag(task.getVersion()));
+            res.status(200);
+            return gson.toJson(task);
+        } catch (JsonParseException e) {
+            res.status(400);
+            return gson.toJson("Invalid task: " + e.getMessage());
+        } catch (VersionConflictException e) {
+            return conflict(req, res, e);
+        } catch (IllegalArgumentException e) {
+            res.status(400);
+            return gson.toJson(e.getMessage());
+        } catch (IllegalStateException e) {
+            res.status(409);
+            return gson.toJson(e.getMessage());
+        } catch (Exception e) {
+            res.status(500);
+            return gson.toJson("Error updating task: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the ETag of a task version. Versions are stored with the task, so
+     * unlike the list ETags they stay valid across restarts.
+     * 
+     * @param version the version of the task
+     * @return the strong ETag
+     */
+    private static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Reads the task version an If-Match header asks for. Matching is strong,
+     * so weak and unknown ETags never match; a list may only hold one version
+     * besides those.
+     * 
+     * @param req the request
+     * @return the version; 0 if there is no If-Match or it is *, -1 if no
+     *         entry can match
+     * @throws IllegalArgumentException if the list holds several versions
+     */
+    private static long ifMatchVersion(Request req) throws IllegalArgumentException {
+        String ifMatch = req.headers("If-Match");
+        if (ifMatch == null) {
+            return 0;
+        }
+        long version = -1;
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return 0;
+            }
+            if (candidate.length() < 3 || !candidate.startsWith("\"") || !candidate.endsWith("\"")) {
+                continue;
+            }
+            try {
+                long parsed = Long.parseLong(candidate.substring(1, candidate.length() - 1));
+                if (parsed < 1) {
+                    continue;
+                }
+                if (version > 0 && version != parsed) {
+                    throw new IllegalArgumentException("If-Match can only name one version.");
+                }
+                version = parsed;
+            } catch (NumberFormatException e) {
+                // another server's ETag; it never matches
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Answers a request whose If-Match cannot match any version
+     * 
+     * @param res the response
+     * @return the response body
+     */
+    private static Object preconditionFailed(Response res) {
+        res.status(412);
+        return gson.toJson("If-Match does not name a version of the task");
+    }
+
+    /**
+     * Answers a write that lost to a change made since the version it was
+     * conditional on: 412 if the version came from If-Match, 409 if it came
+     * from the body
+     * 
+     * @param req the request
+     * @param res the response
+     * @param e   the conflict
+     * @return the response body
+     */
+    private static Object conflict(Request req, Response res, VersionConflictException e) {
+        res.status(req.headers("If-Match") != null ? 412 : 409);
+        res.header("ETag", etag(e.getCurrentVersion()));
+        return gson.toJson(e.getMessage());
+    }
+
+    /**
+     * Gets the :id path parameter of the /tasks/:id routes
+     * 
+     * @param req the request
+     * @return the task id
+     * @throws IllegalArgumentException if the id is not a positive number
+     */
+    private static long taskId(Request req) throws IllegalArgumentException {
+        long id = parseLong(req.params(":id"), 0, "id");
+        if (id < 1) {
+            throw new IllegalArgumentException("id must be a positive number.");
+        }
+        return id;
+    }
+
+    /**
+     * Sends tasks as a binary task list, see WireFormat
+     * 
+     * @param req   the request
+     * @param res   the response
+     * @param tasks the tasks, in order
+     * @return the response body
+     * @throws IOException if a compressed body cannot be written
+     */
+    private static Object sendTasks(Request req, Response res, List<TaskItem> tasks) throws IOException {
+        res.type(WireFormat.BINARY_CONTENT_TYPE);
+        return sendBody(req, res, WireFormat.encode(tasks));
+    }
+
+    /**
+     * Checks a conditional GET against the current task list. If-None-Match
+     * takes precedence over If-Modified-Since, as HTTP requires, and is
+     * compared weakly: the same tasks in another content coding match too.
+     * 
+     * @param req          the request
+     * @param etag         the ETag of the current list
+     * @param lastModified when the list last changed, in epoch milliseconds
+     * @return true if the client's copy is current and 304 can be sent
+     */
+    private static boolean notModified(Request req, String etag, long lastModified) {
+        String ifNoneMatch = req.headers("If-None-Match");
+        if (ifNoneMatch != null) {
+            String opaque = etag.substring(2);
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(opaque)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.raw().getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false; // an unparseable date is ignored
+        }
+        // HTTP dates have whole seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Sends an encoded body, compressed with gzip or deflate if the client
+     * accepts either and the body is large enough to gain from it. Spark
+     * would gzip a body returned with a Content-Encoding header a second
+     * time, so a compressed body is written to the response directly.
+     * 
+     * @param req  the request
+     * @param res  the response, with its status and content type set
+     * @param body the encoded body
+     * @return the body for Spark to send, or "" if it was already written
+     * @throws IOException if a compressed body cannot be written
+     */
+    private static Object sendBody(Request req, Response res, byte[] body) throws IOException {
+        return sendBody(req, res, new ResponseCache.Entry(-1, body));
+    }
+
+    /**
+     * Sends a body from the response cache, reusing its compressed forms
+     * 
+     * @param req   the request
+     * @param res   the response, with its status and content type set
+     * @param entry the encoded body
+     * @return the body for Spark to send, or "" if it was already written
+     * @throws IOException if a compressed body cannot be written
+     */
+    private static Object sendBody(Request req, Response res, ResponseCache.Entry entry) throws IOException {
+        res.header("Vary", "Accept, Accept-Encoding");
+        WireFormat.Coding coding = entry.body().length < WireFormat.MIN_COMPRESS_BYTES
+                ? WireFormat.Coding.IDENTITY
+                : WireFormat.Coding.negotiate(req.headers("Accept-Encoding"));
+        if (coding == WireFormat.Coding.IDENTITY) {
+            return entry.body();
+        }
+        byte[] compressed = entry.compressed(coding);
+        HttpServletResponse raw = res.raw();
+        raw.setHeader("Content-Encoding", coding.header);
+        raw.setContentLength(compressed.length);
+        raw.getOutputStream().write(compressed);
+        raw.flushBuffer();
+        return "";
+    }
+
+    /**
+     * Writes every task matching the query as a JSON array, one row at a time,
+     * straight to the response stream, compressed if the client accepts gzip
+     * or deflate. No Content-Length is set, so Jetty sends the body with
+     * chunked transfer encoding and memory use stays flat regardless of the
+     * number of tasks.
+     * 
+     * @param query the filters to apply
+     * @param req   the request
+     * @param res   the response to write to
+     * @throws IOException if the rows cannot be read or written
+     */
+    private static void streamTasks(TaskQuery query, Request req, Response res) throws IOException {
+        HttpServletResponse raw = res.raw();
+        raw.setStatus(200);
+        raw.setContentType("application/json");
+        raw.setCharacterEncoding("UTF-8");
+        raw.setHeader("Vary", "Accept-Encoding");
+        WireFormat.Coding coding = WireFormat.Coding.negotiate(req.headers("Accept-Encoding"));
+        if (coding != WireFormat.Coding.IDENTITY) {
+            raw.setHeader("Content-Encoding", coding.header);
+        }
+
+        // Flush rather than close: the servlet container owns the stream
+        OutputStream body = coding.wrap(raw.getOutputStream());
+        JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(body, StandardCharsets.UTF_8)));
+        writer.beginArray();
+        int rows = App.manager.getPersistence().streamTasks(query, (id, version, name, dueDate, completed) -> {
+            writer.beginObject();
+            writer.name("id").value(id);
+            writer.name("version").value(version);
+            writer.name("name").value(name);
+            writer.name("dueDate").value(dueDate);
+            writer.name("completed").value(completed);
+            writer.endObject();
         });
+        writer.endArray();
+        writer.flush();
+        WireFormat.Coding.finish(body);
+        Logger.info("Streamed %d task(s)", rows);
+    }
+
+    /**
+     * Streams changes as Server-Sent Events until the client disconnects.
+     * Each change is one event whose id is its sequence number, so a
+     * reconnecting client resumes with Last-Event-ID. A 'reset' event tells
+     * the client it missed changes and must reload the task list.
+     * 
+     * @param feed  the change feed
+     * @param since the last sequence number the client has seen
+     * @param res   the response to write to
+     * @throws IOException if writing fails for another reason than a disconnect
+     */
+    private static void streamChanges(ChangeFeed feed, long since, Response res) throws IOException {
+        HttpServletResponse raw = res.raw();
+        raw.setStatus(200);
+        raw.setContentType("text/event-stream");
+        raw.setCharacterEncoding("UTF-8");
+        raw.setHeader("Cache-Control", "no-cache");
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(raw.getOutputStream(), StandardCharsets.UTF_8));
+        long seq = since;
+        int sent = 0;
+        try {
+            while (true) {
+                ChangeFeed.Batch batch = feed.await(seq, MAX_CHANGES, SSE_HEARTBEAT_MILLIS);
+                if (batch.reset()) {
+                    out.write("id: " + batch.lastSeq() + "\nevent: reset\ndata: " + batch.lastSeq() + "\n\n");
+                } else if (batch.changes().isEmpty()) {
+                    out.write(": keep-alive\n\n");
+                }
+                for (ChangeFeed.Change change : batch.changes()) {
+                    out.write("id: " + change.seq() + "\nevent: " + change.type().name().toLowerCase(Locale.ROOT)
+                            + "\ndata: " + gson.toJson(change) + "\n\n");
+                    sent++;
+                }
+                out.flush();
+                seq = batch.lastSeq();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away
+            Logger.info("Change stream closed after %d event(s)", sent);
+        }
+    }
+
+    /**
+     * Parses an optional whole-number query parameter
+     * 
+     * @param value        the parameter value, may be null
+     * @param defaultValue the value when the parameter is absent
+     * @param name         the parameter name, for the error message
+     * @return the number
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static long parseLong(String value, long defaultValue, String name) throws IllegalArgumentException {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number.");
+        }
+    }
+
+    /**
+     * Checks if a GET /tasks request asks for a paged listing
+     * 
+     * @param req the request
+     * @return true if any paging or filter parameter is present
+     */
+    private static boolean isPageRequest(Request req) {
+        for (String param : req.queryParams()) {
+            if (PAGE_PARAMS.contains(param)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a TaskQuery from the query parameters of GET /tasks
+     * 
+     * @param req the request
+     * @return the query
+     * @throws IllegalArgumentException if a parameter is malformed
+     */
+    private static TaskQuery parseQuery(Request req) throws IllegalArgumentException {
+        TaskQuery query = new TaskQuery()
+                .cursor(req.queryParams("cursor"))
+                .namePrefix(req.queryParams("namePrefix"))
+                .dueBefore(parseDate(req.queryParams("dueBefore"), "dueBefore"))
+                .dueAfter(parseDate(req.queryParams("dueAfter"), "dueAfter"));
+
+        String limit = req.queryParams("limit");
+        if (limit != null) {
+            try {
+                query.limit(Integer.parseInt(limit));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Limit must be a number.");
+            }
+        }
+
+        String completed = req.queryParams("completed");
+        if (completed != null) {
+            if (!completed.equalsIgnoreCase("true") && !completed.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException("Completed must be true or false.");
+            }
+            query.completed(Boolean.parseBoolean(completed));
+        }
+        return query;
+    }
+
+    /**
+     * Gets the 'today' query parameter of the due date routes
+     * 
+     * @param req the request
+     * @return the given date, or the current date if none is given
+     * @throws IllegalArgumentException if the date is malformed
+     */
+    private static LocalDate parseToday(Request req) throws IllegalArgumentException {
+        LocalDate today = parseDate(req.queryParams("today"), "today");
+        return today == null ? LocalDate.now() : today;
+    }
+
+    /**
+     * Parses an optional MM-dd-yyyy query parameter
+     * 
+     * @param value the parameter value, may be null
+     * @param name  the parameter name, for the error message
+     * @return the date, or null if the parameter is absent
+     * @throws IllegalArgumentException if the date is malformed
+     */
+    private static LocalDate parseDate(String value, String name) throws IllegalArgumentException {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value, DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be in MM-dd-yyyy format.");
+        }
+    }
+
+    /**
+     * Body of POST /tasks/batch
+     */
+    private static class BatchRequest {
+        List<TaskItem> add;
+        List<TaskItem> update;
+        List<TaskItem> remove;
+
+        int size() {
+            return (add == null ? 0 : add.size())
+                    + (update == null ? 0 : update.size())
+                    + (remove == null ? 0 : remove.size());
+        }
+    }
+
+    /**
+     * Body of PUT and PATCH /tasks/:id; fields left out are null
+     */
+    private static class TaskFields {
+        String name;
+        String dueDate;
+        Boolean completed;
+        Long version;
+    }
+
+    /**
+     * Response of GET /tasks/cache
+     */
+    private static class CacheStats {
+        int size;
+        long hits;
+        long misses;
+        double hitRate;
+        boolean warm;
+    }
+
+    /**
+     * Response of POST /tasks/batch
+     */
+    private static class BatchResult {
+        int added;
+        int updated;
+        int removed;
     }
 }
@@ -1,16 +1,21 @@
 package com.example;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public class App {
 
     // UTILITY
     private static final Scanner scnr = new Scanner(System.in);
-    public static final TaskManager manager = new TaskManager();
+    // Chosen with -Dtasks.persistence=sqlite|journal; loaded in the background by main()
+    private static final TaskPersistence persistence = createPersistence();
+    public static final TaskManager manager = TaskManager.cold(TaskManager.Storage.OBJECTS, persistence);
 
     // VARIABLES
     private static boolean running = true;
@@ -20,14 +25,45 @@ public class App {
     private static final int MAX_OPTION = 5;
     private static final char RETURN_KEY = 'r';
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd-yyyy");
+    private static final String JOURNAL_DIR = "tasks-journal";
 
     // entry point
     public static void main(String[] args) {
+        long start = System.nanoTime();
         TaskRepository.setDatabase("jdbc:sqlite:tasks.db");
+        // Opt-in with -Dtasks.writePipeline=true; mutations then wait for a group commit
+        // while TaskManager holds their stripe locks
+        if (Boolean.getBoolean("tasks.writePipeline")) {
+            TaskRepository.enableWritePipeline(WritePipeline.DEFAULT_BATCH_SIZE,
+                    WritePipeline.DEFAULT_LINGER_MILLIS, WritePipeline.DEFAULT_QUEUE_DEPTH);
+        }
+        if (persistence instanceof JournalPersistence journal) {
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "task-journal-shutdown"));
+        }
+        long database = System.nanoTime();
+
+        // Requests are served from the database until the tasks are in memory
+        manager.warmUp(TaskManager.DEFAULT_WARM_UP_THREADS);
         new ApiServer();
+        spark.Spark.awaitInitialization();
+        long server = System.nanoTime();
+
+        Logger.info("Startup: database ready in %d ms, API accepting requests after %d ms",
+                TimeUnit.NANOSECONDS.toMillis(database - start), TimeUnit.NANOSECONDS.toMillis(server - start));
         run();
     }
 
+    // Creates the persistence named by the 'tasks.persistence' system property; SQLite by default
+    private static TaskPersistence createPersistence() {
+        String engine = System.getProperty("tasks.persistence", "sqlite").toLowerCase(Locale.ROOT);
+        return switch (engine) {
+            case "sqlite" -> SqlitePersistence.INSTANCE;
+            case "journal" -> new JournalPersistence(Path.of(JOURNAL_DIR),
+                    JournalPersistence.DEFAULT_SYNC_EVERY, JournalPersistence.DEFAULT_SNAPSHOT_BYTES);
+            default -> throw new IllegalArgumentException("Unknown tasks.persistence: " + engine);
+        };
+    }
+
     private static void run() {
         while (running) {
             printMenu();
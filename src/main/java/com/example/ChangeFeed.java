@@ -0,0 +1,157 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ChangeFeed records every change to the task set with a sequence number
+ *
+ * TaskManager publishes one Change per task it adds, updates, or removes.
+ * Sequence numbers start at 1 and increase by one per change, so a client that
+ * remembers the last number it saw can ask for exactly the changes after it.
+ * Only the newest changes are kept in a fixed-size ring; a client that falls
+ * further behind than the ring reaches gets a batch with reset set and must
+ * reload the full task list. A RESET change means the whole task set was
+ * reloaded and has the same effect.
+ */
+public class ChangeFeed {
+
+    /** Default number of changes kept */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** What happened to a task */
+    public enum Type {
+        ADDED, UPDATED, REMOVED,
+        /** The task set was reloaded; there is no task */
+        RESET
+    }
+
+    /**
+     * One change to the task set
+     *
+     * @param seq  - The sequence number of the change
+     * @param type - What happened
+     * @param task - A copy of the task after the change (before it for REMOVED); null for RESET
+     */
+    public record Change(long seq, Type type, TaskItem task) {
+    }
+
+    /**
+     * The changes after a sequence number
+     *
+     * @param changes - The changes, oldest first
+     * @param lastSeq - The sequence number to ask for the next batch with
+     * @param reset   - True if changes were missed; reload the task list and continue from lastSeq
+     */
+    public record Batch(List<Change> changes, long lastSeq, boolean reset) {
+    }
+
+    private final Change[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private long lastSeq = 0;
+
+    /**
+     * Creates a change feed
+     *
+     * @param capacity - The number of changes kept
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ChangeFeed(int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.ring = new Change[capacity];
+    }
+
+    /**
+     * Records a change and wakes up everyone waiting for one
+     *
+     * @param type what happened
+     * @param task the task after the change; copied, may be null for RESET
+     * @return the sequence number of the change
+     */
+    public long publish(Type type, TaskItem task) {
+        TaskItem copy = task == null ? null
+                : TaskItem.ofTrusted(task.getId(), task.getVersion(), task.getName(), task.getDueEpochDay(),
+                        task.hasDueDate(), task.isCompleted());
+        lock.lock();
+        try {
+            long seq = ++lastSeq;
+            ring[(int) (seq % ring.length)] = new Change(seq, type, copy);
+            published.signalAll();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the sequence number of the newest change
+     *
+     * @return the last sequence number; 0 if nothing was published
+     */
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the changes after a sequence number without waiting
+     *
+     * @param since the last sequence number the caller has seen
+     * @param max   the maximum number of changes to return
+     * @return the changes
+     */
+    public Batch since(long since, int max) {
+        lock.lock();
+        try {
+            return read(since, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the changes after a sequence number, waiting for one if there are
+     * none yet
+     *
+     * @param since         the last sequence number the caller has seen
+     * @param max           the maximum number of changes to return
+     * @param timeoutMillis how long to wait at most
+     * @return the changes; empty if none arrived in time
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public Batch await(long since, int max, long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (lastSeq == since && remaining > 0) {
+                remaining = published.awaitNanos(remaining);
+            }
+            return read(since, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Batch read(long since, int max) {
+        long oldest = Math.max(1, lastSeq - ring.length + 1);
+        if (since > lastSeq || since < oldest - 1) {
+            return new Batch(List.of(), lastSeq, true);
+        }
+        long end = Math.min(lastSeq, since + Math.max(0, max));
+        List<Change> changes = new ArrayList<>((int) (end - since));
+        for (long seq = since + 1; seq <= end; seq++) {
+            changes.add(ring[(int) (seq % ring.length)]);
+        }
+        return new Batch(changes, end, false);
+    }
+}
@@ -0,0 +1,702 @@
+package com.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ColumnarTaskStore keeps tasks in primitive arrays instead of TaskItem objects
+ *
+ * Each task is a slot number. Names are UTF-8 bytes appended to one shared
+ * byte array and addressed by offset and length; the id and version are longs
+ * and the due date an int epoch day; completion, due-date presence, and liveness are
+ * bitsets. At millions of
+ * tasks this holds a handful of arrays instead of three objects per task, so
+ * there is little for the garbage collector to trace.
+ *
+ * Names are found through an open-addressing hash table of slot numbers. A
+ * TaskItem is only created when a read asks for one; it is a copy, so changes
+ * must go through the store. Due date queries walk sorted lists of primitive
+ * (due day, slot) pairs, one for every task with a due date and one for the
+ * open ones. Name searches walk a list of slots sorted by name and a list of
+ * (slot, word start) pairs sorted by word, whose names are decoded from the
+ * name bytes only while comparing, so indexing costs a few bytes per task and
+ * neither objects nor copied names. Ids are found through a list of slots
+ * sorted by id. Removed slots stay as dead space until
+ * more than half the slots are dead, then the columns are compacted. A renamed
+ * task appends its new name; the old bytes are dropped by the same compaction,
+ * or once they make up half of the name bytes.
+ *
+ * Reads take a shared lock and writes an exclusive one.
+ */
+class ColumnarTaskStore implements TaskStore {
+
+    private static final int INITIAL_SLOTS = 16;
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // COLUMNS, indexed by slot
+    private int[] nameOffset = new int[INITIAL_SLOTS];
+    private int[] nameLength = new int[INITIAL_SLOTS];
+    private int[] keyHash = new int[INITIAL_SLOTS];
+    private int[] dueDay = new int[INITIAL_SLOTS];
+    private long[] ids = new long[INITIAL_SLOTS];
+    private long[] versions = new long[INITIAL_SLOTS];
+    private long[] hasDueDate = new long[bitWords(INITIAL_SLOTS)];
+    private long[] completed = new long[bitWords(INITIAL_SLOTS)];
+    private long[] live = new long[bitWords(INITIAL_SLOTS)];
+
+    /** UTF-8 bytes of every name, back to back */
+    private byte[] names = new byte[INITIAL_SLOTS * 16];
+    private int namesUsed = 0;
+    /** Bytes of names no slot points at any more */
+    private int deadNameBytes = 0;
+
+    /** Slot + 1 per bucket; EMPTY or DELETED for free buckets */
+    private int[] table = new int[INITIAL_SLOTS * 2];
+
+    // INDEXES, of slots; rebuilt whenever compaction moves the slots
+    /** dueEntry() of every task with a due date: by due day, then slot */
+    private SortedLongs due = new SortedLongs();
+    /** The same entries for the tasks that are not completed */
+    private SortedLongs openDue = new SortedLongs();
+    /** Every live slot, by normalized name */
+    private SortedLongs byName = new SortedLongs();
+    /** wordEntry() of every distinct word of every name: by word, then name */
+    private SortedLongs byWord = new SortedLongs();
+    /** Every live slot, by id and then slot */
+    private SortedLongs byId = new SortedLongs();
+
+    private int slots = 0;
+    private int liveCount = 0;
+    /** DELETED buckets left behind by renames, on top of those of dead slots */
+    private int movedBuckets = 0;
+
+    /**
+     * Builds a store from a list of tasks, keeping the first task for each name
+     *
+     * @param tasks the tasks, in order
+     * @return the store
+     */
+    static ColumnarTaskStore of(List<TaskItem> tasks) {
+        ColumnarTaskStore store = new ColumnarTaskStore();
+        for (TaskItem task : tasks) {
+            String key = key(task.getName());
+            if (store.find(key) < 0) {
+                store.append(key, task);
+            }
+        }
+        // Sorting once is far cheaper than keeping the indexes sorted task by task
+        store.reindex();
+        return store;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            return find(key) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TaskItem get(String key) {
+        lock.readLock().lock();
+        try {
+            int slot = find(key);
+            return slot < 0 ? null : view(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TaskItem getById(long id) {
+        lock.readLock().lock();
+        try {
+            int[] found = { -1 };
+            byId.forEachFrom(slot -> Long.compare(ids[(int) slot], id), slot -> {
+                found[0] = (int) slot;
+                return false;
+            });
+            return found[0] >= 0 && ids[found[0]] == id ? view(found[0]) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, TaskItem task) {
+        lock.writeLock().lock();
+        try {
+            if (find(key) >= 0) {
+                throw new IllegalStateException("Task already stored: " + task.getName());
+            }
+            index(append(key, task));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void replace(String key, String newKey, TaskItem task) {
+        lock.writeLock().lock();
+        try {
+            int bucket = findBucket(key);
+            if (bucket < 0) {
+                throw new IllegalStateException("Task not stored: " + key);
+            }
+            int slot = table[bucket] - 1;
+            unindex(slot);
+            setFields(slot, task);
+            if (task.getName().equals(name(slot))) {
+                index(slot);
+                return;
+            }
+
+            byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+            ensureNameCapacity(name.length);
+            System.arraycopy(name, 0, names, namesUsed, name.length);
+            deadNameBytes += nameLength[slot];
+            nameOffset[slot] = namesUsed;
+            nameLength[slot] = name.length;
+            namesUsed += name.length;
+
+            // A rename moves the slot to the bucket of its new name
+            keyHash[slot] = newKey.hashCode();
+            table[bucket] = DELETED;
+            movedBuckets++;
+            if (deadNameBytes > namesUsed / 2) {
+                compact();
+                return;
+            }
+            if ((slots + movedBuckets) * 2 > table.length) {
+                rehash(table.length);
+            } else {
+                insertBucket(table, slot);
+            }
+            index(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String key) {
+        lock.writeLock().lock();
+        try {
+            int bucket = findBucket(key);
+            if (bucket < 0) {
+                return false;
+            }
+            int slot = table[bucket] - 1;
+            unindex(slot);
+            table[bucket] = DELETED;
+            setBit(live, slot, false);
+            liveCount--;
+            deadNameBytes += nameLength[slot];
+
+            if (slots > INITIAL_SLOTS && liveCount < slots / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isManaged(String key, TaskItem task) {
+        return contains(key);
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<TaskItem> toList() {
+        lock.readLock().lock();
+        try {
+            List<TaskItem> tasks = new ArrayList<>(liveCount);
+            for (int slot = 0; slot < slots; slot++) {
+                if (getBit(live, slot)) {
+                    tasks.add(view(slot));
+                }
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<TaskItem> dueBetween(int fromDay, int toDay, boolean openOnly, int limit) {
+        List<TaskItem> tasks = new ArrayList<>();
+        if (fromDay > toDay || limit < 1) {
+            return tasks;
+        }
+        long first = (long) fromDay << 32;
+        lock.readLock().lock();
+        try {
+            (openOnly ? openDue : due).forEachFrom(entry -> Long.compare(entry, first), entry -> {
+                if ((int) (entry >> 32) > toDay) {
+                    return false;
+                }
+                tasks.add(view((int) entry));
+                return tasks.size() < limit;
+            });
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<TaskItem> search(String query, int limit) {
+        String q = key(query.strip());
+        if (q.isEmpty() || limit < 1) {
+            return new ArrayList<>();
+        }
+        List<String> queryWords = SearchIndex.tokenize(q);
+        Set<Integer> found = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            // 1. The exact name, then 2. names starting with the query
+            int exact = find(q);
+            if (exact >= 0) {
+                found.add(exact);
+            }
+            byName.forEachFrom(slot -> keyOf((int) slot).compareTo(q), slot -> {
+                if (found.size() >= limit || !keyOf((int) slot).startsWith(q)) {
+                    return false;
+                }
+                found.add((int) slot);
+                return true;
+            });
+
+            // 3. Names with a word starting with the longest query word and
+            //    every other query word starting some word of the name
+            if (found.size() < limit && !queryWords.isEmpty()) {
+                String anchor = SearchIndex.anchor(queryWords);
+                byWord.forEachFrom(entry -> SearchIndex.compareWords(keyOf(slotOf(entry)), startOf(entry), anchor, 0),
+                        entry -> {
+                            String key = keyOf(slotOf(entry));
+                            if (found.size() >= limit || !key.startsWith(anchor, startOf(entry))) {
+                                return false;
+                            }
+                            if (SearchIndex.matchesAll(key, queryWords)) {
+                                found.add(slotOf(entry));
+                            }
+                            return true;
+                        });
+            }
+
+            List<TaskItem> tasks = new ArrayList<>(found.size());
+            for (int slot : found) {
+                tasks.add(view(slot));
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes held by the columns, the name bytes, the hash
+     * table, and the indexes, including unused capacity
+     *
+     * @return the size of the arrays in bytes
+     */
+    long getFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            return 4L * (nameOffset.length + nameLength.length + keyHash.length + dueDay.length + table.length)
+                    + 8L * (ids.length + versions.length + hasDueDate.length + completed.length + live.length)
+                    + names.length + due.footprintBytes() + openDue.footprintBytes()
+                    + byName.footprintBytes() + byWord.footprintBytes() + byId.footprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ------------------------
+    // Slots and hashing
+    // ------------------------
+
+    /**
+     * Creates a TaskItem copy of a slot
+     *
+     * @param slot a live slot
+     * @return the task
+     */
+    private TaskItem view(int slot) {
+        return TaskItem.ofTrusted(ids[slot], versions[slot], name(slot), dueDay[slot], getBit(hasDueDate, slot),
+                getBit(completed, slot));
+    }
+
+    /**
+     * Stores a task in a new slot without indexing it
+     *
+     * @param key  the normalized name
+     * @param task the task
+     * @return the slot
+     */
+    private int append(String key, TaskItem task) {
+        ensureSlotCapacity();
+
+        int slot = slots++;
+        byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+        ensureNameCapacity(name.length);
+        System.arraycopy(name, 0, names, namesUsed, name.length);
+        nameOffset[slot] = namesUsed;
+        nameLength[slot] = name.length;
+        namesUsed += name.length;
+
+        keyHash[slot] = key.hashCode();
+        setFields(slot, task);
+        setBit(live, slot, true);
+        liveCount++;
+
+        insertIntoTable(slot);
+        return slot;
+    }
+
+    /**
+     * Copies everything but the name of a task into a slot
+     */
+    private void setFields(int slot, TaskItem task) {
+        ids[slot] = task.getId();
+        versions[slot] = task.getVersion();
+        dueDay[slot] = task.getDueEpochDay();
+        setBit(hasDueDate, slot, task.hasDueDate());
+        setBit(completed, slot, task.isCompleted());
+    }
+
+    private String name(int slot) {
+        return new String(names, nameOffset[slot], nameLength[slot], StandardCharsets.UTF_8);
+    }
+
+    private String keyOf(int slot) {
+        return key(name(slot));
+    }
+
+    /**
+     * Finds the live slot stored under a name
+     *
+     * @param key the normalized name
+     * @return the slot, or -1 if the name is not stored
+     */
+    private int find(String key) {
+        int bucket = findBucket(key);
+        return bucket < 0 ? -1 : table[bucket] - 1;
+    }
+
+    /**
+     * Finds the hash table bucket pointing at the slot stored under a name.
+     * Only slots whose hash matches have their name decoded and compared.
+     *
+     * @param key the normalized name
+     * @return the bucket, or -1 if the name is not stored
+     */
+    private int findBucket(String key) {
+        int hash = key.hashCode();
+        int mask = table.length - 1;
+        for (int bucket = spread(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            int entry = table[bucket];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != DELETED) {
+                int slot = entry - 1;
+                if (keyHash[slot] == hash && key(name(slot)).equals(key)) {
+                    return bucket;
+                }
+            }
+        }
+    }
+
+    private void insertIntoTable(int slot) {
+        // Keep the table at most half full, counting dead slots still in it
+        if ((slots + movedBuckets) * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insertBucket(table, slot);
+        }
+    }
+
+    private void insertBucket(int[] target, int slot) {
+        int mask = target.length - 1;
+        int bucket = spread(keyHash[slot]) & mask;
+        while (target[bucket] != EMPTY && target[bucket] != DELETED) {
+            bucket = (bucket + 1) & mask;
+        }
+        target[bucket] = slot + 1;
+    }
+
+    /**
+     * Rebuilds the hash table from the live slots
+     *
+     * @param capacity the new number of buckets; a power of two
+     */
+    private void rehash(int capacity) {
+        int[] rebuilt = new int[capacity];
+        for (int slot = 0; slot < slots; slot++) {
+            if (getBit(live, slot)) {
+                insertBucket(rebuilt, slot);
+            }
+        }
+        table = rebuilt;
+        movedBuckets = 0;
+    }
+
+    /**
+     * Moves the live slots to the front, keeping their order, and drops the
+     * name bytes of removed tasks
+     */
+    private void compact() {
+        byte[] packed = new byte[Math.max(namesUsed, INITIAL_SLOTS)];
+        int used = 0;
+        int target = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (!getBit(live, slot)) {
+                continue;
+            }
+            System.arraycopy(names, nameOffset[slot], packed, used, nameLength[slot]);
+            nameOffset[target] = used;
+            nameLength[target] = nameLength[slot];
+            used += nameLength[slot];
+            keyHash[target] = keyHash[slot];
+            ids[target] = ids[slot];
+            versions[target] = versions[slot];
+            dueDay[target] = dueDay[slot];
+            setBit(hasDueDate, target, getBit(hasDueDate, slot));
+            setBit(completed, target, getBit(completed, slot));
+            target++;
+        }
+        Arrays.fill(live, 0);
+        for (int slot = 0; slot < target; slot++) {
+            setBit(live, slot, true);
+        }
+        names = packed;
+        namesUsed = used;
+        deadNameBytes = 0;
+        slots = target;
+        rehash(table.length);
+        reindex();
+    }
+
+    // ------------------------
+    // Indexes
+    // ------------------------
+
+    /**
+     * Packs a slot with its due day, so the entries sort by day and then slot
+     */
+    private long dueEntry(int slot) {
+        return ((long) dueDay[slot] << 32) | slot;
+    }
+
+    /**
+     * Packs a slot with the char index a word of its normalized name starts at
+     */
+    private static long wordEntry(int slot, int start) {
+        return ((long) slot << 32) | start;
+    }
+
+    private static int slotOf(long wordEntry) {
+        return (int) (wordEntry >>> 32);
+    }
+
+    private static int startOf(long wordEntry) {
+        return (int) wordEntry;
+    }
+
+    /**
+     * Orders slots by their normalized names
+     *
+     * @param keys gets the normalized name of a slot
+     */
+    private static SortedLongs.Order nameOrder(IntFunction<String> keys) {
+        return (a, b) -> keys.apply((int) a).compareTo(keys.apply((int) b));
+    }
+
+    /**
+     * Orders word entries by their word, then by the normalized name
+     *
+     * @param keys gets the normalized name of a slot
+     */
+    private static SortedLongs.Order wordOrder(IntFunction<String> keys) {
+        return (a, b) -> {
+            String aKey = keys.apply(slotOf(a));
+            String bKey = keys.apply(slotOf(b));
+            int byWord = SearchIndex.compareWords(aKey, startOf(a), bKey, startOf(b));
+            return byWord != 0 ? byWord : aKey.compareTo(bKey);
+        };
+    }
+
+    /**
+     * Orders slots by their ids; ids are unique once stored, the slot only
+     * keeps unsaved tasks apart
+     */
+    private SortedLongs.Order idOrder() {
+        return (a, b) -> {
+            int byIds = Long.compare(ids[(int) a], ids[(int) b]);
+            return byIds != 0 ? byIds : Long.compare(a, b);
+        };
+    }
+
+    /**
+     * Adds a live slot to the indexes its fields put it in
+     */
+    private void index(int slot) {
+        if (getBit(hasDueDate, slot)) {
+            due.add(dueEntry(slot), Long::compare);
+            if (!getBit(completed, slot)) {
+                openDue.add(dueEntry(slot), Long::compare);
+            }
+        }
+        byName.add(slot, nameOrder(this::keyOf));
+        byId.add(slot, idOrder());
+        SortedLongs.Order words = wordOrder(this::keyOf);
+        for (int start : SearchIndex.wordStarts(keyOf(slot))) {
+            byWord.add(wordEntry(slot, start), words);
+        }
+    }
+
+    /**
+     * Removes a slot from the indexes, before its fields or name change
+     */
+    private void unindex(int slot) {
+        if (getBit(hasDueDate, slot)) {
+            due.remove(dueEntry(slot), Long::compare);
+            openDue.remove(dueEntry(slot), Long::compare);
+        }
+        byName.remove(slot, nameOrder(this::keyOf));
+        byId.remove(slot, idOrder());
+        SortedLongs.Order words = wordOrder(this::keyOf);
+        for (int start : SearchIndex.wordStarts(keyOf(slot))) {
+            byWord.remove(wordEntry(slot, start), words);
+        }
+    }
+
+    /**
+     * Rebuilds the indexes from the columns of the live slots. The names are
+     * decoded once for the sorts and dropped afterwards.
+     */
+    private void reindex() {
+        long[] all = new long[liveCount];
+        long[] open = new long[liveCount];
+        long[] named = new long[liveCount];
+        String[] keys = new String[slots];
+        int dueCount = 0;
+        int openCount = 0;
+        int nameCount = 0;
+        int wordCount = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (!getBit(live, slot)) {
+                continue;
+            }
+            if (getBit(hasDueDate, slot)) {
+                all[dueCount++] = dueEntry(slot);
+                if (!getBit(completed, slot)) {
+                    open[openCount++] = dueEntry(slot);
+                }
+            }
+            keys[slot] = keyOf(slot);
+            named[nameCount++] = slot;
+            wordCount += SearchIndex.wordStarts(keys[slot]).length;
+        }
+        long[] words = new long[wordCount];
+        wordCount = 0;
+        for (int i = 0; i < nameCount; i++) {
+            int slot = (int) named[i];
+            for (int start : SearchIndex.wordStarts(keys[slot])) {
+                words[wordCount++] = wordEntry(slot, start);
+            }
+        }
+
+        Arrays.sort(all, 0, dueCount);
+        Arrays.sort(open, 0, openCount);
+        SortedLongs.sort(named, nameCount, nameOrder(slot -> keys[slot]));
+        SortedLongs.sort(words, wordCount, wordOrder(slot -> keys[slot]));
+        long[] byIds = Arrays.copyOf(named, nameCount);
+        SortedLongs.sort(byIds, nameCount, idOrder());
+        due = SortedLongs.of(all, dueCount);
+        openDue = SortedLongs.of(open, openCount);
+        byName = SortedLongs.of(named, nameCount);
+        byWord = SortedLongs.of(words, wordCount);
+        byId = SortedLongs.of(byIds, nameCount);
+    }
+
+    private void ensureSlotCapacity() {
+        if (slots < dueDay.length) {
+            return;
+        }
+        int capacity = dueDay.length * 2;
+        nameOffset = Arrays.copyOf(nameOffset, capacity);
+        nameLength = Arrays.copyOf(nameLength, capacity);
+        keyHash = Arrays.copyOf(keyHash, capacity);
+        dueDay = Arrays.copyOf(dueDay, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        hasDueDate = Arrays.copyOf(hasDueDate, bitWords(capacity));
+        completed = Arrays.copyOf(completed, bitWords(capacity));
+        live = Arrays.copyOf(live, bitWords(capacity));
+    }
+
+    private void ensureNameCapacity(int length) {
+        if (namesUsed + length <= names.length) {
+            return;
+        }
+        long capacity = Math.max((long) names.length * 2, (long) namesUsed + length);
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Task names exceed the columnar store's capacity");
+        }
+        names = Arrays.copyOf(names, (int) capacity);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // ------------------------
+    // Bitsets
+    // ------------------------
+
+    private static int bitWords(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConnectionPool keeps a bounded set of warm SQLite connections for TaskRepository
+ *
+ * Provides:
+ * -Bounded, reusable connections with an acquire timeout
+ * -Per-connection SQLite PRAGMAs applied once when a connection is opened
+ * -Health checks on connections that have been idle for a while
+ * -A per-connection prepared statement cache
+ * -Acquire/timeout and statement cache hit/miss metrics
+ * -A clean shutdown that closes every idle connection
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Default number of connections kept by the pool */
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    /** Default time a caller waits for a free connection */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 5_000;
+
+    /** Connections idle longer than this are validated before being handed out */
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+    private static final String[] PRAGMAS = {
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA mmap_size=268435456",
+            "PRAGMA cache_size=-16000",
+            "PRAGMA busy_timeout=5000"
+    };
+
+    private final String url;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed = false;
+
+    // METRICS
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong acquireWaitNanos = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * Creates a pool for the given database
+     *
+     * In-memory databases are private to a single connection, so the pool is
+     * limited to one connection for them to keep every caller on the same data.
+     *
+     * @param url                  - The JDBC url of the database
+     * @param maxSize              - The maximum number of open connections
+     * @param acquireTimeoutMillis - How long acquire() waits for a free connection
+     * @throws IllegalArgumentException if maxSize or the timeout are not positive
+     */
+    public ConnectionPool(String url, int maxSize, long acquireTimeoutMillis) throws IllegalArgumentException {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1.");
+        }
+        if (acquireTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Acquire timeout must be positive.");
+        }
+        this.url = url;
+        this.maxSize = isInMemory(url) ? 1 : maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(this.maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none are idle
+     *
+     * Closing the returned connection hands it back to the pool.
+     *
+     * @return a pooled connection
+     * @throws SQLException if the pool is closed, the timeout elapses, or the
+     *                      connection cannot be opened
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                acquireTimeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            acquireWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        try {
+            PooledConnection conn;
+            while ((conn = idle.pollFirst()) != null) {
+                if (isHealthy(conn)) {
+                    conn.markBorrowed();
+                    acquired.incrementAndGet();
+                    return conn;
+                }
+                discard(conn);
+            }
+            conn = open();
+            conn.markBorrowed();
+            acquired.incrementAndGet();
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool; called by PooledConnection.close()
+     *
+     * @param conn the connection being returned
+     */
+    void release(PooledConnection conn) {
+        try {
+            if (closed || !conn.resetForReuse()) {
+                discard(conn);
+            } else {
+                idle.offerFirst(conn);
+            }
+        } finally {
+            permits.release();
+        }
+        if (closed) {
+            drainIdle();
+        }
+    }
+
+    /**
+     * Closes the pool and every idle connection. Borrowed connections are closed
+     * as they are returned.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        drainIdle();
+        Logger.info("Connection pool closed (" + getStats() + ")");
+    }
+
+    private void drainIdle() {
+        PooledConnection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            discard(conn);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url);
+        try (Statement stmt = raw.createStatement()) {
+            for (String pragma : PRAGMAS) {
+                stmt.execute(pragma);
+            }
+        } catch (SQLException e) {
+            raw.close();
+            throw e;
+        }
+        created.incrementAndGet();
+        StatementCache statements = new StatementCache(raw, StatementCache.DEFAULT_CAPACITY,
+                statementHits, statementMisses);
+        return new PooledConnection(this, raw, statements);
+    }
+
+    private boolean isHealthy(PooledConnection conn) {
+        try {
+            if (conn.getRaw().isClosed()) {
+                return false;
+            }
+            if (conn.idleNanos() < VALIDATE_AFTER_IDLE_NANOS) {
+                return true;
+            }
+            return conn.getRaw().isValid(VALIDATE_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection conn) {
+        discarded.incrementAndGet();
+        conn.closeStatements();
+        try {
+            conn.getRaw().close();
+        } catch (SQLException e) {
+            Logger.warn("Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+
+    private static boolean isInMemory(String url) {
+        return url.contains(":memory:") || url.contains("mode=memory");
+    }
+
+    // ------------------------
+    // Metrics
+    // ------------------------
+
+    /**
+     * Gets the JDBC url this pool connects to
+     *
+     * @return the database url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the maximum number of connections this pool will open
+     *
+     * @return the pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of connections currently waiting in the pool
+     *
+     * @return idle connection count
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of connections currently borrowed
+     *
+     * @return active connection count
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Gets the total number of successful acquires
+     *
+     * @return acquire count
+     */
+    public long getAcquireCount() {
+        return acquired.get();
+    }
+
+    /**
+     * Gets the number of acquires that gave up waiting for a connection
+     *
+     * @return acquire timeout count
+     */
+    public long getAcquireTimeoutCount() {
+        return acquireTimeouts.get();
+    }
+
+    /**
+     * Gets the total time callers spent waiting in acquire()
+     *
+     * @return wait time in nanoseconds
+     */
+    public long getAcquireWaitNanos() {
+        return acquireWaitNanos.get();
+    }
+
+    /**
+     * Gets the number of physical connections opened by this pool
+     *
+     * @return created connection count
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * Gets the number of physical connections closed by this pool
+     *
+     * @return discarded connection count
+     */
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    /**
+     * Gets the number of statement lookups served from a statement cache
+     *
+     * @return statement cache hit count
+     */
+    public long getStatementCacheHits() {
+        return statementHits.sum();
+    }
+
+    /**
+     * Gets the number of statement lookups that had to prepare a statement
+     *
+     * @return statement cache miss count
+     */
+    public long getStatementCacheMisses() {
+        return statementMisses.sum();
+    }
+
+    /**
+     * Summarizes the pool metrics in one line
+     *
+     * @return the pool metrics
+     */
+    public String getStats() {
+        return String.format(
+                "size=%d active=%d idle=%d acquired=%d timeouts=%d created=%d discarded=%d stmtHits=%d stmtMisses=%d",
+                maxSize, getActiveCount(), getIdleCount(), getAcquireCount(), getAcquireTimeoutCount(),
+                getCreatedCount(), getDiscardedCount(), getStatementCacheHits(), getStatementCacheMisses());
+    }
+}
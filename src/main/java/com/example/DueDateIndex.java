@@ -0,0 +1,100 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * DueDateIndex keeps the tasks with a due date sorted by that date
+ *
+ * Entries are ordered by epoch day and then by the position the task was
+ * added at, so a range of days is a sub-set found in O(log n) and walked in
+ * date order. Each entry points at its task, so nothing is looked up or
+ * copied per task. Tasks without a due date are not indexed. The tasks that
+ * are not completed are also kept in a second set, so overdue and next-due
+ * queries only walk open tasks, not the whole completed history. The sets are
+ * concurrent: readers never lock, and TaskManager's object store updates them
+ * under the same stripe locks as its maps. A task that is replaced is removed
+ * and added again.
+ */
+final class DueDateIndex {
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Entry> open = new ConcurrentSkipListSet<>();
+
+    /**
+     * Indexes a task if it has a due date, and among the open tasks if it is
+     * not completed
+     *
+     * @param seq  the position the task was added at in its store
+     * @param task the task
+     */
+    void add(long seq, TaskItem task) {
+        if (task.hasDueDate()) {
+            Entry entry = new Entry(task.getDueEpochDay(), seq, task);
+            entries.add(entry);
+            if (!task.isCompleted()) {
+                open.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes a task from the index
+     *
+     * @param seq  the position the task was added at in its store
+     * @param task the task, as it was indexed
+     */
+    void remove(long seq, TaskItem task) {
+        if (task.hasDueDate()) {
+            Entry entry = new Entry(task.getDueEpochDay(), seq, task);
+            entries.remove(entry);
+            open.remove(entry);
+        }
+    }
+
+    /**
+     * Gets the tasks due from one day up to another
+     *
+     * @param fromDay  first epoch day, inclusive
+     * @param toDay    last epoch day, inclusive
+     * @param openOnly whether to skip completed tasks
+     * @param limit    the maximum number of tasks
+     * @return the tasks, in due date order
+     */
+    List<TaskItem> between(int fromDay, int toDay, boolean openOnly, int limit) {
+        List<TaskItem> tasks = new ArrayList<>();
+        if (fromDay > toDay) {
+            return tasks;
+        }
+        ConcurrentSkipListSet<Entry> set = openOnly ? open : entries;
+        for (Entry entry : set.subSet(Entry.first(fromDay), true, Entry.first(toDay + 1L), false)) {
+            if (tasks.size() >= limit) {
+                break;
+            }
+            tasks.add(entry.task());
+        }
+        return tasks;
+    }
+
+    /**
+     * One indexed task: its due day, the position it was added at, and the task
+     *
+     * @param day  - The due date as days since 1970-01-01
+     * @param seq  - The position the task was added at; unique within a store
+     * @param task - The task; not part of the order
+     */
+    record Entry(long day, long seq, TaskItem task) implements Comparable<Entry> {
+
+        /** Sorts before every real entry due on the day */
+        static Entry first(long day) {
+            return new Entry(day, Long.MIN_VALUE, null);
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDay = Long.compare(day, other.day);
+            return byDay != 0 ? byDay : Long.compare(seq, other.seq);
+        }
+    }
+}
@@ -0,0 +1,1006 @@
+package com.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * JournalPersistence keeps tasks in memory and makes them durable with an
+ * append-only journal plus compacted snapshots
+ *
+ * Every change is one binary record appended to the current journal file
+ * through a FileChannel: [length][CRC32][op][payload]. A write is one
+ * sequential append instead of a SQL statement, and the file is forced to
+ * disk once every syncEvery writes (fsync batching); 1 forces every write and
+ * 0 leaves it to the operating system and close().
+ *
+ * When the journal grows past snapshotBytes, a background thread writes every
+ * task to a new snapshot file and starts a new journal generation. The
+ * snapshot is written to a temporary file, forced, and renamed over the old
+ * one, so a crash leaves either the old or the new snapshot; journals older
+ * than the snapshot are deleted only after the rename.
+ *
+ * Files are read on first use, through memory-mapped buffers: the snapshot,
+ * then every journal from the snapshot's generation on. A record that is cut
+ * off or fails its CRC ends the replay of its journal, and the file is
+ * truncated there, so a crash mid-write loses at most the unforced tail.
+ * A damaged snapshot stops the engine from opening rather than losing tasks.
+ *
+ * A task record carries the task's version after its name, marked by
+ * FLAG_VERSION; records written before versions existed read as the first
+ * version.
+ *
+ * Reads take a shared lock and writes an exclusive one.
+ */
+public class JournalPersistence implements TaskPersistence, AutoCloseable {
+
+    /** Default number of writes between forcing the journal to disk */
+    public static final int DEFAULT_SYNC_EVERY = 64;
+
+    /** Default journal size that triggers a snapshot */
+    public static final long DEFAULT_SNAPSHOT_BYTES = 64L * 1024 * 1024;
+
+    static final String SNAPSHOT_FILE = "tasks.snapshot";
+    static final String SNAPSHOT_TEMP_FILE = "tasks.snapshot.tmp";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+
+    private static final int SNAPSHOT_MAGIC = 0x54534B53;
+    private static final int FORMAT_VERSION = 1;
+    /** magic, version, generation, next id, count */
+    private static final int SNAPSHOT_HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+    /** length and CRC32 in front of every journal record */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    // RECORD TYPES
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    // TASK FLAGS
+    private static final byte FLAG_DUE_DATE = 1;
+    private static final byte FLAG_COMPLETED = 2;
+    private static final byte FLAG_VERSION = 4;
+
+    /** Rows copied per lock hold while streaming */
+    private static final int STREAM_CHUNK = 1_000;
+
+    private final Path dir;
+    private final int syncEvery;
+    private final long snapshotBytes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("task-journal-snapshot").daemon().factory());
+
+    // STATE, guarded by lock
+    private final TreeMap<Long, TaskItem> byId = new TreeMap<>();
+    private final HashMap<String, Long> idByKey = new HashMap<>();
+    private long nextId = 1;
+    private long generation = 1;
+    private FileChannel journal;
+    private long journalBytes = 0;
+    private int unsynced = 0;
+    private volatile boolean opened = false;
+    private volatile boolean closed = false;
+
+    // METRICS
+    private final LongAdder records = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+
+    /**
+     * Creates a journal engine storing its files in a directory. Nothing is
+     * read until the first call.
+     *
+     * @param dir           - The directory of the snapshot and journal files; created if missing
+     * @param syncEvery     - Writes between forcing the journal to disk; 0 to never force before close
+     * @param snapshotBytes - Journal size that triggers a snapshot
+     * @throws IllegalArgumentException if syncEvery is negative or snapshotBytes is not positive
+     */
+    public JournalPersistence(Path dir, int syncEvery, long snapshotBytes) throws IllegalArgumentException {
+        if (syncEvery < 0) {
+            throw new IllegalArgumentException("Sync interval cannot be negative.");
+        }
+        if (snapshotBytes < 1) {
+            throw new IllegalArgumentException("Snapshot size must be at least 1 byte.");
+        }
+        this.dir = dir;
+        this.syncEvery = syncEvery;
+        this.snapshotBytes = snapshotBytes;
+    }
+
+    // ------------------------
+    // Writes
+    // ------------------------
+
+    @Override
+    public int addTask(TaskItem task) {
+        return addTasks(List.of(task));
+    }
+
+    @Override
+    public int addTasks(Collection<TaskItem> tasks) {
+        ensureOpen();
+        int added;
+        lock.writeLock().lock();
+        try {
+            LinkedHashMap<String, TaskItem> accepted = new LinkedHashMap<>();
+            for (TaskItem task : tasks) {
+                String key = key(task.getName());
+                if (!idByKey.containsKey(key)) {
+                    accepted.putIfAbsent(key, task);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return 0;
+            }
+
+            List<byte[]> batch = new ArrayList<>(accepted.size());
+            long id = nextId;
+            for (TaskItem task : accepted.values()) {
+                batch.add(encodePut(id++, TaskItem.FIRST_VERSION, task));
+            }
+            if (!append(batch)) {
+                return 0;
+            }
+            for (Map.Entry<String, TaskItem> entry : accepted.entrySet()) {
+                entry.getValue().assignId(nextId);
+                entry.getValue().assignVersion(TaskItem.FIRST_VERSION);
+                byId.put(nextId, copy(entry.getValue()));
+                idByKey.put(entry.getKey(), nextId);
+                nextId++;
+            }
+            added = accepted.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshotIfLarge();
+        return added;
+    }
+
+    @Override
+    public int updateTask(TaskItem task) {
+        return updateTasks(List.of(task));
+    }
+
+    @Override
+    public int updateTasks(Collection<TaskItem> tasks) {
+        ensureOpen();
+        int updated;
+        lock.writeLock().lock();
+        try {
+            // Like the SQL UPDATE, only the completion status changes, and the version with it
+            LinkedHashMap<Long, TaskItem> changed = new LinkedHashMap<>();
+            for (TaskItem task : tasks) {
+                Long id = idByKey.get(key(task.getName()));
+                if (id != null) {
+                    TaskItem stored = changed.getOrDefault(id, byId.get(id));
+                    long version = stored.getVersion() + (stored.isCompleted() != task.isCompleted() ? 1 : 0);
+                    changed.put(id, TaskItem.ofTrusted(id, version, stored.getName(), stored.getDueEpochDay(),
+                            stored.hasDueDate(), task.isCompleted()));
+                }
+            }
+            if (changed.isEmpty()) {
+                return 0;
+            }
+
+            List<byte[]> batch = new ArrayList<>(changed.size());
+            changed.forEach((id, task) -> batch.add(encodePut(id, task.getVersion(), task)));
+            if (!append(batch)) {
+                return 0;
+            }
+            byId.putAll(changed);
+            updated = changed.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshotIfLarge();
+        return updated;
+    }
+
+    @Override
+    public int updateTaskFields(TaskItem task, Set<TaskPatch.Field> fields) {
+        ensureOpen();
+        lock.writeLock().lock();
+        try {
+            long id = task.getId();
+            TaskItem stored = byId.get(id);
+            if (stored == null || stored.getVersion() != task.getVersion() || fields.isEmpty()) {
+                return 0;
+            }
+            boolean moved = fields.contains(TaskPatch.Field.DUE_DATE);
+            TaskItem updated = TaskItem.ofTrusted(id, stored.getVersion() + 1,
+                    fields.contains(TaskPatch.Field.NAME) ? task.getName() : stored.getName(),
+                    moved ? task.getDueEpochDay() : stored.getDueEpochDay(),
+                    moved ? task.hasDueDate() : stored.hasDueDate(),
+                    fields.contains(TaskPatch.Field.COMPLETED) ? task.isCompleted() : stored.isCompleted());
+            // Like the unique index on name, a rename cannot take another task's name
+            Long owner = idByKey.get(key(updated.getName()));
+            if (owner != null && owner != id) {
+                return 0;
+            }
+
+            if (!append(List.of(encodePut(id, updated.getVersion(), updated)))) {
+                return 0;
+            }
+            put(id, updated);
+            task.assignVersion(updated.getVersion());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshotIfLarge();
+        return 1;
+    }
+
+    @Override
+    public int removeTaskById(long id, long version) {
+        ensureOpen();
+        lock.writeLock().lock();
+        try {
+            TaskItem stored = byId.get(id);
+            if (stored == null || version != 0 && stored.getVersion() != version
+                    || !append(List.of(encodeRemove(id)))) {
+                return 0;
+            }
+            byId.remove(id);
+            idByKey.remove(key(stored.getName()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshotIfLarge();
+        return 1;
+    }
+
+    @Override
+    public int removeTask(TaskItem task) {
+        return removeTasks(List.of(task));
+    }
+
+    @Override
+    public int removeTasks(Collection<TaskItem> tasks) {
+        ensureOpen();
+        int removed;
+        lock.writeLock().lock();
+        try {
+            LinkedHashMap<String, Long> matched = new LinkedHashMap<>();
+            for (TaskItem task : tasks) {
+                String key = key(task.getName());
+                Long id = idByKey.get(key);
+                if (id != null) {
+                    matched.put(key, id);
+                }
+            }
+            if (matched.isEmpty()) {
+                return 0;
+            }
+
+            List<byte[]> batch = new ArrayList<>(matched.size());
+            for (long id : matched.values()) {
+                batch.add(encodeRemove(id));
+            }
+            if (!append(batch)) {
+                return 0;
+            }
+            matched.forEach((key, id) -> {
+                idByKey.remove(key);
+                byId.remove(id);
+            });
+            removed = matched.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshotIfLarge();
+        return removed;
+    }
+
+    @Override
+    public int deleteAllData() {
+        ensureOpen();
+        lock.writeLock().lock();
+        try {
+            int rows = byId.size();
+            if (!append(List.of(frame(new byte[] { OP_CLEAR })))) {
+                return 0;
+            }
+            byId.clear();
+            idByKey.clear();
+            Logger.info("%d task(s) deleted from journal.", rows);
+            return rows;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces every journal write so far to disk
+     *
+     * @throws IOException if the journal cannot be forced
+     */
+    public void sync() throws IOException {
+        ensureOpen();
+        lock.writeLock().lock();
+        try {
+            forceJournal();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------
+    // Reads
+    // ------------------------
+
+    @Override
+    public TaskItem getTaskByName(String name) {
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            Long id = idByKey.get(key(name));
+            return id == null ? null : copy(byId.get(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TaskItem getTaskById(long id) {
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            TaskItem task = byId.get(id);
+            return task == null ? null : copy(task);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<TaskItem> getAllTasks() {
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            List<TaskItem> tasks = new ArrayList<>(byId.size());
+            for (TaskItem task : byId.values()) {
+                tasks.add(copy(task));
+            }
+            return tasks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TaskPage getTasksPage(TaskQuery query) {
+        ensureOpen();
+        List<TaskItem> tasks = new ArrayList<>();
+        long lastId = 0;
+        boolean hasMore = false;
+
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, TaskItem> entry : byId.tailMap(query.getAfterId(), false).entrySet()) {
+                if (!matches(entry.getValue(), query)) {
+                    continue;
+                }
+                if (tasks.size() == query.getLimit()) {
+                    hasMore = true;
+                    break;
+                }
+                lastId = entry.getKey();
+                tasks.add(copy(entry.getValue()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new TaskPage(tasks, hasMore ? Long.toString(lastId) : null);
+    }
+
+    @Override
+    public int streamTasks(TaskQuery query, TaskRowVisitor visitor) throws IOException {
+        ensureOpen();
+        long afterId = query.getAfterId();
+        int rows = 0;
+        while (true) {
+            // Copy a chunk under the lock and visit it outside, so a slow reader never blocks writers
+            List<Map.Entry<Long, TaskItem>> chunk = new ArrayList<>(STREAM_CHUNK);
+            lock.readLock().lock();
+            try {
+                for (Map.Entry<Long, TaskItem> entry : byId.tailMap(afterId, false).entrySet()) {
+                    if (matches(entry.getValue(), query)) {
+                        chunk.add(Map.entry(entry.getKey(), entry.getValue()));
+                        if (chunk.size() == STREAM_CHUNK) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            for (Map.Entry<Long, TaskItem> entry : chunk) {
+                TaskItem task = entry.getValue();
+                visitor.visit(entry.getKey(), task.getVersion(), task.getName(), task.getDueDate(), task.isCompleted());
+                rows++;
+            }
+            if (chunk.size() < STREAM_CHUNK) {
+                return rows;
+            }
+            afterId = chunk.get(chunk.size() - 1).getKey();
+        }
+    }
+
+    /**
+     * Checks a task against a query's filters, the way the SQL WHERE clause
+     * does: date filters never match a task without a due date
+     */
+    private static boolean matches(TaskItem task, TaskQuery query) {
+        if (query.getCompleted() != null && task.isCompleted() != query.getCompleted()) {
+            return false;
+        }
+        if (query.getDueBefore() != null
+                && (!task.hasDueDate() || task.getDueEpochDay() >= query.getDueBefore().toEpochDay())) {
+            return false;
+        }
+        if (query.getDueAfter() != null
+                && (!task.hasDueDate() || task.getDueEpochDay() <= query.getDueAfter().toEpochDay())) {
+            return false;
+        }
+        return query.getNamePrefix() == null || key(task.getName()).startsWith(key(query.getNamePrefix()));
+    }
+
+    // ------------------------
+    // Metrics
+    // ------------------------
+
+    /**
+     * Gets the number of records appended since the engine was created
+     *
+     * @return appended record count
+     */
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    /**
+     * Gets the number of times the journal was forced to disk
+     *
+     * @return sync count
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Gets the number of snapshots written
+     *
+     * @return snapshot count
+     */
+    public long getSnapshotCount() {
+        return snapshots.sum();
+    }
+
+    /**
+     * Gets the size of the current journal file
+     *
+     * @return bytes in the current journal
+     */
+    public long getJournalBytes() {
+        lock.readLock().lock();
+        try {
+            return journalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ------------------------
+    // Journal
+    // ------------------------
+
+    /**
+     * Appends records to the journal in one write and forces it when the sync
+     * interval is reached. On failure the journal is cut back to where it was,
+     * so no partial record is left for later records to follow.
+     *
+     * @param batch the framed records
+     * @return true if the records were written
+     */
+    private boolean append(List<byte[]> batch) {
+        int size = 0;
+        for (byte[] record : batch) {
+            size += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : batch) {
+            buffer.put(record);
+        }
+        buffer.flip();
+
+        long start = journalBytes;
+        try {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journalBytes += size;
+            records.add(batch.size());
+            unsynced++;
+            if (syncEvery > 0 && unsynced >= syncEvery) {
+                forceJournal();
+            }
+            return true;
+        } catch (IOException e) {
+            Logger.error("Failed to append " + batch.size() + " record(s) to the task journal", e);
+            try {
+                journal.truncate(start);
+                journal.position(start);
+            } catch (IOException truncateFailure) {
+                Logger.error("Failed to cut the task journal back to " + start + " bytes", truncateFailure);
+            }
+            return false;
+        }
+    }
+
+    private void forceJournal() throws IOException {
+        if (unsynced > 0) {
+            journal.force(false);
+            syncs.increment();
+            unsynced = 0;
+        }
+    }
+
+    private static byte[] encodePut(long id, long version, TaskItem task) {
+        byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + 1 + 4 + name.length + 8);
+        payload.put(OP_PUT).putLong(id).putInt(task.getDueEpochDay()).put(flags(task))
+                .putInt(name.length).put(name).putLong(version);
+        return frame(payload.array());
+    }
+
+    private static byte[] encodeRemove(long id) {
+        return frame(ByteBuffer.allocate(1 + 8).put(OP_REMOVE).putLong(id).array());
+    }
+
+    /**
+     * Puts the length and CRC32 in front of a record payload
+     */
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+    }
+
+    // ------------------------
+    // Snapshots
+    // ------------------------
+
+    /**
+     * Queues a snapshot on the background thread once the journal has grown
+     * past snapshotBytes
+     */
+    private void snapshotIfLarge() {
+        if (getJournalBytes() < snapshotBytes || !snapshotQueued.compareAndSet(false, true)) {
+            return;
+        }
+        snapshotter.execute(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                Logger.error("Task journal snapshot failed", e);
+            } finally {
+                snapshotQueued.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes every task to a new snapshot and deletes the journals it
+     * replaces. Writers only wait while the tasks are copied and the journal
+     * is switched, not while the snapshot is written.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        ensureOpen();
+        snapshotLock.lock();
+        try {
+            long[] ids;
+            TaskItem[] rows;
+            long snapshotNextId;
+            long snapshotGeneration;
+            lock.writeLock().lock();
+            try {
+                // TreeMap entries are live nodes that later puts and removes rewrite, so the
+                // ids and tasks are copied out here; stored tasks themselves are never changed
+                ids = new long[byId.size()];
+                rows = new TaskItem[byId.size()];
+                int i = 0;
+                for (Map.Entry<Long, TaskItem> entry : byId.entrySet()) {
+                    ids[i] = entry.getKey();
+                    rows[i++] = entry.getValue();
+                }
+                snapshotNextId = nextId;
+                snapshotGeneration = generation + 1;
+                FileChannel next = openJournal(snapshotGeneration);
+                forceJournal();
+                journal.close();
+                journal = next;
+                generation = snapshotGeneration;
+                journalBytes = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            Path temp = dir.resolve(SNAPSHOT_TEMP_FILE);
+            writeSnapshot(temp, snapshotGeneration, snapshotNextId, ids, rows);
+            Files.move(temp, dir.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory();
+            for (long old : journalGenerations()) {
+                if (old < snapshotGeneration) {
+                    Files.deleteIfExists(journalPath(old));
+                }
+            }
+            snapshots.increment();
+            Logger.info("Task journal snapshot of %d task(s) written in %d ms (generation %d)",
+                    rows.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), snapshotGeneration);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void writeSnapshot(Path file, long snapshotGeneration, long snapshotNextId, long[] ids, TaskItem[] rows)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            byte[] header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES).putInt(SNAPSHOT_MAGIC)
+                    .putInt(FORMAT_VERSION).putLong(snapshotGeneration).putLong(snapshotNextId)
+                    .putInt(rows.length).array();
+            crc.update(header);
+            out.write(header);
+
+            ByteBuffer row = ByteBuffer.allocate(256);
+            for (int i = 0; i < rows.length; i++) {
+                TaskItem task = rows[i];
+                byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+                if (row.capacity() < 25 + name.length) {
+                    row = ByteBuffer.allocate(25 + name.length);
+                }
+                row.clear();
+                row.putLong(ids[i]).putInt(task.getDueEpochDay()).put(flags(task))
+                        .putInt(name.length).put(name).putLong(task.getVersion());
+                crc.update(row.array(), 0, row.position());
+                out.write(row.array(), 0, row.position());
+            }
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    private void forceDirectory() {
+        // Makes the rename durable; not every platform can open a directory
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            Logger.warn("Could not force directory %s: %s", dir, e.getMessage());
+        }
+    }
+
+    // ------------------------
+    // Recovery
+    // ------------------------
+
+    /**
+     * Reads the files on first use
+     *
+     * @throws UncheckedIOException if the files cannot be read
+     * @throws IllegalStateException if the engine was closed
+     */
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Task journal is closed");
+        }
+        if (opened) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Task journal is closed");
+            }
+            if (!opened) {
+                recover();
+                opened = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the task journal in " + dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the snapshot, replays the journals written after it, and opens
+     * the newest journal for appending
+     */
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(SNAPSHOT_TEMP_FILE));
+
+        long snapshotGeneration = 1;
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            snapshotGeneration = readSnapshot(snapshot);
+        }
+
+        long replayed = 0;
+        generation = snapshotGeneration;
+        for (long gen : journalGenerations()) {
+            if (gen < snapshotGeneration) {
+                // Left behind by a crash between the snapshot rename and the cleanup
+                Files.deleteIfExists(journalPath(gen));
+                continue;
+            }
+            replayed += replay(journalPath(gen));
+            generation = Math.max(generation, gen);
+        }
+
+        journal = openJournal(generation);
+        journalBytes = journal.size();
+        journal.position(journalBytes);
+        Logger.info("Task journal opened with %d task(s): %d record(s) replayed in %d ms",
+                byId.size(), replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Loads a snapshot through a memory-mapped buffer
+     *
+     * @return the journal generation the snapshot was taken at
+     * @throws IOException if the snapshot is damaged
+     */
+    private long readSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < SNAPSHOT_HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " has an invalid size: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit((int) size - 4));
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException("Snapshot " + file + " failed its checksum");
+            }
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Snapshot " + file + " has an unknown format");
+            }
+
+            long snapshotGeneration = buffer.getLong();
+            nextId = buffer.getLong();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                put(id, readTask(buffer));
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * Applies the records of one journal through a memory-mapped buffer. The
+     * first record that is cut off or fails its CRC ends the replay, and the
+     * file is truncated before it.
+     *
+     * @return number of records applied
+     */
+    private long replay(Path file) throws IOException {
+        long size;
+        int end = 0;
+        long applied = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal " + file + " is too large: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 1 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum || !apply(payload)) {
+                    break;
+                }
+                buffer.position(buffer.position() + length);
+                end = buffer.position();
+                applied++;
+            }
+        }
+
+        if (end < size) {
+            Logger.warn("Journal %s: dropped %d byte(s) of torn or damaged records at offset %d",
+                    file.getFileName(), size - end, end);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies one journal record to the in-memory tasks
+     *
+     * @return false if the record type is unknown
+     */
+    private boolean apply(ByteBuffer payload) {
+        switch (payload.get()) {
+            case OP_PUT -> {
+                long id = payload.getLong();
+                put(id, readTask(payload));
+                nextId = Math.max(nextId, id + 1);
+            }
+            case OP_REMOVE -> {
+                TaskItem removed = byId.remove(payload.getLong());
+                if (removed != null) {
+                    idByKey.remove(key(removed.getName()));
+                }
+            }
+            case OP_CLEAR -> {
+                byId.clear();
+                idByKey.clear();
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(long id, TaskItem task) {
+        task.assignId(id);
+        TaskItem previous = byId.put(id, task);
+        if (previous != null) {
+            idByKey.remove(key(previous.getName()));
+        }
+        idByKey.put(key(task.getName()), id);
+    }
+
+    private static TaskItem readTask(ByteBuffer buffer) {
+        int dueDay = buffer.getInt();
+        byte flags = buffer.get();
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        long version = (flags & FLAG_VERSION) != 0 ? buffer.getLong() : TaskItem.FIRST_VERSION;
+        return TaskItem.ofTrusted(0, version, new String(name, StandardCharsets.UTF_8), dueDay,
+                (flags & FLAG_DUE_DATE) != 0, (flags & FLAG_COMPLETED) != 0);
+    }
+
+    // ------------------------
+    // Files
+    // ------------------------
+
+    private FileChannel openJournal(long gen) throws IOException {
+        FileChannel channel = FileChannel.open(journalPath(gen),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private Path journalPath(long gen) {
+        return dir.resolve(String.format("%s%020d%s", JOURNAL_PREFIX, gen, JOURNAL_SUFFIX));
+    }
+
+    /**
+     * Lists the generations of the journal files in the directory
+     *
+     * @return the generations, oldest first
+     */
+    private List<Long> journalGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)) {
+                    try {
+                        generations.add(Long.parseLong(
+                                name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        Logger.warn("Ignoring unexpected file in the task journal directory: %s", name);
+                    }
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    /**
+     * Forces the journal to disk and closes it. A snapshot in progress is
+     * finished first.
+     */
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (journal != null) {
+                forceJournal();
+                journal.close();
+            }
+            Logger.info("Task journal closed (records=%d syncs=%d snapshots=%d)",
+                    records.sum(), syncs.sum(), snapshots.sum());
+        } catch (IOException e) {
+            Logger.error("Failed to close the task journal", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------
+    // Helpers
+    // ------------------------
+
+    private static byte flags(TaskItem task) {
+        return (byte) (FLAG_VERSION | (task.hasDueDate() ? FLAG_DUE_DATE : 0)
+                | (task.isCompleted() ? FLAG_COMPLETED : 0));
+    }
+
+    private static TaskItem copy(TaskItem task) {
+        return TaskItem.ofTrusted(task.getId(), task.getVersion(), task.getName(), task.getDueEpochDay(),
+                task.hasDueDate(), task.isCompleted());
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts durations in log-linear buckets, like an HDR
+ * histogram
+ *
+ * Every power of two is split into 32 equal buckets, so a percentile read
+ * back is at most about 3% above the true value, from nanoseconds up to
+ * about 18 minutes; longer durations land in the last bucket. The buckets
+ * are one fixed AtomicLongArray, so record() never allocates or locks and
+ * many threads can record at once. Percentiles are computed when read.
+ */
+public class LatencyHistogram implements Metrics.LatencyMXBean {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Largest recorded value, 2^40 ns; larger ones are clamped */
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration
+     *
+     * @param nanos the duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until the larger value is stored
+        }
+    }
+
+    /**
+     * Records the time since a System.nanoTime() reading
+     *
+     * @param startNanos the reading taken when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the number of recorded durations
+     *
+     * @return the count
+     */
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the total of the recorded durations
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest recorded duration
+     *
+     * @return the maximum in nanoseconds; 0 if nothing was recorded
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Gets the duration below which a share of the recorded durations fall
+     *
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding that percentile, in
+     *         nanoseconds; 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = getCount();
+        return n == 0 ? 0 : toMillis(getSumNanos()) / n;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return toMillis(getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getP99Millis() {
+        return toMillis(getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getP999Millis() {
+        return toMillis(getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return toMillis(getMaxNanos());
+    }
+
+    /**
+     * Finds the bucket of a value: values below 64 have their own bucket,
+     * larger ones share one of 32 buckets per power of two
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the largest value that falls in a bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
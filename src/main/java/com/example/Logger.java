@@ -1,67 +1,419 @@
 package com.example;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Logger is a helper class for logging messages to the console.
  * Provides methods to log INFO, WARNING, and ERROR messages with timestamps.
+ *
+ * Logging is asynchronous: callers only check the level and put an event into
+ * a bounded lock-free ring buffer. A background writer thread formats events
+ * and prints them in batches, so request threads never wait on the console.
+ * When the buffer is full, events are dropped or the caller waits, depending
+ * on the overflow policy; ERROR events are never dropped, their caller waits.
+ *
+ * Format arguments that are Strings or boxed primitives are formatted on the
+ * writer thread. Any other argument may change after the call, so a message
+ * with one is formatted on the caller's thread instead.
  */
 public class Logger {
 
+    /** Log levels, from most to least verbose */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /** What a caller does when the ring buffer is full */
+    public enum OverflowPolicy {
+        /** Discard the event and count it as dropped */
+        DROP,
+        /** Wait until the writer thread frees a slot */
+        BLOCK
+    }
+
+    /** Number of events the ring buffer holds; a power of two */
+    static final int CAPACITY = 8192;
+
+    /** Maximum number of events printed per batch */
+    private static final int BATCH_SIZE = 256;
+
+    /** How long the idle writer sleeps before checking the buffer again */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     /** Formatter for timestamps in log messages */
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static volatile Level level = Level.INFO;
+    private static volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    private static final RingBuffer buffer = new RingBuffer(CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile boolean writerSleeping = false;
+    /** Sequence up to which events have been printed; written by the writer thread */
+    private static volatile long printed = 0;
+    private static final Thread writer;
+
+    /** Epoch second of the cached timestamp; only used by the writer thread */
+    private static long cachedSecond = Long.MIN_VALUE;
+    private static String cachedTimestamp = "";
+
+    static {
+        writer = new Thread(Logger::writeLoop, "logger-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1_000), "logger-shutdown"));
+    }
+
     /** Private constructor to prevent instantiation */
     private Logger() {
     }
 
     /**
      * Logs an informational message
-     * 
+     *
      * @param message The message to log
      */
     public static void info(String message) {
-        System.out.println(formatMessage("INFO", message));
+        log(Level.INFO, message, null, null);
+    }
+
+    /**
+     * Logs an informational message built with String.format. The message is
+     * only formatted if INFO is enabled.
+     *
+     * @param format The format string
+     * @param args   The format arguments
+     */
+    public static void info(String format, Object... args) {
+        log(Level.INFO, format, args, null);
     }
 
     /**
      * Logs a warning message
-     * 
+     *
      * @param message The message to log
      */
     public static void warn(String message) {
-        System.out.println(formatMessage("WARN", message));
+        log(Level.WARN, message, null, null);
+    }
+
+    /**
+     * Logs a warning message built with String.format. The message is only
+     * formatted if WARN is enabled.
+     *
+     * @param format The format string
+     * @param args   The format arguments
+     */
+    public static void warn(String format, Object... args) {
+        log(Level.WARN, format, args, null);
     }
 
     /**
      * Logs an error message
-     * 
+     *
      * @param message The message to log
      */
     public static void error(String message) {
-        System.err.println(formatMessage("ERROR", message));
+        log(Level.ERROR, message, null, null);
     }
 
     /**
      * Logs an error message along with an exception stack trace
-     * 
+     *
      * @param message The message to log
      * @param e       The exception to log
      */
     public static void error(String message, Exception e) {
-        System.err.println(formatMessage("ERROR", message));
-        e.printStackTrace(System.err);
+        log(Level.ERROR, message, null, e);
+    }
+
+    /**
+     * Checks if messages of a level are currently logged
+     *
+     * @param candidate The level to check
+     * @return true if messages of that level are logged
+     */
+    public static boolean isEnabled(Level candidate) {
+        return candidate != Level.OFF && candidate.ordinal() >= level.ordinal();
+    }
+
+    /**
+     * Sets the minimum level that is logged
+     *
+     * @param newLevel The new minimum level
+     */
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Sets what happens to events below ERROR when the ring buffer is full
+     *
+     * @param policy The new overflow policy
+     */
+    public static void setOverflowPolicy(OverflowPolicy policy) {
+        overflowPolicy = policy;
+    }
+
+    /**
+     * Gets the number of events discarded because the ring buffer was full
+     *
+     * @return dropped event count
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until every event logged so far has been printed
+     *
+     * @param timeoutMillis How long to wait at most
+     * @return true if the buffer was drained in time
+     */
+    public static boolean flush(long timeoutMillis) {
+        long target = buffer.claimed();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        LockSupport.unpark(writer);
+        while (printed < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /**
+     * Puts an event into the ring buffer if its level is enabled
+     *
+     * @param eventLevel The level of the event
+     * @param message    The message, or a format string if args is not null
+     * @param args       Format arguments, or null
+     * @param error      The exception to print, or null
+     */
+    private static void log(Level eventLevel, String message, Object[] args, Throwable error) {
+        if (!isEnabled(eventLevel)) {
+            return;
+        }
+        if (args != null && !allImmutable(args)) {
+            message = format(message, args);
+            args = null;
+        }
+        Event event = new Event(System.currentTimeMillis(), eventLevel, message, args, error);
+
+        if (!buffer.offer(event)) {
+            if (overflowPolicy == OverflowPolicy.DROP && eventLevel != Level.ERROR) {
+                dropped.incrementAndGet();
+                return;
+            }
+            while (!buffer.offer(event)) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(10_000);
+            }
+        }
+        if (writerSleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Checks if format arguments can still be formatted later: Strings and
+     * boxed primitives never change
+     *
+     * @param args The format arguments
+     * @return true if every argument is immutable
+     */
+    private static boolean allImmutable(Object[] args) {
+        for (Object arg : args) {
+            if (!(arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+                    || arg instanceof Double || arg instanceof Float || arg instanceof Short
+                    || arg instanceof Byte || arg instanceof Character || arg instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds a message with String.format, keeping the format string if the
+     * arguments do not fit it
+     *
+     * @param format The format string
+     * @param args   The format arguments
+     * @return the message
+     */
+    private static String format(String format, Object[] args) {
+        try {
+            return String.format(format, args);
+        } catch (RuntimeException e) {
+            return format + " (bad log format: " + e.getMessage() + ")";
+        }
+    }
+
+    // ------------------------
+    // Writer thread
+    // ------------------------
+
+    private static void writeLoop() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        StringBuilder err = new StringBuilder(4 * 1024);
+        long reportedDrops = 0;
+
+        while (true) {
+            int written = 0;
+            Event event;
+            while (written < BATCH_SIZE && (event = buffer.poll()) != null) {
+                append(event.level == Level.ERROR ? err : out, event);
+                written++;
+            }
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                append(err, new Event(System.currentTimeMillis(), Level.WARN,
+                        "Logger dropped " + (drops - reportedDrops) + " event(s); ring buffer full", null, null));
+                reportedDrops = drops;
+            }
+
+            print(System.out, out);
+            print(System.err, err);
+            printed = buffer.consumed();
+
+            if (written == 0) {
+                writerSleeping = true;
+                if (buffer.isEmpty()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerSleeping = false;
+            }
+        }
+    }
+
+    private static void print(PrintStream stream, StringBuilder text) {
+        if (text.length() == 0) {
+            return;
+        }
+        stream.print(text);
+        stream.flush();
+        text.setLength(0);
     }
 
     /**
      * Formats the log message with a timestamp and log level
-     * 
-     * @param level   The log level (INFO, WARN, ERROR)
-     * @param message The message to log
-     * @return Formatted log string
+     *
+     * @param target The batch the line is appended to
+     * @param event  The event to format
+     */
+    private static void append(StringBuilder target, Event event) {
+        String message = event.args == null ? event.message : format(event.message, event.args);
+        target.append('[').append(timestamp(event.timeMillis)).append("] [")
+                .append(event.level.name()).append("] ").append(message).append(System.lineSeparator());
+        if (event.error != null) {
+            StringWriter trace = new StringWriter();
+            event.error.printStackTrace(new PrintWriter(trace));
+            target.append(trace);
+        }
+    }
+
+    /**
+     * Gets the formatted timestamp, reusing it for every event in the same second
+     *
+     * @param timeMillis The event time
+     * @return the formatted timestamp
+     */
+    private static String timestamp(long timeMillis) {
+        long second = Math.floorDiv(timeMillis, 1000);
+        if (second != cachedSecond) {
+            cachedTimestamp = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+                    .format(formatter);
+            cachedSecond = second;
+        }
+        return cachedTimestamp;
+    }
+
+    /**
+     * One log call, formatted later by the writer thread
+     */
+    static final class Event {
+        final long timeMillis;
+        final Level level;
+        final String message;
+        final Object[] args;
+        final Throwable error;
+
+        Event(long timeMillis, Level level, String message, Object[] args, Throwable error) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.message = message;
+            this.args = args;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring buffer
+     *
+     * Producers claim a sequence number with a CAS on the tail and then publish
+     * the event into its slot. The writer thread is the only consumer: it takes
+     * the event at the head, clears the slot, and advances the head.
      */
-    private static String formatMessage(String level, String message) {
-        return String.format("[%s] [%s] %s",
-                LocalDateTime.now().format(formatter), level, message);
+    static final class RingBuffer {
+        private final AtomicReferenceArray<Event> slots;
+        private final int capacity;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong head = new AtomicLong();
+
+        RingBuffer(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+        }
+
+        boolean offer(Event event) {
+            while (true) {
+                long claim = tail.get();
+                if (claim - head.get() >= capacity) {
+                    return false;
+                }
+                if (tail.compareAndSet(claim, claim + 1)) {
+                    slots.lazySet((int) (claim & mask), event);
+                    return true;
+                }
+            }
+        }
+
+        Event poll() {
+            long current = head.get();
+            int index = (int) (current & mask);
+            // Null means empty, or a producer claimed the slot but has not published yet
+            Event event = slots.get(index);
+            if (event == null) {
+                return null;
+            }
+            slots.lazySet(index, null);
+            head.lazySet(current + 1);
+            return event;
+        }
+
+        boolean isEmpty() {
+            return head.get() == tail.get();
+        }
+
+        long claimed() {
+            return tail.get();
+        }
+
+        long consumed() {
+            return head.get();
+        }
     }
 }
@@ -0,0 +1,247 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics is the registry of counters, gauges, and latency histograms
+ *
+ * Each layer registers its metrics once, when its class is loaded or its
+ * server starts, and keeps the returned LongAdder or LatencyHistogram in a
+ * field, so recording on the hot path is an add without a lookup or an
+ * allocation. Metrics with the same name form a family and differ by one
+ * label, such as endpoint="GET /tasks".
+ *
+ * scrape() renders every metric in the Prometheus text format for GET
+ * /metrics; histograms become summaries with p50, p99, and p999 in seconds.
+ * The same values are registered as JMX MBeans under com.example: one
+ * LatencyMXBean per histogram and one MetricsMXBean with every counter and
+ * gauge.
+ */
+public final class Metrics {
+
+    /** The JMX view of a latency histogram, in milliseconds */
+    public interface LatencyMXBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP99Millis();
+
+        double getP999Millis();
+
+        double getMaxMillis();
+    }
+
+    /** The JMX view of every counter and gauge, keyed by name{label} */
+    public interface MetricsMXBean {
+        Map<String, Double> getValues();
+    }
+
+    private static final String JMX_DOMAIN = "com.example";
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    private enum Type {
+        COUNTER, GAUGE, SUMMARY
+    }
+
+    /**
+     * One metric family: its help text, type, and a value per label
+     */
+    private record Family(String help, Type type, Map<String, Object> series) {
+    }
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    static {
+        register(objectName(JMX_DOMAIN + ":type=Metrics"), new Values());
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets or creates a counter
+     *
+     * @param name  the family name, ending in _total
+     * @param help  what the counter counts
+     * @param label the label, such as statement="insert"; null for none
+     * @return the counter; the same one for the same name and label
+     */
+    public static LongAdder counter(String name, String help, String label) {
+        return (LongAdder) family(name, help, Type.COUNTER).series()
+                .computeIfAbsent(key(label), k -> new LongAdder());
+    }
+
+    /**
+     * Registers a counter whose value is read from elsewhere when scraped,
+     * replacing any registered under the same name and label
+     *
+     * @param name  the family name, ending in _total
+     * @param help  what the counter counts
+     * @param label the label; null for none
+     * @param value reads the current count
+     */
+    public static void counter(String name, String help, String label, DoubleSupplier value) {
+        family(name, help, Type.COUNTER).series().put(key(label), value);
+    }
+
+    /**
+     * Registers a gauge read when scraped, replacing any registered under the
+     * same name and label
+     *
+     * @param name  the family name
+     * @param help  what the gauge measures
+     * @param label the label; null for none
+     * @param value reads the current value
+     */
+    public static void gauge(String name, String help, String label, DoubleSupplier value) {
+        family(name, help, Type.GAUGE).series().put(key(label), value);
+    }
+
+    /**
+     * Gets or creates a latency histogram and registers it as an MBean
+     *
+     * @param name  the family name, ending in _seconds
+     * @param help  what is timed
+     * @param label the label, such as endpoint="GET /tasks"; null for none
+     * @return the histogram; the same one for the same name and label
+     */
+    public static LatencyHistogram latency(String name, String help, String label) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).series().computeIfAbsent(key(label), k -> {
+            LatencyHistogram histogram = new LatencyHistogram();
+            register(latencyName(name, k), histogram);
+            return histogram;
+        });
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format
+     *
+     * @return the metrics, one family after another
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type().name().toLowerCase(Locale.ROOT))
+                    .append('\n');
+            new TreeMap<>(family.series()).forEach((label, value) -> {
+                if (value instanceof LatencyHistogram histogram) {
+                    for (double quantile : QUANTILES) {
+                        sample(out, name, join(label, "quantile=\"" + quantile + "\""),
+                                histogram.getValueAtPercentile(quantile * 100) / 1e9);
+                    }
+                    sample(out, name + "_sum", label, histogram.getSumNanos() / 1e9);
+                    sample(out, name + "_count", label, histogram.getCount());
+                } else {
+                    sample(out, name, label, read(value));
+                }
+            });
+        });
+        return out.toString();
+    }
+
+    // ------------------------
+    // Helpers
+    // ------------------------
+
+    private static Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(help, type, new ConcurrentHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type());
+        }
+        return family;
+    }
+
+    private static Map<String, Double> values() {
+        Map<String, Double> values = new TreeMap<>();
+        families.forEach((name, family) -> {
+            if (family.type() != Type.SUMMARY) {
+                family.series().forEach((label, value) ->
+                        values.put(label.isEmpty() ? name : name + "{" + label + "}", read(value)));
+            }
+        });
+        return values;
+    }
+
+    private static double read(Object value) {
+        if (value instanceof LongAdder adder) {
+            return adder.sum();
+        }
+        return ((DoubleSupplier) value).getAsDouble();
+    }
+
+    private static void sample(StringBuilder out, String name, String label, double value) {
+        out.append(name);
+        if (!label.isEmpty()) {
+            out.append('{').append(label).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String join(String label, String extra) {
+        return label.isEmpty() ? extra : label + "," + extra;
+    }
+
+    private static String key(String label) {
+        return label == null ? "" : label;
+    }
+
+    /**
+     * Builds the MBean name of a histogram, such as
+     * com.example:type=Latency,name=tasks_http_request_seconds,endpoint="GET /tasks"
+     */
+    private static ObjectName latencyName(String name, String label) {
+        StringBuilder text = new StringBuilder(JMX_DOMAIN).append(":type=Latency,name=").append(name);
+        if (!label.isEmpty()) {
+            int equals = label.indexOf('=');
+            text.append(',').append(label, 0, equals).append('=')
+                    .append(ObjectName.quote(label.substring(equals + 1).replace("\"", "")));
+        }
+        return objectName(text.toString());
+    }
+
+    private static ObjectName objectName(String text) {
+        try {
+            return new ObjectName(text);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + text, e);
+        }
+    }
+
+    private static void register(ObjectName name, Object bean) {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException e) {
+            Logger.warn("Could not register MBean %s: %s", name, e.getMessage());
+        }
+    }
+
+    /** The registered MetricsMXBean */
+    private static final class Values implements MetricsMXBean {
+        @Override
+        public Map<String, Double> getValues() {
+            return values();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A connection borrowed from a ConnectionPool
+ *
+ * Closing a PooledConnection returns it to the pool instead of closing the
+ * underlying SQLite connection, so it can be used in try-with-resources just
+ * like a plain JDBC connection. Each pooled connection also owns a
+ * StatementCache so repeated queries skip statement compilation.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection raw;
+    private final StatementCache statements;
+    private long lastReturnedNanos = System.nanoTime();
+    private boolean borrowed = false;
+
+    PooledConnection(ConnectionPool pool, Connection raw, StatementCache statements) {
+        this.pool = pool;
+        this.raw = raw;
+        this.statements = statements;
+    }
+
+    /**
+     * Gets a cached prepared statement for the SQL, preparing it on first use
+     *
+     * The statement stays owned by this connection: callers must close the
+     * ResultSets they open but never the statement itself.
+     *
+     * @param sql The SQL query with ? placeholders
+     * @return the cached prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepareCached(String sql) throws SQLException {
+        return statements.get(sql);
+    }
+
+    /**
+     * Prepares a statement on the underlying connection
+     *
+     * @param sql The SQL query with ? placeholders
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return raw.prepareStatement(sql);
+    }
+
+    /**
+     * Creates a plain statement on the underlying connection
+     *
+     * @return the statement
+     * @throws SQLException if the statement cannot be created
+     */
+    public Statement createStatement() throws SQLException {
+        return raw.createStatement();
+    }
+
+    /**
+     * Gets the underlying JDBC connection. It must not be closed by the caller.
+     *
+     * @return the raw connection
+     */
+    public Connection getRaw() {
+        return raw;
+    }
+
+    /**
+     * Returns this connection to its pool
+     */
+    @Override
+    public void close() {
+        if (!borrowed) {
+            return;
+        }
+        borrowed = false;
+        lastReturnedNanos = System.nanoTime();
+        pool.release(this);
+    }
+
+    void markBorrowed() {
+        borrowed = true;
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastReturnedNanos;
+    }
+
+    /**
+     * Closes every cached statement; called before the connection is discarded
+     */
+    void closeStatements() {
+        statements.clear();
+    }
+
+    /**
+     * Rolls back any transaction left open by the borrower
+     *
+     * @return true if the connection can be reused
+     */
+    boolean resetForReuse() {
+        try {
+            if (raw.isClosed()) {
+                return false;
+            }
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            Logger.warn("Discarding pooled connection: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ResponseCache keeps the encoded response body of the latest task list
+ * version, so repeated GET /tasks polls are answered without serializing
+ *
+ * Only one version is kept: once the tasks change, an older body is never
+ * sent again. The compressed forms of the body are built the first time a
+ * client asks for them and kept with it.
+ */
+final class ResponseCache {
+
+    private static final LongAdder hits = Metrics.counter("tasks_http_response_cache_total",
+            "GET /tasks bodies served from the response cache (hit) or encoded (miss)", "result=\"hit\"");
+    private static final LongAdder misses = Metrics.counter("tasks_http_response_cache_total",
+            "GET /tasks bodies served from the response cache (hit) or encoded (miss)", "result=\"miss\"");
+
+    /**
+     * An encoded body and its compressed forms
+     */
+    static final class Entry {
+        private final long version;
+        private final byte[] body;
+        private final AtomicReferenceArray<byte[]> compressed =
+                new AtomicReferenceArray<>(WireFormat.Coding.values().length);
+
+        /**
+         * Creates an entry
+         *
+         * @param version the task list version the body shows; -1 if it is not cached
+         * @param body    the encoded body
+         */
+        Entry(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+
+        /**
+         * Gets the encoded body
+         *
+         * @return the body, uncompressed
+         */
+        byte[] body() {
+            return body;
+        }
+
+        /**
+         * Gets the body compressed with a coding, compressing it on first use
+         *
+         * @param coding the content coding
+         * @return the compressed body; body() for IDENTITY
+         */
+        byte[] compressed(WireFormat.Coding coding) {
+            byte[] bytes = compressed.get(coding.ordinal());
+            if (bytes == null) {
+                bytes = WireFormat.compress(body, coding);
+                compressed.set(coding.ordinal(), bytes);
+            }
+            return bytes;
+        }
+    }
+
+    private volatile Entry latest = new Entry(Long.MIN_VALUE, new byte[0]);
+
+    /**
+     * Gets the body for a version, encoding it if the cache holds another
+     * version. Two threads missing at once both encode. The tasks are read
+     * after the version, so a body is never older than its version; one
+     * that is newer is only ever sent until the next poll sees the newer
+     * version.
+     *
+     * @param version the task list version, as read before the tasks; -1
+     *                encodes without caching
+     * @param encoder encodes the current tasks
+     * @return the entry for the version
+     */
+    Entry get(long version, Supplier<byte[]> encoder) {
+        if (version < 0) {
+            return new Entry(-1, encoder.get());
+        }
+        Entry entry = latest;
+        if (entry.version == version) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = new Entry(version, encoder.get());
+        if (version > latest.version) {
+            latest = entry;
+        }
+        return entry;
+    }
+}
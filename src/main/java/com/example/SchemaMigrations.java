@@ -0,0 +1,180 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SchemaMigrations brings the tasks database up to the latest schema
+ *
+ * The applied version is kept in the 'schema_version' table. Migrations run
+ * in order, each in its own transaction, and every migration is only ever
+ * applied once. New schema changes are added to the end of MIGRATIONS with the
+ * next version number. Existing migrations are only edited to keep them from
+ * losing data, never to change the schema they produce.
+ */
+public class SchemaMigrations {
+
+    /** SQLite expression turning an MM-dd-yyyy string into days since 1970-01-01 */
+    private static final String EPOCH_DAY_OF_DUE_DATE = "CAST(julianday(substr(dueDate, 7, 4) || '-' || "
+            + "substr(dueDate, 1, 2) || '-' || substr(dueDate, 4, 2)) - 2440587.5 AS INTEGER)";
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create tasks table",
+                    "CREATE TABLE IF NOT EXISTS tasks (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "name TEXT NOT NULL," +
+                            "dueDate TEXT," +
+                            "completed INTEGER DEFAULT 0" +
+                            ")"),
+            new Migration(2, "Unique case-insensitive index on task name", SchemaMigrations::renameDuplicateNames,
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_tasks_name ON tasks(name COLLATE NOCASE)"),
+            new Migration(3, "Index task completion status",
+                    "CREATE INDEX IF NOT EXISTS idx_tasks_completed ON tasks(completed)"),
+            new Migration(4, "Sortable epoch-day due date column",
+                    "ALTER TABLE tasks ADD COLUMN dueDay INTEGER",
+                    "UPDATE tasks SET dueDay = " + EPOCH_DAY_OF_DUE_DATE + " WHERE dueDate IS NOT NULL",
+                    "CREATE INDEX IF NOT EXISTS idx_tasks_due_day ON tasks(dueDay)"),
+            new Migration(5, "Per-task version for optimistic concurrency",
+                    "ALTER TABLE tasks ADD COLUMN version INTEGER NOT NULL DEFAULT 1"));
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Applies every migration newer than the database's current version
+     *
+     * @param conn The connection to migrate; it must be in autocommit mode
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails; it is rolled back
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY," +
+                    "description TEXT," +
+                    "appliedAt TEXT DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }
+
+        int current = currentVersion(conn);
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) {
+                continue;
+            }
+            apply(conn, migration);
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Gets the newest migration version applied to the database
+     *
+     * @param conn The connection to check
+     * @return the schema version; 0 if no migration has been applied
+     * @throws SQLException if the version table cannot be read
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Gets the version the newest migration brings the schema to
+     *
+     * @return the latest schema version
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /**
+     * Makes task names unique regardless of case before the unique index is
+     * built. The oldest task keeps its name; every later one gets its id
+     * appended, e.g. 'Homework (7)', and each rename is logged. If a new name
+     * is taken as well, building the index fails and the migration is rolled
+     * back, so nothing is lost either way.
+     *
+     * @param conn The connection, inside the migration's transaction
+     * @throws SQLException if the tasks cannot be read or renamed
+     */
+    private static void renameDuplicateNames(Connection conn) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT id, name FROM tasks WHERE id NOT IN "
+                        + "(SELECT MIN(id) FROM tasks GROUP BY name COLLATE NOCASE) ORDER BY id")) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+                names.add(rs.getString(2));
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE tasks SET name = ? WHERE id = ?")) {
+            for (int i = 0; i < ids.size(); i++) {
+                String renamed = names.get(i) + " (" + ids.get(i) + ")";
+                pstmt.setString(1, renamed);
+                pstmt.setLong(2, ids.get(i));
+                pstmt.executeUpdate();
+                Logger.warn("Renamed task %d from '%s' to '%s': another task has the same name", ids.get(i),
+                        names.get(i), renamed);
+            }
+        }
+        Logger.warn("%d task(s) with a duplicate name renamed before adding the unique name index", ids.size());
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            if (migration.prepare() != null) {
+                migration.prepare().run(conn);
+            }
+            for (String sql : migration.statements()) {
+                stmt.execute(sql);
+            }
+            stmt.execute("INSERT INTO schema_version(version, description) VALUES(" +
+                    migration.version() + ", '" + migration.description() + "')");
+            conn.commit();
+            Logger.info("Applied schema migration " + migration.version() + ": " + migration.description());
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * One ordered schema change
+     *
+     * @param version     - The version the schema is at once this migration ran
+     * @param description - A short description stored in 'schema_version'
+     * @param prepare     - Runs before the statements, in the same transaction; may be null
+     * @param statements  - The SQL statements to run, in order
+     */
+    private record Migration(int version, String description, Step prepare, String... statements) {
+
+        Migration(int version, String description, String... statements) {
+            this(version, description, null, statements);
+        }
+    }
+
+    /**
+     * A migration step that needs more than fixed SQL
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run(Connection conn) throws SQLException;
+    }
+}
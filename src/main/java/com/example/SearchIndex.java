@@ -0,0 +1,240 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * SearchIndex finds tasks whose name, or a word in it, starts with a query
+ *
+ * Two sorted sets act as a prefix trie: one holds every normalized name, the
+ * other one entry per distinct word of each name, ordered by the word and then
+ * the name. A word entry points into the name it was found in instead of
+ * copying the word, and the names are the same String instances the object
+ * store keys its map with, so indexing a task copies no text. A prefix is a
+ * range of either set, found in O(log n) and walked in order, so a search
+ * reads only about as many entries as it returns. Words are runs of letters
+ * and digits.
+ *
+ * Results are ranked: an exact name match first, then names starting with
+ * the query, then names with a word starting with it. A query of several words
+ * matches names where every query word starts some word of the name.
+ * ColumnarTaskStore ranks the same way over its own slot lists and shares the
+ * static helpers.
+ */
+final class SearchIndex {
+
+    private final ConcurrentSkipListSet<String> names = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Word> words = new ConcurrentSkipListSet<>();
+
+    /**
+     * Indexes a task's name
+     *
+     * @param key the normalized name
+     */
+    void add(String key) {
+        names.add(key);
+        for (int start : wordStarts(key)) {
+            words.add(new Word(key, start, key));
+        }
+    }
+
+    /**
+     * Removes a task's name from the index
+     *
+     * @param key the normalized name
+     */
+    void remove(String key) {
+        names.remove(key);
+        for (int start : wordStarts(key)) {
+            words.remove(new Word(key, start, key));
+        }
+    }
+
+    /**
+     * Finds the normalized names matching a query, best matches first
+     *
+     * @param query the search text; case does not matter
+     * @param limit the maximum number of names
+     * @return the matching names
+     */
+    List<String> search(String query, int limit) {
+        String q = TaskManager.key(query.strip());
+        if (q.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        List<String> queryWords = tokenize(q);
+        Set<String> found = new LinkedHashSet<>();
+
+        // 1. The exact name, then 2. names starting with the query
+        if (names.contains(q)) {
+            found.add(q);
+        }
+        for (String name : names.tailSet(q, true)) {
+            if (found.size() >= limit || !name.startsWith(q)) {
+                break;
+            }
+            found.add(name);
+        }
+        if (found.size() >= limit || queryWords.isEmpty()) {
+            return new ArrayList<>(found);
+        }
+
+        // 3. Names with a word starting with the longest query word and
+        //    every other query word starting some word of the name
+        String anchor = anchor(queryWords);
+        for (Word word : words.tailSet(new Word(anchor, 0, ""), true)) {
+            if (found.size() >= limit || !word.text().startsWith(anchor, word.start())) {
+                break;
+            }
+            if (matchesAll(word.key(), queryWords)) {
+                found.add(word.key());
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Picks the query word to walk the word entries by: the longest, since it
+     * matches the fewest words
+     *
+     * @param queryWords the words of the query; not empty
+     * @return the longest word
+     */
+    static String anchor(List<String> queryWords) {
+        String anchor = queryWords.get(0);
+        for (String word : queryWords) {
+            if (word.length() > anchor.length()) {
+                anchor = word;
+            }
+        }
+        return anchor;
+    }
+
+    /**
+     * Checks that every query word starts some word of a name
+     *
+     * @param name       the normalized name
+     * @param queryWords the words of the query
+     * @return true if every query word matches
+     */
+    static boolean matchesAll(String name, List<String> queryWords) {
+        List<String> tokens = tokenize(name);
+        for (String queryWord : queryWords) {
+            boolean matched = false;
+            for (String token : tokens) {
+                if (token.startsWith(queryWord)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a normalized name into its words: runs of letters and digits
+     *
+     * @param text the normalized name
+     * @return the words, in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(text.substring(start));
+        }
+        return tokens;
+    }
+
+    /**
+     * Finds where the words of a normalized name start, skipping a word that
+     * already appeared earlier in the name
+     *
+     * @param text the normalized name
+     * @return the char index of each distinct word, in order
+     */
+    static int[] wordStarts(String text) {
+        int[] starts = new int[4];
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            boolean startsWord = Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+            if (!startsWord) {
+                continue;
+            }
+            boolean repeated = false;
+            for (int w = 0; w < count && !repeated; w++) {
+                repeated = compareWords(text, starts[w], text, i) == 0;
+            }
+            if (!repeated) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Compares the words starting at two positions, char by char; a word
+     * sorts before every longer word it is the start of
+     *
+     * @param a      text of the first word
+     * @param aStart where the first word starts
+     * @param b      text of the second word
+     * @param bStart where the second word starts
+     * @return negative, zero, or positive like compareTo
+     */
+    static int compareWords(String a, int aStart, String b, int bStart) {
+        int i = aStart;
+        int j = bStart;
+        while (true) {
+            boolean aEnded = i >= a.length() || !Character.isLetterOrDigit(a.charAt(i));
+            boolean bEnded = j >= b.length() || !Character.isLetterOrDigit(b.charAt(j));
+            if (aEnded || bEnded) {
+                return aEnded == bEnded ? 0 : aEnded ? -1 : 1;
+            }
+            if (a.charAt(i) != b.charAt(j)) {
+                return Character.compare(a.charAt(i), b.charAt(j));
+            }
+            i++;
+            j++;
+        }
+    }
+
+    /**
+     * One word of an indexed name, by where it starts in the text; ordered by
+     * the word and then the name
+     *
+     * @param text  - The text holding the word; the name itself, except for a
+     *              search probe
+     * @param start - The char index the word starts at
+     * @param key   - The normalized name; "" sorts before every name
+     */
+    private record Word(String text, int start, String key) implements Comparable<Word> {
+
+        @Override
+        public int compareTo(Word other) {
+            int byWord = compareWords(text, start, other.text, other.start);
+            return byWord != 0 ? byWord : key.compareTo(other.key);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+import java.util.function.LongToIntFunction;
+
+/**
+ * SortedLongs is a sorted list of primitive longs kept in chunks of at most
+ * CHUNK values
+ *
+ * An insert or a removal only moves the values of one chunk, and splitting or
+ * dropping a chunk only moves chunk references, so the list stays cheap to
+ * change at millions of values while taking about eight bytes per value. The
+ * order is passed in on every call, because ColumnarTaskStore orders slots by
+ * names it decodes on demand; values must be distinct under that order.
+ *
+ * Not thread-safe: ColumnarTaskStore guards its lists with its own lock.
+ */
+final class SortedLongs {
+
+    /** Compares two values, like a Comparator of primitive longs */
+    @FunctionalInterface
+    interface Order {
+        int compare(long a, long b);
+    }
+
+    /** Maximum number of values in one chunk */
+    static final int CHUNK = 512;
+
+    private static final int MIN_CHUNK_CAPACITY = 8;
+
+    private long[][] chunks = new long[4][];
+    private int[] sizes = new int[4];
+    private int chunkCount = 0;
+    private int size = 0;
+
+    /**
+     * Builds a list from values already in order
+     *
+     * @param sorted the values, sorted and distinct
+     * @param length the number of values to take from the array
+     * @return the list
+     */
+    static SortedLongs of(long[] sorted, int length) {
+        SortedLongs list = new SortedLongs();
+        for (int from = 0; from < length; from += CHUNK) {
+            int count = Math.min(CHUNK, length - from);
+            list.insertChunk(list.chunkCount, Arrays.copyOfRange(sorted, from, from + count), count);
+        }
+        list.size = length;
+        return list;
+    }
+
+    /**
+     * Sorts the first values of an array with a merge sort, so no value is
+     * boxed
+     *
+     * @param values the values
+     * @param length the number of values to sort
+     * @param order  the order
+     */
+    static void sort(long[] values, int length, Order order) {
+        long[] buffer = new long[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int from = 0; from < length - width; from += 2 * width) {
+                int mid = from + width;
+                int to = Math.min(from + 2 * width, length);
+                int left = from;
+                int right = mid;
+                int out = from;
+                while (left < mid && right < to) {
+                    buffer[out++] = order.compare(values[left], values[right]) <= 0 ? values[left++] : values[right++];
+                }
+                while (left < mid) {
+                    buffer[out++] = values[left++];
+                }
+                while (right < to) {
+                    buffer[out++] = values[right++];
+                }
+                System.arraycopy(buffer, from, values, from, to - from);
+            }
+        }
+    }
+
+    /**
+     * Inserts a value that is not in the list yet
+     *
+     * @param value the value
+     * @param order the order of the list
+     */
+    void add(long value, Order order) {
+        if (chunkCount == 0) {
+            insertChunk(0, new long[MIN_CHUNK_CAPACITY], 0);
+        }
+        int c = chunkOf(value, order);
+        int pos = -search(c, value, order) - 1;
+        if (pos < 0) {
+            throw new IllegalStateException("Value already in the list");
+        }
+        if (sizes[c] == CHUNK) {
+            split(c);
+            if (pos > sizes[c]) {
+                pos -= sizes[c];
+                c++;
+            }
+        }
+        long[] chunk = chunks[c];
+        if (sizes[c] == chunk.length) {
+            chunk = chunks[c] = Arrays.copyOf(chunk, Math.min(CHUNK, chunk.length * 2));
+        }
+        System.arraycopy(chunk, pos, chunk, pos + 1, sizes[c] - pos);
+        chunk[pos] = value;
+        sizes[c]++;
+        size++;
+    }
+
+    /**
+     * Removes a value
+     *
+     * @param value the value
+     * @param order the order of the list
+     * @return true if the value was in the list
+     */
+    boolean remove(long value, Order order) {
+        if (chunkCount == 0) {
+            return false;
+        }
+        int c = chunkOf(value, order);
+        int pos = search(c, value, order);
+        if (pos < 0) {
+            return false;
+        }
+        long[] chunk = chunks[c];
+        System.arraycopy(chunk, pos + 1, chunk, pos, sizes[c] - pos - 1);
+        sizes[c]--;
+        size--;
+        if (sizes[c] == 0) {
+            removeChunk(c);
+        }
+        return true;
+    }
+
+    /**
+     * Walks the values in order, starting at the first one the probe does not
+     * place before the target, until the visitor returns false
+     *
+     * @param probe   compares a value to the target: negative if the value
+     *                sorts before it
+     * @param visitor gets each value; returns false to stop
+     */
+    void forEachFrom(LongToIntFunction probe, LongPredicate visitor) {
+        if (chunkCount == 0) {
+            return;
+        }
+        // The first value at or after the target is in the last chunk starting before it, or the next one
+        int c = 0;
+        int lo = 1;
+        int hi = chunkCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (probe.applyAsInt(chunks[mid][0]) < 0) {
+                c = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int pos = 0;
+        int end = sizes[c];
+        while (pos < end) {
+            int mid = (pos + end) >>> 1;
+            if (probe.applyAsInt(chunks[c][mid]) < 0) {
+                pos = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        for (; c < chunkCount; c++, pos = 0) {
+            long[] chunk = chunks[c];
+            for (int n = sizes[c]; pos < n; pos++) {
+                if (!visitor.test(chunk[pos])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values
+     *
+     * @return value count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of bytes held by the chunks, including unused capacity
+     *
+     * @return the size of the chunk arrays in bytes
+     */
+    long footprintBytes() {
+        long bytes = 4L * sizes.length + 8L * chunks.length;
+        for (int c = 0; c < chunkCount; c++) {
+            bytes += 8L * chunks[c].length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Finds the chunk a value belongs in: the last one whose first value is
+     * not after it, or the first chunk
+     */
+    private int chunkOf(long value, Order order) {
+        int lo = 1;
+        int hi = chunkCount - 1;
+        int c = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (order.compare(chunks[mid][0], value) <= 0) {
+                c = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Binary search within a chunk
+     *
+     * @return the position of the value, or -(insertion point) - 1
+     */
+    private int search(int c, long value, Order order) {
+        long[] chunk = chunks[c];
+        int lo = 0;
+        int hi = sizes[c] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = order.compare(chunk[mid], value);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * Moves the upper half of a full chunk into a new chunk after it
+     */
+    private void split(int c) {
+        int half = sizes[c] / 2;
+        long[] upper = new long[CHUNK];
+        System.arraycopy(chunks[c], half, upper, 0, sizes[c] - half);
+        insertChunk(c + 1, upper, sizes[c] - half);
+        sizes[c] = half;
+    }
+
+    private void insertChunk(int c, long[] chunk, int count) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            sizes = Arrays.copyOf(sizes, chunkCount * 2);
+        }
+        System.arraycopy(chunks, c, chunks, c + 1, chunkCount - c);
+        System.arraycopy(sizes, c, sizes, c + 1, chunkCount - c);
+        chunks[c] = chunk;
+        sizes[c] = count;
+        chunkCount++;
+    }
+
+    private void removeChunk(int c) {
+        System.arraycopy(chunks, c + 1, chunks, c, chunkCount - c - 1);
+        System.arraycopy(sizes, c + 1, sizes, c, chunkCount - c - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+}
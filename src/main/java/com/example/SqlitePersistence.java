@@ -0,0 +1,96 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores tasks in SQLite through the static methods of TaskRepository
+ *
+ * TaskRepository owns the database URL, the connection pool, and the write
+ * pipeline, so there is only one instance.
+ */
+public final class SqlitePersistence implements TaskPersistence {
+
+    /** The SQLite database configured with TaskRepository.setDatabase */
+    public static final SqlitePersistence INSTANCE = new SqlitePersistence();
+
+    private SqlitePersistence() {
+    }
+
+    @Override
+    public int addTask(TaskItem task) {
+        return TaskRepository.addTask(task);
+    }
+
+    @Override
+    public int addTasks(Collection<TaskItem> tasks) {
+        return TaskRepository.addTasks(tasks);
+    }
+
+    @Override
+    public int updateTask(TaskItem task) {
+        return TaskRepository.updateTask(task);
+    }
+
+    @Override
+    public int updateTasks(Collection<TaskItem> tasks) {
+        return TaskRepository.updateTasks(tasks);
+    }
+
+    @Override
+    public int removeTask(TaskItem task) {
+        return TaskRepository.removeTask(task);
+    }
+
+    @Override
+    public int removeTasks(Collection<TaskItem> tasks) {
+        return TaskRepository.removeTasks(tasks);
+    }
+
+    @Override
+    public int updateTaskFields(TaskItem task, Set<TaskPatch.Field> fields) {
+        return TaskRepository.updateTaskFields(task, fields);
+    }
+
+    @Override
+    public int removeTaskById(long id, long version) {
+        return TaskRepository.removeTaskById(id, version);
+    }
+
+    @Override
+    public TaskItem getTaskById(long id) {
+        return TaskRepository.getTaskById(id);
+    }
+
+    @Override
+    public TaskItem getTaskByName(String name) {
+        return TaskRepository.getTaskByName(name);
+    }
+
+    @Override
+    public List<TaskItem> getAllTasks() {
+        return TaskRepository.getAllTasks();
+    }
+
+    @Override
+    public List<TaskItem> getAllTasks(int parallelism, int chunkSize) {
+        return TaskRepository.getAllTasks(parallelism, chunkSize);
+    }
+
+    @Override
+    public TaskPage getTasksPage(TaskQuery query) {
+        return TaskRepository.getTasksPage(query);
+    }
+
+    @Override
+    public int streamTasks(TaskQuery query, TaskRowVisitor visitor) throws IOException {
+        return TaskRepository.streamTasks(query, visitor);
+    }
+
+    @Override
+    public int deleteAllData() {
+        return TaskRepository.deleteAllData();
+    }
+}
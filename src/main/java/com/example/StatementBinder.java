@@ -0,0 +1,52 @@
+package com.example;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds values to the ? placeholders of a prepared statement
+ *
+ * Binders call the typed setters directly, so primitive values are never boxed
+ * on the way to the statement.
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+    /** Binder for statements without placeholders */
+    StatementBinder NONE = pstmt -> {
+    };
+
+    /**
+     * Binds the values to the statement
+     *
+     * @param pstmt The statement to bind
+     * @throws SQLException if a value cannot be bound
+     */
+    void bind(PreparedStatement pstmt) throws SQLException;
+
+    /**
+     * Runs right after the statement, on the same connection and before
+     * anything else runs on it, so generated keys can be read. In the write
+     * pipeline this is before the batch commits, so results read here must
+     * only be used once the statement is reported committed. Does nothing
+     * unless overridden.
+     *
+     * @param pstmt The statement that ran
+     * @param rows  The number of rows it affected
+     * @throws SQLException if a result cannot be read
+     */
+    default void executed(PreparedStatement pstmt, int rows) throws SQLException {
+    }
+
+    /**
+     * Binds a boolean the way the tasks table stores it (1 or 0)
+     *
+     * @param pstmt The statement to bind
+     * @param index The 1-based placeholder index
+     * @param value The value to bind
+     * @throws SQLException if the value cannot be bound
+     */
+    static void setFlag(PreparedStatement pstmt, int index, boolean value) throws SQLException {
+        pstmt.setInt(index, value ? 1 : 0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatementCache keeps the most recently used prepared statements of a single
+ * connection, keyed by SQL text, so fixed queries are compiled only once.
+ *
+ * The least recently used statement is closed when the cache is full. A cache
+ * belongs to one connection and is only used by its current borrower, so it is
+ * not synchronized.
+ */
+public class StatementCache {
+
+    /** Default number of statements cached per connection */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final Connection conn;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * Creates a statement cache for a connection
+     *
+     * @param conn     - The connection statements are prepared on
+     * @param capacity - The maximum number of cached statements
+     * @param hits     - Counter incremented when a cached statement is reused
+     * @param misses   - Counter incremented when a statement has to be prepared
+     */
+    StatementCache(Connection conn, int capacity, LongAdder hits, LongAdder misses) {
+        this.conn = conn;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached statement for the SQL, preparing it on a miss
+     *
+     * @param sql The SQL query with ? placeholders
+     * @return the prepared statement; it must not be closed by the caller
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement get(String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt != null && !pstmt.isClosed()) {
+            hits.increment();
+            return pstmt;
+        }
+        misses.increment();
+        pstmt = conn.prepareStatement(sql);
+        statements.put(sql, pstmt);
+        return pstmt;
+    }
+
+    /**
+     * Gets the number of statements currently cached
+     *
+     * @return cached statement count
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes and forgets every cached statement
+     */
+    void clear() {
+        for (PreparedStatement pstmt : statements.values()) {
+            closeQuietly(pstmt);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            Logger.warn("Failed to close cached statement: " + e.getMessage());
+        }
+    }
+}
@@ -1,21 +1,47 @@
 package com.example;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 
 /**
  * Represents a single task with a name, due date, and completion status
+ *
+ * The due date is kept as a day count since 1970-01-01 plus a flag saying
+ * whether there is one, so a task holds no date objects or strings. The
+ * MM-dd-yyyy text is only built when getDueDate() is called, e.g. when the
+ * task is serialized. Rows read from the database already carry a validated
+ * epoch day and are created with ofTrusted(), which skips date parsing.
+ *
+ * A task gets its id, the row id in persistence, once it is stored; a task
+ * built from a client request has id 0 until then. A stored task also has a
+ * version that starts at 1 and grows with every change to it, so writers can
+ * make a change conditional on the version they read.
  */
+@JsonAdapter(TaskItem.GsonAdapter.class)
 public class TaskItem {
 
-    private String name;
-    private String dueDate;
-    private boolean completed = false;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("MM-dd-yyyy");
 
-    public TaskItem(){
+    // FLAGS
+    private static final byte HAS_DUE_DATE = 1;
+    private static final byte COMPLETED = 2;
 
-    }
+    private final String name;
+    private final int dueDay;
+    private volatile byte flags;
+    /** The version a task is stored at when it is added */
+    static final long FIRST_VERSION = 1;
+
+    private volatile long id;
+    private volatile long version;
 
     /**
      * Creates a new task item with a name and due date
@@ -25,20 +51,10 @@ public class TaskItem {
      * @throws IllegalArgumentException if the due date is not MM-dd-yyyy format
      */
     public TaskItem(String name, String dueDate) throws IllegalArgumentException {
-        if (name == null || name.isBlank()) {
-            throw new IllegalArgumentException("Task name cannot be empty.");
-        }
-        this.name = name;
-
-        try {
-            LocalDate.parse(dueDate, FORMATTER);
-            this.dueDate = dueDate;
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException("Due date must be in MM-dd-yyyy format.");
-        }
+        this(name, dueDate, false);
     }
 
-        /**
+    /**
      * Creates a new task item with an name, due date, and completion status already set
      * 
      * @param name       - The name or description of the task
@@ -51,12 +67,109 @@ public class TaskItem {
             throw new IllegalArgumentException("Task name cannot be empty.");
         }
         this.name = name;
-        this.completed = completion;
+        this.dueDay = parseDueDay(dueDate);
+        this.flags = (byte) (HAS_DUE_DATE | (completion ? COMPLETED : 0));
+    }
+
+    /**
+     * Creates a task without validating anything
+     * 
+     * @param name       - The name of the task, may be null
+     * @param dueDay     - The due date as days since 1970-01-01
+     * @param hasDueDate - Whether dueDay holds a due date
+     * @param completion - The completion status of the task
+     */
+    private TaskItem(String name, int dueDay, boolean hasDueDate, boolean completion) {
+        this.name = name;
+        this.dueDay = hasDueDate ? dueDay : 0;
+        this.flags = (byte) ((hasDueDate ? HAS_DUE_DATE : 0) | (completion ? COMPLETED : 0));
+    }
+
+    /**
+     * Creates a task from values that were validated before they were stored,
+     * such as a database row. Nothing is parsed or checked.
+     * 
+     * @param name       - The name of the task
+     * @param dueDay     - The due date as days since 1970-01-01
+     * @param hasDueDate - Whether dueDay holds a due date
+     * @param completion - The completion status of the task
+     * @return the task
+     */
+    static TaskItem ofTrusted(String name, int dueDay, boolean hasDueDate, boolean completion) {
+        return new TaskItem(name, dueDay, hasDueDate, completion);
+    }
+
+    /**
+     * Creates a stored task from values that were validated before they were
+     * stored. Nothing is parsed or checked.
+     * 
+     * @param id         - The row id in persistence
+     * @param version    - The version of the stored task
+     * @param name       - The name of the task
+     * @param dueDay     - The due date as days since 1970-01-01
+     * @param hasDueDate - Whether dueDay holds a due date
+     * @param completion - The completion status of the task
+     * @return the task
+     */
+    static TaskItem ofTrusted(long id, long version, String name, int dueDay, boolean hasDueDate,
+            boolean completion) {
+        TaskItem task = new TaskItem(name, dueDay, hasDueDate, completion);
+        task.id = id;
+        task.version = version;
+        return task;
+    }
+
+    /**
+     * Gets the id persistence gave the task when it was stored
+     * 
+     * @return the row id, or 0 if the task was not stored
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Records the id persistence gave the task
+     * 
+     * @param id - The row id
+     */
+    void assignId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the version of the stored task, which grows with every change
+     * 
+     * @return the version, or 0 if it is not known
+     */
+    public long getVersion() {
+        return version;
+    }
 
+    /**
+     * Records the version of the stored task, or the version a client
+     * expects it to have
+     * 
+     * @param version - The version
+     */
+    void assignVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Parses an MM-dd-yyyy due date into days since 1970-01-01
+     * 
+     * @param dueDate The due date text
+     * @return the epoch day
+     * @throws IllegalArgumentException if the due date is not MM-dd-yyyy format
+     */
+    static int parseDueDay(String dueDate) throws IllegalArgumentException {
+        if (dueDate == null) {
+            throw new IllegalArgumentException("Due date must be in MM-dd-yyyy format.");
+        }
         try {
-            LocalDate.parse(dueDate, FORMATTER);
-            this.dueDate = dueDate;
-        } catch (DateTimeParseException e) {
+            return Math.toIntExact(LocalDate.parse(dueDate, FORMATTER).toEpochDay());
+        } catch (DateTimeParseException | ArithmeticException e) {
             throw new IllegalArgumentException("Due date must be in MM-dd-yyyy format.");
         }
     }
@@ -71,12 +184,60 @@ public class TaskItem {
     }
 
     /**
-     * Gets the due date of the task in MM-dd-yyyy format
+     * Gets the due date of the task in MM-dd-yyyy format. The text is built on
+     * every call; it is not stored.
      * 
-     * @return the due date of the task
+     * @return the due date of the task, or null if it has none
      */
     public String getDueDate() {
-        return dueDate;
+        if (!hasDueDate()) {
+            return null;
+        }
+        LocalDate date = LocalDate.ofEpochDay(dueDay);
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            return date.format(FORMATTER);
+        }
+        char[] text = new char[10];
+        putTwoDigits(text, 0, date.getMonthValue());
+        text[2] = '-';
+        putTwoDigits(text, 3, date.getDayOfMonth());
+        text[5] = '-';
+        putTwoDigits(text, 6, year / 100);
+        putTwoDigits(text, 8, year % 100);
+        return new String(text);
+    }
+
+    private static void putTwoDigits(char[] text, int offset, int value) {
+        text[offset] = (char) ('0' + value / 10);
+        text[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    /**
+     * Gets the due date of the task as a LocalDate
+     * 
+     * @return the due date, or null if it has none
+     */
+    public LocalDate getDueLocalDate() {
+        return hasDueDate() ? LocalDate.ofEpochDay(dueDay) : null;
+    }
+
+    /**
+     * Checks if the task has a due date
+     * 
+     * @return true if the task has a due date
+     */
+    public boolean hasDueDate() {
+        return (flags & HAS_DUE_DATE) != 0;
+    }
+
+    /**
+     * Gets the due date as days since 1970-01-01, without creating a date object
+     * 
+     * @return the epoch day; only meaningful if hasDueDate() is true
+     */
+    public int getDueEpochDay() {
+        return dueDay;
     }
 
     /**
@@ -85,14 +246,14 @@ public class TaskItem {
      * @return true if the task is completed, false otherwise
      */
     public boolean isCompleted() {
-        return completed;
+        return (flags & COMPLETED) != 0;
     }
 
     /**
      * Marks task as completed
      */
     public void complete() {
-        completed = true;
+        flags = (byte) (flags | COMPLETED);
     }
 
     /**
@@ -101,7 +262,7 @@ public class TaskItem {
      * @return "Complete" or "Incomplete"
      */
     private String getCompletionStatus() {
-        return completed ? "Y" : "N";
+        return isCompleted() ? "Y" : "N";
     }
 
     /**
@@ -111,4 +272,83 @@ public class TaskItem {
     public String toString() {
         return String.format("Task Name: %s | Due Date: %s | Completed: %s", name, getDueDate(), getCompletionStatus());
     }
+
+    /**
+     * Reads and writes tasks as {"id": ..., "version": ..., "name": ..., "dueDate": "MM-dd-yyyy", "completed": ...}
+     * 
+     * Like Gson's default handling, a missing name is allowed so the API can
+     * answer with its own error, and a missing due date is left out of the
+     * output. A due date that is present must be valid. The id and version
+     * are only written once the task is stored. The id is never read:
+     * persistence assigns it, and requests address a task by id in the URL.
+     * A version that is read is the one the client expects the stored task
+     * to have.
+     */
+    static final class GsonAdapter extends TypeAdapter<TaskItem> {
+
+        @Override
+        public void write(JsonWriter out, TaskItem task) throws IOException {
+            if (task == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (task.id != 0) {
+                out.name("id").value(task.id);
+                out.name("version").value(task.version);
+            }
+            if (task.name != null) {
+                out.name("name").value(task.name);
+            }
+            if (task.hasDueDate()) {
+                out.name("dueDate").value(task.getDueDate());
+            }
+            out.name("completed").value(task.isCompleted());
+            out.endObject();
+        }
+
+        @Override
+        public TaskItem read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String name = null;
+            String dueDate = null;
+            boolean completed = false;
+            long version = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "name" -> name = in.nextString();
+                    case "dueDate" -> dueDate = in.nextString();
+                    case "completed" -> completed = in.peek() == JsonToken.STRING
+                            ? Boolean.parseBoolean(in.nextString())
+                            : in.nextBoolean();
+                    case "version" -> version = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            TaskItem task;
+            if (dueDate == null) {
+                task = new TaskItem(name, 0, false, completed);
+            } else {
+                try {
+                    task = new TaskItem(name, parseDueDay(dueDate), true, completed);
+                } catch (IllegalArgumentException e) {
+                    throw new JsonParseException(e.getMessage(), e);
+                }
+            }
+            task.version = version;
+            return task;
+        }
+    }
 }
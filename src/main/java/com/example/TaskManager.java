@@ -1,14 +1,245 @@
 package com.example;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Holds and manages all TaskItem's
+ *
+ * Tasks are indexed by their case-insensitive name, so lookups, duplicate
+ * checks, updates and removals do not scan the whole list. getTaskList()
+ * returns tasks in the order they were added. A second index sorts tasks by
+ * due date, so due date windows, overdue tasks, and the next tasks due are
+ * found in O(log n + k) without scanning the list.
+ *
+ * Every change to the task set is also published to a ChangeFeed with a
+ * sequence number, so clients can follow the deltas instead of reloading.
+ *
+ * TaskManager is also the write-through cache in front of a TaskPersistence,
+ * SQLite through TaskRepository unless another one is given: every mutation
+ * is written to the repository first and only applied in memory once it
+ * succeeds, and reads are served from memory. invalidate() marks the cache
+ * stale so the next read reloads it from the repository.
+ *
+ * A TaskManager created with cold() starts empty so a server can accept
+ * requests before the tasks are in memory. warmUp() loads them in the
+ * background, reading id ranges in parallel. Until it finishes, getTaskList(),
+ * getTask() and checkName() are answered from the repository; every other
+ * call waits for the load, and starts it if nobody has.
+ *
+ * TaskManager is safe to share between the console and the API threads.
+ * Reads never block: the index is a ConcurrentHashMap and getTaskList()
+ * hands out an immutable snapshot that is rebuilt only after the task set
+ * changes. Writers lock one of a fixed set of stripes chosen by the task
+ * name, so check-then-act sequences on the same name are atomic while
+ * writers of different names run in parallel. Bulk operations and reloads
+ * take every stripe.
+ *
+ * Every stored task has a version. Updates by id or name can be made
+ * conditional on the version the caller read, and are always written to the
+ * repository conditionally on the version in memory, so a change made by
+ * someone else in between is reported as a VersionConflictException instead
+ * of being overwritten.
+ *
+ * Tasks are held by a TaskStore chosen with Storage: plain TaskItem objects,
+ * or primitive columns that only create TaskItem views when asked, for very
+ * large task sets. With COLUMNAR storage the tasks handed out are copies, so
+ * changing one directly does not change the managed task.
  */
 public class TaskManager {
 
-    private List<TaskItem> taskList = TaskRepository.getAllTasks();
+    /** How the in-memory tasks are stored */
+    public enum Storage {
+        /** One TaskItem object per task; fastest for small and medium task sets */
+        OBJECTS,
+        /** Columnar primitive arrays, see ColumnarTaskStore; smallest heap footprint */
+        COLUMNAR
+    }
+
+    /** Default number of id ranges read at once by warmUp(); leaves one pooled connection for requests */
+    public static final int DEFAULT_WARM_UP_THREADS = ConnectionPool.DEFAULT_MAX_SIZE - 1;
+
+    /** Number of ids per range read by warmUp() */
+    private static final int WARM_UP_CHUNK_SIZE = 50_000;
+
+    /** Tasks changed through any TaskManager, by kind of change; rates come from the scraper */
+    private enum Change {
+        ADDED, REMOVED, UPDATED, COMPLETED, RELOADED;
+
+        final LongAdder count = Metrics.counter("tasks_manager_changes_total",
+                "Tasks changed through TaskManager; reloaded counts whole reloads",
+                "change=\"" + name().toLowerCase(Locale.ROOT) + "\"");
+    }
+
+    /** Number of writer lock stripes; a power of two */
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final Storage storage;
+
+    /** Where tasks are stored durably */
+    private final TaskPersistence persistence;
+
+    /** Current store; replaced as a whole by reload() */
+    private volatile TaskStore index;
+
+    /** Incremented on every change to the task set or a task */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Wall-clock time of the latest change, in epoch milliseconds */
+    private volatile long lastModified = System.currentTimeMillis();
+
+    /** Sequenced record of the changes, for clients following the task set */
+    private final ChangeFeed changes = new ChangeFeed(ChangeFeed.DEFAULT_CAPACITY);
+
+    /** Ordered snapshot handed out by getTaskList(); rebuilt after a mutation */
+    private volatile Snapshot snapshot = new Snapshot(-1, List.of());
+
+    /** Set by invalidate(); the next read reloads from the repository */
+    private volatile boolean stale = false;
+
+    /** False until the tasks were first loaded into memory */
+    private volatile boolean warm = false;
+
+    /** The background load started by warmUp(); null before */
+    private CompletableFuture<Void> warming;
+
+    // CACHE METRICS
+    private final LongAdder readHits = new LongAdder();
+    private final LongAdder readMisses = new LongAdder();
+
+    public TaskManager() {
+        this(Storage.OBJECTS);
+    }
+
+    /**
+     * Creates a TaskManager with the given storage engine and loads every task
+     * from the repository
+     * 
+     * @param storage how the in-memory tasks are stored
+     */
+    public TaskManager(Storage storage) {
+        this(storage, SqlitePersistence.INSTANCE, true);
+    }
+
+    /**
+     * Creates a TaskManager with the given storage engine and persistence, and
+     * loads every task from the persistence
+     * 
+     * @param storage     how the in-memory tasks are stored
+     * @param persistence where tasks are stored durably
+     */
+    public TaskManager(Storage storage, TaskPersistence persistence) {
+        this(storage, persistence, true);
+    }
+
+    /**
+     * Creates a TaskManager that has not loaded any tasks yet. Nothing is read
+     * from the repository until warmUp() or the first call that needs the
+     * tasks in memory.
+     * 
+     * @param storage how the in-memory tasks are stored
+     * @return the TaskManager
+     */
+    public static TaskManager cold(Storage storage) {
+        return cold(storage, SqlitePersistence.INSTANCE);
+    }
+
+    /**
+     * Creates a TaskManager over the given persistence that has not loaded any
+     * tasks yet
+     * 
+     * @param storage     how the in-memory tasks are stored
+     * @param persistence where tasks are stored durably
+     * @return the TaskManager
+     */
+    public static TaskManager cold(Storage storage, TaskPersistence persistence) {
+        return new TaskManager(storage, persistence, false);
+    }
+
+    private TaskManager(Storage storage, TaskPersistence persistence, boolean load) {
+        if (persistence == null) {
+            throw new IllegalArgumentException("Persistence cannot be null");
+        }
+        this.storage = storage;
+        this.persistence = persistence;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        replaceStore(load ? persistence.getAllTasks() : List.of());
+        warm = load;
+    }
+
+    /**
+     * Starts loading every task into memory on a background thread, reading
+     * ranges of ids on several connections at once. Calling it again returns
+     * the load already started.
+     * 
+     * @param threads number of id ranges read at the same time
+     * @return completes once the tasks are in memory
+     */
+    public synchronized CompletableFuture<Void> warmUp(int threads) {
+        if (warming != null) {
+            return warming;
+        }
+        if (warm) {
+            return CompletableFuture.completedFuture(null);
+        }
+        warming = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            List<TaskItem> tasks = persistence.getAllTasks(threads, WARM_UP_CHUNK_SIZE);
+            long loaded = System.nanoTime();
+            finishWarmUp(tasks);
+            Logger.info("Task cache warmed with %d task(s): read %d ms on %d thread(s), indexed %d ms",
+                    tasks.size(), TimeUnit.NANOSECONDS.toMillis(loaded - start), threads,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loaded));
+        }, runnable -> Thread.ofPlatform().name("task-warm-up").daemon().start(runnable));
+        return warming;
+    }
+
+    /**
+     * Checks whether the tasks are in memory
+     * 
+     * @return true once the first load finished
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Installs the tasks read by warmUp(), unless reload() got there first
+     * 
+     * @param tasks the tasks, in id order
+     */
+    private void finishWarmUp(List<TaskItem> tasks) {
+        lockAll();
+        try {
+            if (warm) {
+                return;
+            }
+            replaceStore(tasks);
+            changed();
+            changes.publish(ChangeFeed.Type.RESET, null);
+            stale = false;
+            warm = true;
+        } finally {
+            unlockAll();
+        }
+    }
 
     /**
      * Adds a new task to TaskManager
@@ -18,12 +249,73 @@ public class TaskManager {
      */
     public boolean addTask(TaskItem task) {
         validateTask(task);
-
-        if (checkName(task.getName())) {
+        if (!hasName(task)) {
             return false;
-        } else {
-            TaskRepository.addTask(task);
-            return taskList.add(task);
+        }
+        ensureLoaded();
+
+        String key = key(task.getName());
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            TaskStore current = index;
+            if (current.contains(key)) {
+                return false;
+            }
+            if (persistence.addTask(task) == 0) {
+                Logger.warn("Task could not be stored: " + task.getName());
+                return false;
+            }
+            current.put(key, task);
+            changed();
+            changes.publish(ChangeFeed.Type.ADDED, task);
+            Change.ADDED.count.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds many tasks to TaskManager, writing them to the repository in batches.
+     * Tasks without a name, or whose name already exists, are skipped.
+     * 
+     * @param tasks the TaskItems to add
+     * @return number of tasks added
+     */
+    public int addTasks(Collection<TaskItem> tasks) {
+        validateTasks(tasks);
+        ensureLoaded();
+
+        lockAll();
+        try {
+            TaskStore current = index;
+            LinkedHashMap<String, TaskItem> accepted = new LinkedHashMap<>();
+            for (TaskItem task : tasks) {
+                if (!hasName(task) || current.contains(key(task.getName()))) {
+                    continue;
+                }
+                accepted.putIfAbsent(key(task.getName()), task);
+            }
+
+            int rows = persistence.addTasks(accepted.values());
+            if (rows != accepted.size()) {
+                Logger.warn("Batch add stored " + rows + " of " + accepted.size() + " task(s); reloading task list");
+                resync();
+                Change.ADDED.count.add(rows);
+                return rows;
+            }
+            accepted.forEach(current::put);
+            // Only bump the version once every task is in: a lock-free reader
+            // that sees the new version must also see the tasks
+            changed();
+            for (TaskItem task : accepted.values()) {
+                changes.publish(ChangeFeed.Type.ADDED, task);
+            }
+            Change.ADDED.count.add(accepted.size());
+            return accepted.size();
+        } finally {
+            unlockAll();
         }
     }
 
@@ -34,12 +326,30 @@ public class TaskManager {
      * @return true if a match is found
      */
     public boolean checkName(String name) {
-        for (TaskItem t : taskList) {
-            if (t.getName().equalsIgnoreCase(name)) {
-                return true;
-            }
+        if (!warm) {
+            readMisses.increment();
+            return name != null && persistence.getTaskByName(name) != null;
         }
-        return false;
+        loadForRead();
+        return name != null && index.contains(key(name));
+    }
+
+    /**
+     * Gets a managed task by its case-insensitive name
+     * 
+     * @param name name of the task
+     * @return the matching TaskItem, or null if none exists
+     */
+    public TaskItem getTask(String name) {
+        if (!warm) {
+            readMisses.increment();
+            return name == null ? null : persistence.getTaskByName(name);
+        }
+        loadForRead();
+        if (name == null) {
+            return null;
+        }
+        return index.get(key(name));
     }
 
     /**
@@ -50,22 +360,87 @@ public class TaskManager {
      */
     public boolean removeTask(TaskItem task) {
         validateTask(task);
+        if (!hasName(task)) {
+            return false;
+        }
+        ensureLoaded();
 
-        // Remove from repository
-        TaskRepository.removeTask(task);
+        String key = key(task.getName());
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            TaskStore current = index;
+            TaskItem managed = current.get(key);
+            if (managed == null) {
+                return false; // task not found
+            }
+            if (persistence.removeTask(task) == 0) {
+                // Already gone from the repository, or the write failed: reread it on the next call
+                Logger.warn("Task could not be removed: " + managed.getName());
+                invalidate();
+                return false;
+            }
+            current.remove(key);
+            changes.publish(ChangeFeed.Type.REMOVED, managed);
+            changed();
+            Change.REMOVED.count.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // Remove from taskList by matching name
-        for (int i = 0; i < taskList.size(); i++) {
-            if (taskList.get(i).getName().equalsIgnoreCase(task.getName())) {
-                taskList.remove(i);
-                return true;
+    /**
+     * Removes many tasks from TaskManager, deleting them from the repository in
+     * batches. Tasks that are not managed are ignored.
+     * 
+     * @param tasks the TaskItems to remove
+     * @return number of tasks removed
+     */
+    public int removeTasks(Collection<TaskItem> tasks) {
+        validateTasks(tasks);
+        ensureLoaded();
+
+        LinkedHashMap<String, TaskItem> matched = new LinkedHashMap<>();
+        for (TaskItem task : tasks) {
+            if (hasName(task)) {
+                matched.putIfAbsent(key(task.getName()), task);
+            }
+        }
+
+        lockAll();
+        try {
+            TaskStore current = index;
+            matched.keySet().removeIf(key -> !current.contains(key));
+            int rows = persistence.removeTasks(matched.values());
+            if (rows != matched.size()) {
+                Logger.warn("Batch remove deleted " + rows + " of " + matched.size() + " task(s); reloading task list");
+                resync();
+                Change.REMOVED.count.add(rows);
+                return rows;
+            }
+
+            List<TaskItem> removed = new ArrayList<>(matched.size());
+            for (String key : matched.keySet()) {
+                TaskItem managed = current.get(key);
+                current.remove(key);
+                removed.add(managed);
             }
+            changed();
+            for (TaskItem managed : removed) {
+                changes.publish(ChangeFeed.Type.REMOVED, managed);
+            }
+            Change.REMOVED.count.add(removed.size());
+            return removed.size();
+        } finally {
+            unlockAll();
         }
-        return false; // task not found
     }
 
     /**
-     * Marks a task as completed
+     * Marks a task as completed. The given TaskItem is left as it is, since
+     * snapshots already handed out share it; the completed task is read with
+     * getTask().
      * 
      * @param task the TaskItem to mark as completed
      * @return true if task successfully marked as completed, false if it was
@@ -73,33 +448,347 @@ public class TaskManager {
      */
     public boolean completeTask(TaskItem task) {
         validateTask(task);
-        if (!taskList.contains(task)) {
+        if (!hasName(task)) {
             Logger.warn("Task not found in tasklist");
             return false;
         }
+        ensureLoaded();
+
+        String key = key(task.getName());
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            TaskStore current = index;
+            if (!current.isManaged(key, task)) {
+                Logger.warn("Task not found in tasklist");
+                return false;
+            }
+
+            TaskItem managed = current.get(key);
+            if (task.isCompleted() || managed.isCompleted()) {
+                Logger.warn("Task is already completed");
+                return false;
+            }
+            // Published snapshots and changes share the managed task, so it is replaced, never changed
+            TaskItem done = TaskItem.ofTrusted(managed.getId(), managed.getVersion() + 1, managed.getName(),
+                    managed.getDueEpochDay(), managed.hasDueDate(), true);
+            if (persistence.updateTask(done) != 1) {
+                Logger.warn("Task could not be completed: " + managed.getName());
+                invalidate();
+                return false;
+            }
+            current.replace(key, key, done);
+            changed();
+            changes.publish(ChangeFeed.Type.UPDATED, done);
+            Change.COMPLETED.count.increment();
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Completes the task with the same name if the given task is completed; a
+     * task that is not completed leaves the managed one as it is, so an update
+     * never reopens a task. If the task carries a version, the update only
+     * applies while the managed task is still at that version; the task is
+     * then given the version the managed task is at.
+     * 
+     * @param task the TaskItem carrying the status, and optionally the version
+     *             it was read at
+     * @throws VersionConflictException if the task was changed since that
+     *                                  version
+     */
+    public void updateTask(TaskItem task) throws VersionConflictException {
+        if (!hasName(task)) {
+            return;
+        }
+        ensureLoaded();
 
+        String key = key(task.getName());
+        TaskItem managed = index.get(key);
+        if (managed == null) {
+            return;
+        }
+        TaskPatch patch = new TaskPatch().ifVersion(task.getVersion());
         if (task.isCompleted()) {
-            Logger.warn("Task is already completed");
-            return false;
+            patch.completed(true);
+        }
+        TaskItem updated = applyPatch(key, managed.getId(), patch);
+        if (updated != null) {
+            task.assignVersion(updated.getVersion());
+        }
+    }
+
+    /**
+     * Applies many updates at once, writing them to the repository in batches.
+     * Tasks that are not managed are ignored, and so are the versions of the
+     * given tasks: a batch always applies.
+     * 
+     * @param tasks the TaskItems carrying the new state
+     * @return number of tasks updated
+     */
+    public int updateTasks(Collection<TaskItem> tasks) {
+        validateTasks(tasks);
+        ensureLoaded();
+
+        lockAll();
+        try {
+            TaskStore current = index;
+            // The last update of a name wins, as it would in the repository
+            LinkedHashMap<String, TaskItem> updated = new LinkedHashMap<>();
+            for (TaskItem task : tasks) {
+                String key = hasName(task) ? key(task.getName()) : null;
+                TaskItem managed = key == null ? null : current.get(key);
+                if (managed == null) {
+                    continue;
+                }
+                // The repository moves the version on only when the status changes
+                updated.put(key, managed.isCompleted() == task.isCompleted() ? managed
+                        : TaskItem.ofTrusted(managed.getId(), managed.getVersion() + 1, managed.getName(),
+                                managed.getDueEpochDay(), managed.hasDueDate(), task.isCompleted()));
+            }
+
+            int rows = persistence.updateTasks(updated.values());
+            if (rows != updated.size()) {
+                Logger.warn("Batch update wrote " + rows + " of " + updated.size() + " task(s); reloading task list");
+                resync();
+                Change.UPDATED.count.add(rows);
+                return rows;
+            }
+
+            updated.forEach((key, next) -> {
+                if (current.get(key).isCompleted() != next.isCompleted()) {
+                    current.replace(key, key, next);
+                }
+            });
+            changed();
+            for (String key : updated.keySet()) {
+                changes.publish(ChangeFeed.Type.UPDATED, current.get(key));
+            }
+            Change.UPDATED.count.add(updated.size());
+            return updated.size();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Gets a task by its id, the row id in persistence
+     * 
+     * @param id the id of the task
+     * @return the stored task, or null if no task has the id
+     */
+    public TaskItem getTaskById(long id) {
+        if (!warm) {
+            readMisses.increment();
+            return persistence.getTaskById(id);
+        }
+        loadForRead();
+        return index.getById(id);
+    }
+
+    /**
+     * Changes some fields of a task, addressed by its id. Only the fields that
+     * end up different are written to the repository; a patch that changes
+     * nothing writes nothing and publishes no change. A patch made with
+     * ifVersion() only applies while the task is at that version.
+     * 
+     * @param id    the id of the task
+     * @param patch the fields to change
+     * @return the task after the change, or null if no task has the id or it
+     *         could not be stored
+     * @throws VersionConflictException if the task is not at the version the
+     *                                  patch expects, or was changed in the
+     *                                  repository by someone else
+     * @throws IllegalStateException    if the patch renames the task to the
+     *                                  name of another task
+     */
+    public TaskItem patchTask(long id, TaskPatch patch) throws IllegalStateException {
+        if (patch == null) {
+            throw new IllegalArgumentException("Patch cannot be null");
+        }
+        ensureLoaded();
+        while (true) {
+            TaskItem stored = index.getById(id);
+            if (stored == null) {
+                return null;
+            }
+            String key = key(stored.getName());
+            TaskItem result = applyPatch(key, id, patch);
+            // A null result for a task that was renamed meanwhile is retried under its new name
+            TaskItem now = result == null ? index.getById(id) : null;
+            if (now == null || key(now.getName()).equals(key)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Applies a patch to the managed task stored under a name, if it still
+     * has the id. The repository is only written while it holds the version
+     * in memory; if it holds another one, the cache is stale and is reloaded
+     * on the next read.
+     * 
+     * @param key   the normalized name the task was found under
+     * @param id    the id of the task
+     * @param patch the fields to change
+     * @return the task after the change, or null if the task is gone or could
+     *         not be stored
+     */
+    private TaskItem applyPatch(String key, long id, TaskPatch patch) {
+        // A rename touches two names, so it takes every stripe
+        ReentrantLock lock = patch.setsName() ? null : stripeFor(key);
+        if (lock == null) {
+            lockAll();
+        } else {
+            lock.lock();
+        }
+        try {
+            TaskStore current = index;
+            TaskItem managed = current.get(key);
+            if (managed == null || managed.getId() != id) {
+                return null; // removed or renamed since it was read
+            }
+            long expected = patch.getExpectedVersion();
+            if (expected != 0 && expected != managed.getVersion()) {
+                throw new VersionConflictException(id, managed.getVersion());
+            }
+            TaskItem updated = patch.applyTo(managed);
+            Set<TaskPatch.Field> fields = TaskPatch.changedFields(managed, updated);
+            if (fields.isEmpty()) {
+                return managed;
+            }
+            String newKey = key(updated.getName());
+            if (!newKey.equals(key) && current.contains(newKey)) {
+                throw new IllegalStateException("A task named '" + updated.getName() + "' already exists");
+            }
+            if (persistence.updateTaskFields(updated, fields) == 0) {
+                checkStored(id, managed.getVersion());
+                Logger.warn("Task could not be updated: " + managed.getName());
+                return null;
+            }
+
+            current.replace(key, newKey, updated);
+            changed();
+            TaskItem result = current.get(newKey);
+            changes.publish(ChangeFeed.Type.UPDATED, result);
+            Change.UPDATED.count.increment();
+            return result;
+        } finally {
+            if (lock == null) {
+                unlockAll();
+            } else {
+                lock.unlock();
+            }
         }
-        task.complete();
-        TaskRepository.updateTask(task);
+    }
 
-        return true;
+    /**
+     * Removes a task addressed by its id
+     * 
+     * @param id the id of the task
+     * @return true if the task was removed
+     */
+    public boolean removeTaskById(long id) {
+        return removeTaskById(id, 0);
     }
 
-    public void updateTask(TaskItem task) {
-        for (TaskItem t : taskList) {
-            if (t.getName().equalsIgnoreCase(task.getName())) {
-                if (task.isCompleted()) {
-                    t.complete();
+    /**
+     * Removes a task addressed by its id, if it is at a version
+     * 
+     * @param id              the id of the task
+     * @param expectedVersion the version the caller read, or 0 to remove any
+     *                        version
+     * @return true if the task was removed
+     * @throws VersionConflictException if the task is at another version
+     */
+    public boolean removeTaskById(long id, long expectedVersion) throws VersionConflictException {
+        ensureLoaded();
+        while (true) {
+            TaskItem stored = index.getById(id);
+            if (stored == null) {
+                return false;
+            }
+
+            String key = key(stored.getName());
+            ReentrantLock lock = stripeFor(key);
+            lock.lock();
+            try {
+                TaskStore current = index;
+                TaskItem managed = current.get(key);
+                if (managed == null || managed.getId() != id) {
+                    continue; // renamed or removed since it was looked up
                 }
-                TaskRepository.updateTask(task);
-                return;
+                if (expectedVersion != 0 && expectedVersion != managed.getVersion()) {
+                    throw new VersionConflictException(id, managed.getVersion());
+                }
+                if (persistence.removeTaskById(id, managed.getVersion()) == 0) {
+                    checkStored(id, managed.getVersion());
+                    return false;
+                }
+                current.remove(key);
+                changes.publish(ChangeFeed.Type.REMOVED, managed);
+                changed();
+                Change.REMOVED.count.increment();
+                return true;
+            } finally {
+                lock.unlock();
             }
         }
     }
 
+    /**
+     * Replaces the tasks in memory with the repository's after a batch write
+     * that only partly went through; the caller holds every stripe
+     */
+    private void resync() {
+        replaceStore(persistence.getAllTasks());
+        changed();
+        changes.publish(ChangeFeed.Type.RESET, null);
+    }
+
+    /**
+     * Looks at a task after a conditional write to the repository matched
+     * nothing. If the stored task is gone or at another version, it was
+     * changed by someone else, so the cache is marked stale.
+     * 
+     * @param id      the id of the task
+     * @param version the version in memory
+     * @throws VersionConflictException if the task is stored at another version
+     */
+    private void checkStored(long id, long version) throws VersionConflictException {
+        TaskItem stored = persistence.getTaskById(id);
+        if (stored == null || stored.getVersion() != version) {
+            invalidate();
+        }
+        if (stored != null && stored.getVersion() != version) {
+            throw new VersionConflictException(id, stored.getVersion());
+        }
+    }
+
+    /**
+     * Validates that a collection of tasks isnt null
+     * 
+     * @param tasks the TaskItems to validate
+     */
+    private void validateTasks(Collection<TaskItem> tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null");
+        }
+    }
+
+    /**
+     * Checks that a task is present and has a usable name
+     * 
+     * @param task the TaskItem to check
+     * @return true if the task has a name
+     */
+    private boolean hasName(TaskItem task) {
+        return task != null && task.getName() != null && !task.getName().isBlank();
+    }
+
     /**
      * Validates that a task isnt null
      * 
@@ -112,11 +801,463 @@ public class TaskManager {
     }
 
     /**
-     * Returns an unmodifiable list of all tasks managed by this TaskManager.
+     * Marks the in-memory tasks as stale. The next read reloads them from the
+     * repository; use this after the database was changed by someone else.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Reloads every task from the repository right away
+     */
+    public void reload() {
+        lockAll();
+        try {
+            replaceStore(persistence.getAllTasks());
+            changed();
+            changes.publish(ChangeFeed.Type.RESET, null);
+            stale = false;
+            warm = true;
+            Change.RELOADED.count.increment();
+        } finally {
+            unlockAll();
+        }
+        Logger.info("Task cache reloaded with %d task(s)", index.size());
+    }
+
+    /**
+     * Gets the version of the tasks in memory. It grows on every change, so
+     * two reads at the same version see the same tasks; callers read it
+     * before the tasks, so the tasks are never older than the version.
+     * 
+     * @return the version, or -1 while the tasks are not loaded or are stale
+     */
+    public long getVersion() {
+        return warm && !stale ? version.get() : -1;
+    }
+
+    /**
+     * Gets the time of the latest change to the tasks in memory, including
+     * loading them
+     * 
+     * @return epoch milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the number of tasks in memory
+     * 
+     * @return task count; 0 until the tasks were first loaded
+     */
+    public int size() {
+        return warm ? index.size() : 0;
+    }
+
+    /**
+     * Gets the number of reads served from memory
+     * 
+     * @return cache hit count
+     */
+    public long getCacheHits() {
+        return readHits.sum();
+    }
+
+    /**
+     * Gets the number of reads that had to reload from the repository
+     * 
+     * @return cache miss count
+     */
+    public long getCacheMisses() {
+        return readMisses.sum();
+    }
+
+    /**
+     * Gets the share of reads served from memory
+     * 
+     * @return hit rate between 0 and 1; 1 if nothing was read yet
+     */
+    public double getCacheHitRate() {
+        long hits = getCacheHits();
+        long total = hits + getCacheMisses();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * Marks a change to the tasks; the time is set first so a reader that
+     * sees the new version also sees its time
+     */
+    private void changed() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Loads the tasks first if they are not in memory yet or the cache is stale
+     */
+    private void ensureLoaded() {
+        if (!warm) {
+            warmUp(DEFAULT_WARM_UP_THREADS).join();
+        } else if (stale) {
+            reload();
+        }
+    }
+
+    /**
+     * Records a read as a cache hit or miss, then loads the tasks like
+     * ensureLoaded; mutations call ensureLoaded so they are not counted
+     */
+    private void loadForRead() {
+        if (!warm || stale) {
+            readMisses.increment();
+        } else {
+            readHits.increment();
+        }
+        ensureLoaded();
+    }
+
+    /**
+     * Gets the feed of changes made through this TaskManager
+     * 
+     * @return the change feed
+     */
+    public ChangeFeed getChanges() {
+        return changes;
+    }
+
+    /**
+     * Gets where this TaskManager stores tasks durably
+     * 
+     * @return the persistence
+     */
+    public TaskPersistence getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * Gets the storage engine this TaskManager was created with
+     * 
+     * @return the storage engine
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Replaces the store with a new one built from a list of tasks; the store
+     * builds its due date and search indexes itself. Callers hold every
+     * stripe, except the constructor.
+     * 
+     * @param tasks the tasks, in order
+     */
+    private void replaceStore(List<TaskItem> tasks) {
+        index = storage == Storage.COLUMNAR ? ColumnarTaskStore.of(tasks) : Index.of(tasks);
+    }
+
+    // ------------------------
+    // Due date queries
+    // ------------------------
+
+    /**
+     * Gets the tasks due in a date window, completed or not
+     * 
+     * @param from first due date, inclusive
+     * @param to   last due date, inclusive
+     * @return the tasks in due date order; empty if from is after to
+     */
+    public List<TaskItem> getTasksDueBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Dates cannot be null");
+        }
+        loadForRead();
+        return index.dueBetween(toEpochDay(from), toEpochDay(to), false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the tasks that are not completed and were due before a day
+     * 
+     * @param today the current date; tasks due today are not overdue
+     * @return the overdue tasks, oldest first
+     */
+    public List<TaskItem> getOverdue(LocalDate today) {
+        if (today == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        loadForRead();
+        int day = toEpochDay(today);
+        return day == Integer.MIN_VALUE ? new ArrayList<>()
+                : index.dueBetween(Integer.MIN_VALUE, day - 1, true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the next tasks due from today on that are not completed
+     * 
+     * @param n the maximum number of tasks
+     * @return up to n tasks, soonest first
+     */
+    public List<TaskItem> getNextDue(int n) {
+        return getNextDue(LocalDate.now(), n);
+    }
+
+    /**
+     * Gets the next tasks due from a day on that are not completed
+     * 
+     * @param today the first due date to include
+     * @param n     the maximum number of tasks
+     * @return up to n tasks, soonest first
+     */
+    public List<TaskItem> getNextDue(LocalDate today, int n) {
+        if (today == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+        loadForRead();
+        return index.dueBetween(toEpochDay(today), Integer.MAX_VALUE, true, n);
+    }
+
+    // ------------------------
+    // Name search
+    // ------------------------
+
+    /**
+     * Finds tasks by the start of their name or of any word in it, ignoring
+     * case. An exact name ranks first, then names starting with the query,
+     * then names with a word starting with it.
+     * 
+     * @param query the search text
+     * @param limit the maximum number of tasks
+     * @return up to limit tasks, best matches first; empty for a blank query
+     */
+    public List<TaskItem> search(String query, int limit) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        loadForRead();
+        return index.search(query, limit);
+    }
+
+    /**
+     * Converts a date to the int epoch day used by TaskItem, clamping dates
+     * outside the int range
+     * 
+     * @param date the date
+     * @return the epoch day
+     */
+    private static int toEpochDay(LocalDate date) {
+        long day = date.toEpochDay();
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day));
+    }
+
+    /**
+     * Normalizes a task name into its index key
+     * 
+     * @param name name of the task
+     * @return the case-insensitive key
+     */
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the writer lock guarding a name
+     * 
+     * @param key the normalized name
+     * @return the lock stripe for that name
+     */
+    private ReentrantLock stripeFor(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Takes every stripe, always in the same order, for bulk operations
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Releases every stripe taken by lockAll()
+     */
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of all tasks managed by this TaskManager,
+     * in the order they were added. The snapshot does not change when tasks are
+     * added or removed later.
      * 
      * @return an unmodifiable list of TaskItem objects
      */
     public List<TaskItem> getTaskList() {
-        return Collections.unmodifiableList(taskList);
+        if (!warm) {
+            readMisses.increment();
+            return Collections.unmodifiableList(persistence.getAllTasks());
+        }
+        loadForRead();
+        Snapshot current = snapshot;
+        long v = version.get();
+        if (current.version != v) {
+            current = new Snapshot(v, Collections.unmodifiableList(index.toList()));
+            snapshot = current;
+        }
+        return current.tasks;
+    }
+
+    /**
+     * A task in the index with the position it was added at
+     */
+    private static final class Entry {
+        final long seq;
+        final TaskItem task;
+
+        Entry(long seq, TaskItem task) {
+            this.seq = seq;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Object storage: name index, id index, insertion-ordered view, due date
+     * index, and search index. All are concurrent, so readers never lock;
+     * writers keep them in step under the stripe locks. The name keys are
+     * shared with the id and search indexes.
+     */
+    private static final class Index implements TaskStore {
+        final ConcurrentHashMap<String, Entry> byName = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, String> keyById = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<Long, TaskItem> ordered = new ConcurrentSkipListMap<>();
+        final DueDateIndex due = new DueDateIndex();
+        final SearchIndex search = new SearchIndex();
+        final AtomicLong nextSeq = new AtomicLong();
+
+        /**
+         * Builds an index from a list of tasks, keeping the first task for each name
+         */
+        static Index of(List<TaskItem> tasks) {
+            Index index = new Index();
+            for (TaskItem task : tasks) {
+                String key = key(task.getName());
+                if (!index.byName.containsKey(key)) {
+                    index.put(key, task);
+                }
+            }
+            return index;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return byName.containsKey(key);
+        }
+
+        @Override
+        public TaskItem get(String key) {
+            Entry entry = byName.get(key);
+            return entry == null ? null : entry.task;
+        }
+
+        @Override
+        public TaskItem getById(long id) {
+            String key = keyById.get(id);
+            TaskItem task = key == null ? null : get(key);
+            return task != null && task.getId() == id ? task : null;
+        }
+
+        @Override
+        public void put(String key, TaskItem task) {
+            Entry entry = new Entry(nextSeq.getAndIncrement(), task);
+            byName.put(key, entry);
+            keyById.put(task.getId(), key);
+            ordered.put(entry.seq, task);
+            due.add(entry.seq, task);
+            search.add(key);
+        }
+
+        @Override
+        public void replace(String key, String newKey, TaskItem task) {
+            Entry entry = byName.get(key);
+            Entry replaced = new Entry(entry.seq, task);
+            byName.put(newKey, replaced);
+            if (!newKey.equals(key)) {
+                byName.remove(key);
+                search.remove(key);
+                search.add(newKey);
+            }
+            keyById.remove(entry.task.getId(), key);
+            keyById.put(task.getId(), newKey);
+            ordered.put(entry.seq, task);
+            due.remove(entry.seq, entry.task);
+            due.add(entry.seq, task);
+        }
+
+        @Override
+        public boolean remove(String key) {
+            Entry entry = byName.remove(key);
+            if (entry != null) {
+                keyById.remove(entry.task.getId(), key);
+                ordered.remove(entry.seq);
+                due.remove(entry.seq, entry.task);
+                search.remove(key);
+            }
+            return entry != null;
+        }
+
+        @Override
+        public boolean isManaged(String key, TaskItem task) {
+            Entry entry = byName.get(key);
+            return entry != null && entry.task == task;
+        }
+
+        @Override
+        public int size() {
+            return byName.size();
+        }
+
+        @Override
+        public List<TaskItem> toList() {
+            return new ArrayList<>(ordered.values());
+        }
+
+        @Override
+        public List<TaskItem> dueBetween(int fromDay, int toDay, boolean openOnly, int limit) {
+            return due.between(fromDay, toDay, openOnly, limit);
+        }
+
+        @Override
+        public List<TaskItem> search(String query, int limit) {
+            List<TaskItem> tasks = new ArrayList<>();
+            for (String key : search.search(query, limit)) {
+                TaskItem task = get(key);
+                if (task != null) {
+                    tasks.add(task);
+                }
+            }
+            return tasks;
+        }
+    }
+
+    /**
+     * An immutable task list and the version it was taken at
+     */
+    private static final class Snapshot {
+        final long version;
+        final List<TaskItem> tasks;
+
+        Snapshot(long version, List<TaskItem> tasks) {
+            this.version = version;
+            this.tasks = tasks;
+        }
     }
 }
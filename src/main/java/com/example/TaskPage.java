@@ -0,0 +1,41 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * One page of tasks returned by TaskRepository.getTasksPage
+ */
+public class TaskPage {
+
+    private final List<TaskItem> tasks;
+    private final String nextCursor;
+
+    /**
+     * Creates a page of tasks
+     *
+     * @param tasks      - The tasks in the page, in id order
+     * @param nextCursor - The cursor of the next page, or null if this is the last page
+     */
+    public TaskPage(List<TaskItem> tasks, String nextCursor) {
+        this.tasks = tasks;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets the tasks in this page
+     *
+     * @return the tasks, in id order
+     */
+    public List<TaskItem> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Gets the cursor to pass to TaskQuery.cursor() for the next page
+     *
+     * @return the next cursor, or null if there are no more tasks
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
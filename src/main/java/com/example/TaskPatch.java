@@ -0,0 +1,139 @@
+package com.example;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Describes a change to some fields of a stored task
+ *
+ * Fields that are not set keep their stored value, so PATCH /tasks/{id} only
+ * carries what the client changes. applyTo() builds the changed task and
+ * changedFields() says which columns actually differ, so persistence only
+ * writes those. With ifVersion() the patch only applies to the version of the
+ * task the client read.
+ */
+public class TaskPatch {
+
+    /** A field of a task, stored in its own column */
+    public enum Field {
+        NAME, DUE_DATE, COMPLETED
+    }
+
+    private String name;
+    private Integer dueDay;
+    private Boolean completed;
+    private long expectedVersion;
+
+    /**
+     * Renames the task
+     *
+     * @param name - The new name, or null to keep the name
+     * @return this patch
+     * @throws IllegalArgumentException if the name is blank
+     */
+    public TaskPatch name(String name) throws IllegalArgumentException {
+        if (name != null && name.isBlank()) {
+            throw new IllegalArgumentException("Task name cannot be empty.");
+        }
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Moves the due date
+     *
+     * @param dueDate - The new due date in MM-dd-yyyy format, or null to keep the due date
+     * @return this patch
+     * @throws IllegalArgumentException if the due date is not MM-dd-yyyy format
+     */
+    public TaskPatch dueDate(String dueDate) throws IllegalArgumentException {
+        this.dueDay = dueDate == null ? null : TaskItem.parseDueDay(dueDate);
+        return this;
+    }
+
+    /**
+     * Sets the completion status; unlike completeTask(), this can also mark a
+     * task as not completed
+     *
+     * @param completed - The completion status, or null to keep it
+     * @return this patch
+     */
+    public TaskPatch completed(Boolean completed) {
+        this.completed = completed;
+        return this;
+    }
+
+    /**
+     * Makes the patch conditional on the version of the stored task
+     *
+     * @param version - The version the client read, or 0 to patch any version
+     * @return this patch
+     */
+    public TaskPatch ifVersion(long version) {
+        this.expectedVersion = version;
+        return this;
+    }
+
+    /**
+     * Gets the version the patch is conditional on
+     *
+     * @return the version, or 0 if the patch applies to any version
+     */
+    long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * Checks if the patch sets no field at all
+     *
+     * @return true if nothing is set
+     */
+    public boolean isEmpty() {
+        return name == null && dueDay == null && completed == null;
+    }
+
+    /**
+     * Checks if the patch sets a name, which may rename the task
+     *
+     * @return true if a name is set
+     */
+    boolean setsName() {
+        return name != null;
+    }
+
+    /**
+     * Builds the task with the patch applied
+     *
+     * @param task - The stored task
+     * @return a new task with the same id and version, and the fields of the
+     *         patch set
+     */
+    TaskItem applyTo(TaskItem task) {
+        return TaskItem.ofTrusted(task.getId(), task.getVersion(),
+                name != null ? name : task.getName(),
+                dueDay != null ? dueDay : task.getDueEpochDay(),
+                dueDay != null || task.hasDueDate(),
+                completed != null ? completed : task.isCompleted());
+    }
+
+    /**
+     * Compares two versions of a task field by field
+     *
+     * @param before - The stored task
+     * @param after  - The task with the patch applied
+     * @return the fields that differ; a rename that only changes case counts
+     */
+    static Set<Field> changedFields(TaskItem before, TaskItem after) {
+        Set<Field> fields = EnumSet.noneOf(Field.class);
+        if (!before.getName().equals(after.getName())) {
+            fields.add(Field.NAME);
+        }
+        if (before.hasDueDate() != after.hasDueDate() || before.getDueEpochDay() != after.getDueEpochDay()) {
+            fields.add(Field.DUE_DATE);
+        }
+        if (before.isCompleted() != after.isCompleted()) {
+            fields.add(Field.COMPLETED);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Where TaskManager keeps its tasks durably
+ *
+ * Implementations match tasks by case-insensitive name, like the SQLite
+ * schema does, and give every stored task a row id that only grows, so pages
+ * can be keyed on it. SqlitePersistence stores tasks in the SQLite database
+ * of TaskRepository; JournalPersistence keeps them in memory and appends every
+ * change to a journal file.
+ */
+public interface TaskPersistence {
+
+    /**
+     * Stores a new task unless one with the same name exists
+     *
+     * @param task - The task to add
+     * @return number of tasks added
+     */
+    int addTask(TaskItem task);
+
+    /**
+     * Stores many new tasks, skipping names that exist
+     *
+     * @param tasks - The tasks to add
+     * @return number of tasks added
+     */
+    int addTasks(Collection<TaskItem> tasks);
+
+    /**
+     * Updates the completion status of a stored task; its version only moves
+     * on if the status changes
+     *
+     * @param task - The task to update
+     * @return number of tasks updated
+     */
+    int updateTask(TaskItem task);
+
+    /**
+     * Updates the completion status of many stored tasks
+     *
+     * @param tasks - The tasks to update
+     * @return number of tasks updated
+     */
+    int updateTasks(Collection<TaskItem> tasks);
+
+    /**
+     * Removes a stored task by name
+     *
+     * @param task - The task to remove
+     * @return number of tasks removed
+     */
+    int removeTask(TaskItem task);
+
+    /**
+     * Removes many stored tasks by name
+     *
+     * @param tasks - The tasks to remove
+     * @return number of tasks removed
+     */
+    int removeTasks(Collection<TaskItem> tasks);
+
+    /**
+     * Writes some fields of the task stored under the task's id, if it is
+     * still at the task's version. A written task moves on to the next
+     * version.
+     *
+     * @param task   - The task holding the new values, the id, and the version
+     *                 it was read at
+     * @param fields - The fields to write; the others keep their stored value
+     * @return number of tasks updated; 0 if no task has the id and version, or
+     *         the new name belongs to another task
+     */
+    int updateTaskFields(TaskItem task, Set<TaskPatch.Field> fields);
+
+    /**
+     * Removes the task stored under a row id, if it is still at a version
+     *
+     * @param id      - The row id
+     * @param version - The version the task must be at, or 0 for any version
+     * @return number of tasks removed
+     */
+    int removeTaskById(long id, long version);
+
+    /**
+     * Gets a stored task by its row id
+     *
+     * @param id - The row id
+     * @return the task, or null if none is stored under the id
+     */
+    TaskItem getTaskById(long id);
+
+    /**
+     * Gets a stored task by its case-insensitive name
+     *
+     * @param name - The task name
+     * @return the task, or null if none is stored
+     */
+    TaskItem getTaskByName(String name);
+
+    /**
+     * Gets every stored task
+     *
+     * @return the tasks, in id order
+     */
+    List<TaskItem> getAllTasks();
+
+    /**
+     * Gets every stored task, reading several parts at once where the engine
+     * can. The default reads them in one go.
+     *
+     * @param parallelism - The number of parts read at the same time
+     * @param chunkSize   - The number of ids per part
+     * @return the tasks, in id order
+     */
+    default List<TaskItem> getAllTasks(int parallelism, int chunkSize) {
+        return getAllTasks();
+    }
+
+    /**
+     * Gets one page of the tasks matching a query
+     *
+     * @param query - The filters, page size, and cursor
+     * @return the page
+     */
+    TaskPage getTasksPage(TaskQuery query);
+
+    /**
+     * Walks every task matching a query's filters in id order, without
+     * materializing the result
+     *
+     * @param query   - The filters and starting cursor
+     * @param visitor - Receives each task
+     * @return number of tasks visited
+     * @throws IOException if the visitor fails or the tasks cannot be read
+     */
+    int streamTasks(TaskQuery query, TaskRowVisitor visitor) throws IOException;
+
+    /**
+     * Deletes every stored task
+     *
+     * @return number of tasks deleted
+     */
+    int deleteAllData();
+}
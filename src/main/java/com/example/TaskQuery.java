@@ -0,0 +1,162 @@
+package com.example;
+
+import java.time.LocalDate;
+
+/**
+ * Describes one page of a filtered task listing
+ *
+ * Pages are keyed on the task id: a page holds the tasks with an id greater
+ * than the cursor, in id order, so paging never skips or repeats rows and
+ * never has to count past earlier pages. Unset filters match every task.
+ */
+public class TaskQuery {
+
+    /** Page size used when no limit is given */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /** Largest page size a caller may ask for */
+    public static final int MAX_LIMIT = 1000;
+
+    private int limit = DEFAULT_LIMIT;
+    private long afterId = 0;
+    private Boolean completed;
+    private LocalDate dueBefore;
+    private LocalDate dueAfter;
+    private String namePrefix;
+
+    /**
+     * Sets the maximum number of tasks in the page
+     *
+     * @param limit - The page size, between 1 and MAX_LIMIT
+     * @return this query
+     * @throws IllegalArgumentException if the limit is out of range
+     */
+    public TaskQuery limit(int limit) throws IllegalArgumentException {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ".");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Continues a listing after the page that returned this cursor
+     *
+     * @param cursor - The nextCursor of the previous page, or null for the first page
+     * @return this query
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public TaskQuery cursor(String cursor) throws IllegalArgumentException {
+        if (cursor == null || cursor.isEmpty()) {
+            this.afterId = 0;
+            return this;
+        }
+        try {
+            this.afterId = Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+        if (afterId < 0) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+        return this;
+    }
+
+    /**
+     * Only matches tasks with the given completion status
+     *
+     * @param completed - The completion status, or null for any
+     * @return this query
+     */
+    public TaskQuery completed(Boolean completed) {
+        this.completed = completed;
+        return this;
+    }
+
+    /**
+     * Only matches tasks due strictly before the date
+     *
+     * @param dueBefore - The exclusive upper bound, or null for none
+     * @return this query
+     */
+    public TaskQuery dueBefore(LocalDate dueBefore) {
+        this.dueBefore = dueBefore;
+        return this;
+    }
+
+    /**
+     * Only matches tasks due strictly after the date
+     *
+     * @param dueAfter - The exclusive lower bound, or null for none
+     * @return this query
+     */
+    public TaskQuery dueAfter(LocalDate dueAfter) {
+        this.dueAfter = dueAfter;
+        return this;
+    }
+
+    /**
+     * Only matches tasks whose name starts with the prefix, ignoring case
+     *
+     * @param namePrefix - The prefix, or null for any name
+     * @return this query
+     */
+    public TaskQuery namePrefix(String namePrefix) {
+        this.namePrefix = namePrefix == null || namePrefix.isEmpty() ? null : namePrefix;
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of tasks in the page
+     *
+     * @return the page size
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the id the page starts after
+     *
+     * @return the keyset position; 0 for the first page
+     */
+    public long getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Gets the completion status filter
+     *
+     * @return the status to match, or null for any
+     */
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets the exclusive upper bound on the due date
+     *
+     * @return the bound, or null for none
+     */
+    public LocalDate getDueBefore() {
+        return dueBefore;
+    }
+
+    /**
+     * Gets the exclusive lower bound on the due date
+     *
+     * @return the bound, or null for none
+     */
+    public LocalDate getDueAfter() {
+        return dueAfter;
+    }
+
+    /**
+     * Gets the case-insensitive name prefix filter
+     *
+     * @return the prefix, or null for any name
+     */
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+}
@@ -1,57 +1,258 @@
 package com.example;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
 
 /**
  * TaskRepository is a helper class for interacting with the tasks database
  * 
  * Provides methods to:
  * -Add new task
- * -Remove tasks by ID
- * -Update task completion status
+ * -Add, update, or remove many tasks in batched transactions
+ * -Look up, update, or remove a task by its row id
+ * -Update task completion status, or only the columns of a task that changed,
+ *  on the condition that the task is still at the version the caller read
  * -Delete all tasks
- * -Retrieve all tasks
+ * -Retrieve all tasks, optionally reading id ranges in parallel
+ * -Retrieve filtered pages of tasks with keyset cursors
+ * -Stream tasks row by row without loading the whole table
  * 
- * This class uses SQLite via JDBC and handles connections automatically
+ * This class uses SQLite via JDBC and handles connections automatically.
+ * Connections are borrowed from a ConnectionPool and kept warm between calls.
+ * With the write pipeline enabled, single-task mutations are handed to one
+ * writer thread that commits them in groups (see WritePipeline).
  */
 public class TaskRepository {
+    /** Default number of rows written per batch transaction */
+    public static final int DEFAULT_BATCH_CHUNK_SIZE = 500;
+
+    /** Rows read per query while streaming; the connection is released between pages */
+    static final int STREAM_PAGE = 1_000;
+
+    /** How long a caller waits for the write pipeline to commit its statement */
+    private static final long PIPELINE_TIMEOUT_SECONDS = 30;
+
+    private static final String INSERT_SQL =
+            "INSERT OR IGNORE INTO tasks(name, dueDate, dueDay, completed) VALUES(?, ?, ?, ?)";
+
+    /** Sets the completion status by name; in SQLite, SET sees the old row, so the version only moves on a change */
+    private static final String UPDATE_COMPLETED_SQL =
+            "UPDATE tasks SET version = version + (completed <> ?), completed = ? WHERE name = ? COLLATE NOCASE";
+
+    /** The statements run by TaskRepository, each with its own timings and error count */
+    private enum StatementKind {
+        INSERT, UPDATE, UPDATE_FIELDS, DELETE, DELETE_BY_ID, DELETE_ALL, INSERT_BATCH, UPDATE_BATCH, DELETE_BATCH,
+        SELECT_ALL, SELECT_RANGE, SELECT_MAX_ID, SELECT_PAGE, SELECT_STREAM, SELECT_BY_ID, SELECT_BY_NAME,
+        COUNT_BY_NAME;
+
+        final LatencyHistogram latency = Metrics.latency("tasks_db_statement_seconds",
+                "Time to run a SQL statement, including the wait for a connection or the write pipeline", label());
+        final LongAdder errors = Metrics.counter("tasks_db_statement_errors_total",
+                "SQL statements that failed", label());
+
+        private String label() {
+            return "statement=\"" + name().toLowerCase(Locale.ROOT) + "\"";
+        }
+    }
+
+    /**
+     * UPDATE statements by bit mask of the TaskPatch.Field ordinals they write.
+     * Each one bumps the version and only matches the version it was given.
+     */
+    private static final String[] UPDATE_FIELDS_SQL = new String[1 << TaskPatch.Field.values().length];
+
+    static {
+        for (int mask = 1; mask < UPDATE_FIELDS_SQL.length; mask++) {
+            StringBuilder sql = new StringBuilder("UPDATE tasks SET ");
+            if ((mask & 1 << TaskPatch.Field.NAME.ordinal()) != 0) {
+                sql.append("name = ?, ");
+            }
+            if ((mask & 1 << TaskPatch.Field.DUE_DATE.ordinal()) != 0) {
+                sql.append("dueDate = ?, dueDay = ?, ");
+            }
+            if ((mask & 1 << TaskPatch.Field.COMPLETED.ordinal()) != 0) {
+                sql.append("completed = ?, ");
+            }
+            UPDATE_FIELDS_SQL[mask] = sql.append("version = version + 1 WHERE id = ? AND version = ?").toString();
+        }
+    }
+
     private static String databaseUrl = "jdbc:sqlite:tasks.db";
+    private static int poolSize = ConnectionPool.DEFAULT_MAX_SIZE;
+    private static long acquireTimeoutMillis = ConnectionPool.DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+    private static volatile int batchChunkSize = DEFAULT_BATCH_CHUNK_SIZE;
+    private static volatile ConnectionPool pool;
+    private static volatile WritePipeline writePipeline;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(TaskRepository::shutdown, "task-repository-shutdown"));
+    }
 
     private TaskRepository() {
     }
 
-    private static void ensureTableExists() {
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS tasks (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "name TEXT NOT NULL," +
-                "dueDate TEXT," +
-                "completed INTEGER DEFAULT 0" +
-                ")";
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
-            Logger.info("Table 'tasks' ensured in database.");
+    /**
+     * Brings the 'tasks' schema up to date using SchemaMigrations
+     */
+    private static void migrateSchema() {
+        try (PooledConnection conn = getConnection()) {
+            int applied = SchemaMigrations.migrate(conn.getRaw());
+            Logger.info("Table 'tasks' at schema version " + SchemaMigrations.currentVersion(conn.getRaw())
+                    + " (" + applied + " migration(s) applied).");
         } catch (SQLException e) {
-            e.printStackTrace();
+            Logger.error("Schema migration failed", e);
         }
     }
 
+    /**
+     * Points the repository at a database, replacing the current connection pool
+     * and applying any pending schema migrations
+     * 
+     * @param url The JDBC url of the database
+     */
     public static void setDatabase(String url) {
-        databaseUrl = url;
-        ensureTableExists();
+        synchronized (TaskRepository.class) {
+            databaseUrl = url;
+            resetPool();
+        }
+        migrateSchema();
     }
 
     /**
-     * Adds a task to the 'tasks' database
+     * Configures the connection pool and rebuilds it for the current database
+     * 
+     * @param maxSize              The maximum number of open connections
+     * @param acquireTimeoutMillis How long a caller waits for a free connection
+     */
+    public static void configurePool(int maxSize, long acquireTimeoutMillis) {
+        if (maxSize < 1 || acquireTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Pool size and acquire timeout must be positive.");
+        }
+        synchronized (TaskRepository.class) {
+            poolSize = maxSize;
+            TaskRepository.acquireTimeoutMillis = acquireTimeoutMillis;
+            resetPool();
+        }
+    }
+
+    /**
+     * Gets the connection pool used by the repository, for metrics
+     * 
+     * @return the current pool
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (TaskRepository.class) {
+            if (pool == null) {
+                resetPool();
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Closes the connection pool. The next repository call opens a new one.
+     */
+    public static synchronized void shutdown() {
+        disableWritePipeline();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    /**
+     * Routes addTask, updateTask, removeTask, and deleteAllData through a
+     * single writer thread that commits concurrent mutations together. Any
+     * pipeline already running is drained and replaced.
+     * 
+     * @param batchSize    The maximum number of statements per transaction
+     * @param lingerMillis How long the writer waits for more statements
+     * @param queueDepth   The maximum number of statements waiting to be written
+     */
+    public static synchronized void enableWritePipeline(int batchSize, long lingerMillis, int queueDepth) {
+        WritePipeline old = writePipeline;
+        writePipeline = new WritePipeline(TaskRepository::getConnection, batchSize, lingerMillis, queueDepth);
+        if (old != null) {
+            old.close();
+        }
+        Logger.info("Write pipeline enabled (batch=%d, linger=%dms, queue=%d).", batchSize, lingerMillis, queueDepth);
+    }
+
+    /**
+     * Writes everything still queued in the write pipeline and goes back to
+     * running each mutation on the calling thread
+     */
+    public static synchronized void disableWritePipeline() {
+        if (writePipeline != null) {
+            writePipeline.close();
+            writePipeline = null;
+        }
+    }
+
+    /**
+     * Gets the write pipeline, for metrics
+     * 
+     * @return the current pipeline, or null if mutations run on the calling thread
+     */
+    public static WritePipeline getWritePipeline() {
+        return writePipeline;
+    }
+
+    private static synchronized void resetPool() {
+        ConnectionPool old = pool;
+        pool = new ConnectionPool(databaseUrl, poolSize, acquireTimeoutMillis);
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * Adds a task to the 'tasks' database. Names are unique regardless of case,
+     * so adding a task whose name already exists adds nothing. An added task
+     * gets the row id it was stored under, at the first version.
      * 
      * @param task The TaskItem to add
      * @return number of rows added
      */
     public static int addTask(TaskItem task) {
-        String SQL = "INSERT INTO tasks(name, dueDate, completed) VALUES(?, ?, ?)";
-        int rows = executeUpdate(SQL, task.getName(), task.getDueDate(), task.isCompleted());
-        Logger.info(rows + " task(s) added.");
+        long[] key = new long[1];
+        int rows = executeUpdate(StatementKind.INSERT, INSERT_SQL, new StatementBinder() {
+            @Override
+            public void bind(PreparedStatement pstmt) throws SQLException {
+                bindInsert(pstmt, task);
+            }
+
+            @Override
+            public void executed(PreparedStatement pstmt, int rows) throws SQLException {
+                // an ignored duplicate leaves last_insert_rowid() at some other row
+                if (rows > 0) {
+                    key[0] = generatedKey(pstmt);
+                }
+            }
+        });
+        // executeUpdate() only reports rows once they are committed; a pipeline
+        // batch that fails to commit reports 0, and the task keeps no id
+        if (rows > 0) {
+            assignKey(task, key[0]);
+        }
+        Logger.info("%d task(s) added.", rows);
         return rows;
     }
 
@@ -62,25 +263,145 @@ public class TaskRepository {
      * @return number of rows removed
      */
     public static int removeTask(TaskItem task) {
-        String SQL = "DELETE FROM tasks WHERE name = ?";
-        int rows = executeUpdate(SQL, task.getName());
-        Logger.info(rows + "task(s) removed from database.");
+        String SQL = "DELETE FROM tasks WHERE name = ? COLLATE NOCASE";
+        int rows = executeUpdate(StatementKind.DELETE, SQL, pstmt -> pstmt.setString(1, task.getName()));
+        Logger.info("%d task(s) removed from database.", rows);
         return rows;
     }
 
     /**
-     * Updates the completion status of a task in the 'tasks' database
+     * Removes the task stored under a row id, if it is still at a version
+     * 
+     * @param id      The row id
+     * @param version The version the task must be at, or 0 for any version
+     * @return number of rows removed; 0 if no row has the id and version
+     */
+    public static int removeTaskById(long id, long version) {
+        String SQL = version == 0 ? "DELETE FROM tasks WHERE id = ?" : "DELETE FROM tasks WHERE id = ? AND version = ?";
+        int rows = executeUpdate(StatementKind.DELETE_BY_ID, SQL, pstmt -> {
+            pstmt.setLong(1, id);
+            if (version != 0) {
+                pstmt.setLong(2, version);
+            }
+        });
+        Logger.info("%d task(s) removed from database.", rows);
+        return rows;
+    }
+
+    /**
+     * Writes some columns of the task stored under the task's id, leaving the
+     * others as they are. The row is only written while it is still at the
+     * task's version, so a writer never overwrites a change it has not seen;
+     * the written task then moves on to the next version.
+     * 
+     * @param task   The TaskItem holding the new values, the id, and the
+     *               version it was read at
+     * @param fields The fields to write
+     * @return number of rows updated; 0 if no field is given, no row has the
+     *         id and version, or the new name belongs to another task
+     */
+    public static int updateTaskFields(TaskItem task, Set<TaskPatch.Field> fields) {
+        int mask = 0;
+        for (TaskPatch.Field field : fields) {
+            mask |= 1 << field.ordinal();
+        }
+        if (mask == 0) {
+            return 0;
+        }
+        int rows = executeUpdate(StatementKind.UPDATE_FIELDS, UPDATE_FIELDS_SQL[mask], pstmt -> {
+            int index = 1;
+            if (fields.contains(TaskPatch.Field.NAME)) {
+                pstmt.setString(index++, task.getName());
+            }
+            if (fields.contains(TaskPatch.Field.DUE_DATE)) {
+                pstmt.setString(index++, task.getDueDate());
+                if (task.hasDueDate()) {
+                    pstmt.setInt(index++, task.getDueEpochDay());
+                } else {
+                    pstmt.setNull(index++, Types.INTEGER);
+                }
+            }
+            if (fields.contains(TaskPatch.Field.COMPLETED)) {
+                StatementBinder.setFlag(pstmt, index++, task.isCompleted());
+            }
+            pstmt.setLong(index++, task.getId());
+            pstmt.setLong(index, task.getVersion());
+        });
+        if (rows > 0) {
+            task.assignVersion(task.getVersion() + 1);
+        }
+        Logger.info("%d task(s) updated from database.", rows);
+        return rows;
+    }
+
+    /**
+     * Updates the completion status of a task in the 'tasks' database. The
+     * version only moves on if the status changes.
      * 
      * @param task The TaskItem to update
      * @return number of rows updated
      */
     public static int updateTask(TaskItem task) {
-        String SQL = "UPDATE tasks SET completed = ? WHERE name = ?";
-        int rows = executeUpdate(SQL, task.isCompleted(), task.getName());
-        Logger.info(rows + " task(s) updated from database.");
+        int rows = executeUpdate(StatementKind.UPDATE, UPDATE_COMPLETED_SQL, pstmt -> bindCompleted(pstmt, task));
+        Logger.info("%d task(s) updated from database.", rows);
+        return rows;
+    }
+
+    /**
+     * Adds many tasks to the 'tasks' database using batched transactions. Each
+     * added task gets the row id it was stored under, at the first version.
+     * 
+     * @param tasks The TaskItems to add
+     * @return number of rows added
+     */
+    public static int addTasks(Collection<TaskItem> tasks) {
+        int rows = executeBatch(StatementKind.INSERT_BATCH, INSERT_SQL, tasks, TaskRepository::bindInsert,
+                TaskRepository::assignKey);
+        Logger.info("%d task(s) added in batch.", rows);
+        return rows;
+    }
+
+    /**
+     * Updates the completion status of many tasks using batched transactions.
+     * The version of a task only moves on if its status changes.
+     * 
+     * @param tasks The TaskItems to update
+     * @return number of rows updated
+     */
+    public static int updateTasks(Collection<TaskItem> tasks) {
+        int rows = executeBatch(StatementKind.UPDATE_BATCH, UPDATE_COMPLETED_SQL, tasks, TaskRepository::bindCompleted,
+                null);
+        Logger.info("%d task(s) updated in batch.", rows);
+        return rows;
+    }
+
+    /**
+     * Removes many tasks from the 'tasks' database using batched transactions
+     * 
+     * @param tasks The TaskItems to remove
+     * @return number of rows removed
+     */
+    public static int removeTasks(Collection<TaskItem> tasks) {
+        String SQL = "DELETE FROM tasks WHERE name = ? COLLATE NOCASE";
+        int rows = executeBatch(StatementKind.DELETE_BATCH, SQL, tasks, (pstmt, task) -> pstmt.setString(1, task.getName()),
+                null);
+        Logger.info("%d task(s) removed in batch.", rows);
         return rows;
     }
 
+    /**
+     * Sets how many rows each batch transaction writes before committing
+     * 
+     * @param chunkSize rows per transaction
+     * @throws IllegalArgumentException if chunkSize is not positive
+     */
+    public static void setBatchChunkSize(int chunkSize) throws IllegalArgumentException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Batch chunk size must be at least 1.");
+        }
+        batchChunkSize = chunkSize;
+    }
+
     /**
      * Checks if a task exists in the database
      * 
@@ -88,24 +409,27 @@ public class TaskRepository {
      * @return true if it exists, else false
      */
     public static boolean containsTask(TaskItem task) {
-        String SQL = "SELECT COUNT(*) FROM tasks WHERE name = ?";
-
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(SQL)) {
+        String SQL = "SELECT COUNT(*) FROM tasks WHERE name = ? COLLATE NOCASE";
+        long start = System.nanoTime();
+        boolean exists = false;
 
+        try (PooledConnection conn = getConnection()) {
+            PreparedStatement pstmt = conn.prepareCached(SQL);
             pstmt.setString(1, task.getName());
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     int count = rs.getInt(1);
-                    return count > 0;
+                    exists = count > 0;
                 }
             }
 
         } catch (SQLException e) {
+            StatementKind.COUNT_BY_NAME.errors.increment();
             Logger.error("Failed to check if task exists: " + task.getName(), e);
         }
 
-        return false;
+        StatementKind.COUNT_BY_NAME.latency.recordSince(start);
+        return exists;
     }
 
     /**
@@ -115,49 +439,213 @@ public class TaskRepository {
      */
     public static int deleteAllData() {
         String SQL = "DELETE FROM tasks";
-        int rowsDeleted = executeUpdate(SQL);
-        Logger.info(rowsDeleted + " task(s) deleted from database.");
+        int rowsDeleted = executeUpdate(StatementKind.DELETE_ALL, SQL, StatementBinder.NONE);
+        Logger.info("%d task(s) deleted from database.", rowsDeleted);
         return rowsDeleted;
     }
 
     /**
-     * Gets the connection to the 'tasks' database
+     * Borrows a pooled connection to the 'tasks' database
      * 
-     * @return the connection
-     * @throws SQLException
+     * @return the connection; closing it returns it to the pool
+     * @throws SQLException if no connection could be acquired
      */
-    private static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(databaseUrl);
+    private static PooledConnection getConnection() throws SQLException {
+        return getPool().acquire();
     }
 
     /**
-     * Executes an update statement (INSERT, UPDATE, DELETE)
+     * Executes an update statement (INSERT, UPDATE, DELETE), through the write
+     * pipeline when it is enabled
      * 
      * @param sql    The SQL query with ? placeholders
-     * @param params Values to bind to the placeholders
+     * @param binder Binds values to the placeholders
      * @return number of rows affected
      */
-    private static int executeUpdate(String sql, Object... params) {
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            for (int i = 0; i < params.length; i++) {
-                Object param = params[i];
-                if (param instanceof String) {
-                    pstmt.setString(i + 1, (String) param);
-                } else if (param instanceof Integer) {
-                    pstmt.setInt(i + 1, (Integer) param);
-                } else if (param instanceof Boolean) {
-                    pstmt.setInt(i + 1, (Boolean) param ? 1 : 0);
-                }
+    private static int executeUpdate(StatementKind statement, String sql, StatementBinder binder) {
+        long start = System.nanoTime();
+        int rows = 0;
+        WritePipeline pipeline = writePipeline;
+        if (pipeline != null) {
+            try {
+                rows = pipeline.submit(sql, binder).get(PIPELINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                statement.errors.increment();
+                Logger.error("SQL execution failed: " + sql, e.getCause() instanceof Exception cause ? cause : e);
+            } catch (TimeoutException e) {
+                statement.errors.increment();
+                Logger.error("SQL execution timed out after " + PIPELINE_TIMEOUT_SECONDS
+                        + " s in the write pipeline; it may still be written: " + sql, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                statement.errors.increment();
+                Logger.error("Interrupted while waiting for the write pipeline: " + sql, e);
             }
+        } else {
+            try (PooledConnection conn = getConnection()) {
+                PreparedStatement pstmt = conn.prepareCached(sql);
+                binder.bind(pstmt);
+                rows = pstmt.executeUpdate();
+                binder.executed(pstmt, rows);
 
-            return pstmt.executeUpdate();
+            } catch (SQLException e) {
+                statement.errors.increment();
+                Logger.error("SQL execution failed: " + sql, e);
+            }
+        }
+        statement.latency.recordSince(start);
+        return rows;
+    }
 
-        } catch (SQLException e) {
-            Logger.error("SQL execution failed: " + sql, e);
+    /**
+     * Executes one statement for every item using JDBC batches. Each chunk of
+     * items runs in its own transaction; a failing chunk is rolled back and
+     * stops the batch.
+     * 
+     * @param sql    The SQL query with ? placeholders
+     * @param items  The items to write
+     * @param binder Binds one item to the placeholders
+     * @param keys   Receives each inserted item with its row id once its chunk
+     *               commits, or null to skip reading ids
+     * @return number of rows affected by the committed chunks
+     */
+    private static <T> int executeBatch(StatementKind statement, String sql, Collection<T> items, ItemBinder<T> binder,
+            ObjLongConsumer<T> keys) {
+        if (items.isEmpty()) {
             return 0;
         }
+        long start = System.nanoTime();
+        int chunkSize = batchChunkSize;
+        int committedRows = 0;
+        List<T> chunk = keys == null ? null : new ArrayList<>(Math.min(chunkSize, items.size()));
+
+        try (PooledConnection conn = getConnection()) {
+            Connection raw = conn.getRaw();
+            PreparedStatement pstmt = conn.prepareCached(sql);
+            raw.setAutoCommit(false);
+            try {
+                int pending = 0;
+                for (T item : items) {
+                    binder.bind(pstmt, item);
+                    pstmt.addBatch();
+                    if (chunk != null) {
+                        chunk.add(item);
+                    }
+                    if (++pending == chunkSize) {
+                        committedRows += commitChunk(raw, pstmt, chunk, keys);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    committedRows += commitChunk(raw, pstmt, chunk, keys);
+                }
+            } catch (SQLException e) {
+                pstmt.clearBatch();
+                raw.rollback();
+                throw e;
+            } finally {
+                raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            statement.errors.increment();
+            Logger.error("Batch execution failed after " + committedRows + " row(s): " + sql, e);
+        }
+        statement.latency.recordSince(start);
+        return committedRows;
+    }
+
+    /**
+     * Runs and commits one chunk of a batch. With AUTOINCREMENT, the rows a
+     * transaction inserts get consecutive ids, so the ids of the inserted
+     * items count back from the last one; skipped duplicates take no id.
+     */
+    private static <T> int commitChunk(Connection raw, PreparedStatement pstmt, List<T> chunk, ObjLongConsumer<T> keys)
+            throws SQLException {
+        int[] counts = pstmt.executeBatch();
+        long lastId = keys == null ? 0 : generatedKey(pstmt);
+        raw.commit();
+
+        int rows = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                rows += count;
+            }
+        }
+        if (keys != null) {
+            long id = lastId;
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    keys.accept(chunk.get(i), id--);
+                }
+            }
+            chunk.clear();
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the row id of the last row inserted on a statement's connection
+     * 
+     * @param pstmt The insert statement that ran
+     * @return the row id, or 0 if there is none
+     * @throws SQLException if the key cannot be read
+     */
+    private static long generatedKey(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            return keys.next() ? keys.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Records the row id a new task was stored under; a new row starts at the
+     * first version
+     * 
+     * @param task The TaskItem that was inserted
+     * @param id   The row id
+     */
+    private static void assignKey(TaskItem task, long id) {
+        task.assignId(id);
+        task.assignVersion(TaskItem.FIRST_VERSION);
+    }
+
+    /**
+     * Binds a task to UPDATE_COMPLETED_SQL
+     * 
+     * @param pstmt The update statement
+     * @param task  The TaskItem to bind
+     * @throws SQLException if a value cannot be bound
+     */
+    private static void bindCompleted(PreparedStatement pstmt, TaskItem task) throws SQLException {
+        StatementBinder.setFlag(pstmt, 1, task.isCompleted());
+        StatementBinder.setFlag(pstmt, 2, task.isCompleted());
+        pstmt.setString(3, task.getName());
+    }
+
+    /**
+     * Binds a task to INSERT_SQL, storing the due date both as MM-dd-yyyy text
+     * and as a sortable epoch day
+     * 
+     * @param pstmt The insert statement
+     * @param task  The TaskItem to bind
+     * @throws SQLException if a value cannot be bound
+     */
+    private static void bindInsert(PreparedStatement pstmt, TaskItem task) throws SQLException {
+        pstmt.setString(1, task.getName());
+        pstmt.setString(2, task.getDueDate());
+        if (task.hasDueDate()) {
+            pstmt.setInt(3, task.getDueEpochDay());
+        } else {
+            pstmt.setNull(3, Types.INTEGER);
+        }
+        StatementBinder.setFlag(pstmt, 4, task.isCompleted());
+    }
+
+    /**
+     * Binds one item of a batch to the placeholders of a statement
+     */
+    @FunctionalInterface
+    private interface ItemBinder<T> {
+        void bind(PreparedStatement pstmt, T item) throws SQLException;
     }
 
     /**
@@ -168,45 +656,380 @@ public class TaskRepository {
     public static List<TaskItem> getAllTasks() {
         List<TaskItem> tasks = new ArrayList<>();
         String SQL = "SELECT * FROM tasks";
+        long start = System.nanoTime();
 
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(SQL);
-                ResultSet rs = pstmt.executeQuery()) {
+        try (PooledConnection conn = getConnection();
+                ResultSet rs = conn.prepareCached(SQL).executeQuery()) {
 
             while (rs.next()) {
-                TaskItem task = new TaskItem(
-                        rs.getString("name"),
-                        rs.getString("dueDate"),
-                        rs.getInt("completed") == 1);
-                tasks.add(task);
+                tasks.add(mapRow(rs));
             }
 
         } catch (SQLException e) {
+            StatementKind.SELECT_ALL.errors.increment();
+            Logger.error("Failed to retrieve tasks", e);
+        }
+
+        StatementKind.SELECT_ALL.latency.recordSince(start);
+        return tasks;
+    }
+
+    /**
+     * Retrieves all tasks, reading ranges of ids on several pooled connections
+     * at once. Each range is one indexed scan of the primary key, so the
+     * ranges are read in parallel without overlapping.
+     * 
+     * @param parallelism number of ranges read at the same time
+     * @param chunkSize   number of ids per range
+     * @return a List of TaskItem objects in id order; empty if none found
+     * @throws IllegalArgumentException if parallelism or chunkSize is not positive
+     */
+    public static List<TaskItem> getAllTasks(int parallelism, int chunkSize) throws IllegalArgumentException {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be at least 1.");
+        }
+        long maxId = getMaxTaskId();
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = 0; from < maxId; from += chunkSize) {
+            ranges.add(new long[] { from, Math.min(maxId, from + chunkSize) });
+        }
+        if (ranges.size() <= 1) {
+            return ranges.isEmpty() ? new ArrayList<>() : getTasksInIdRange(0, maxId);
+        }
+
+        ExecutorService loaders = Executors.newFixedThreadPool(Math.min(parallelism, ranges.size()),
+                Thread.ofPlatform().name("task-loader-", 0).daemon().factory());
+        try {
+            List<Future<List<TaskItem>>> chunks = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                chunks.add(loaders.submit(() -> getTasksInIdRange(range[0], range[1])));
+            }
+            List<TaskItem> tasks = new ArrayList<>();
+            for (Future<List<TaskItem>> chunk : chunks) {
+                tasks.addAll(chunk.get());
+            }
+            return tasks;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.error("Interrupted while retrieving tasks", e);
+            return new ArrayList<>();
+        } catch (ExecutionException e) {
             Logger.error("Failed to retrieve tasks", e);
+            return new ArrayList<>();
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    /**
+     * Retrieves the tasks with an id in a range
+     * 
+     * @param afterId the id before the range, exclusive
+     * @param toId    the last id of the range, inclusive
+     * @return a List of TaskItem objects in id order
+     */
+    static List<TaskItem> getTasksInIdRange(long afterId, long toId) {
+        List<TaskItem> tasks = new ArrayList<>();
+        String SQL = "SELECT id, version, name, dueDate, completed, dueDay FROM tasks WHERE id > ? AND id <= ? ORDER BY id";
+        long start = System.nanoTime();
+
+        try (PooledConnection conn = getConnection()) {
+            PreparedStatement pstmt = conn.prepareCached(SQL);
+            pstmt.setLong(1, afterId);
+            pstmt.setLong(2, toId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    tasks.add(mapRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            StatementKind.SELECT_RANGE.errors.increment();
+            Logger.error("Failed to retrieve tasks after id " + afterId, e);
         }
 
+        StatementKind.SELECT_RANGE.latency.recordSince(start);
         return tasks;
     }
 
+    /**
+     * Gets the largest task id
+     * 
+     * @return the largest id; 0 if there are no tasks
+     */
+    public static long getMaxTaskId() {
+        String SQL = "SELECT MAX(id) FROM tasks";
+        long start = System.nanoTime();
+        long maxId = 0;
+
+        try (PooledConnection conn = getConnection();
+                ResultSet rs = conn.prepareCached(SQL).executeQuery()) {
+            if (rs.next()) {
+                maxId = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            StatementKind.SELECT_MAX_ID.errors.increment();
+            Logger.error("Failed to read the largest task id", e);
+        }
+
+        StatementKind.SELECT_MAX_ID.latency.recordSince(start);
+        return maxId;
+    }
+
+    /**
+     * Retrieves one page of tasks matching the query. Filtering and paging run
+     * in SQL, so only the rows of the page are read.
+     * 
+     * @param query The filters, page size, and cursor
+     * @return the page of tasks; empty if none match
+     */
+    public static TaskPage getTasksPage(TaskQuery query) {
+        String sql = filterSql(query) + " ORDER BY id LIMIT ?";
+        long start = System.nanoTime();
+
+        List<TaskItem> tasks = new ArrayList<>();
+        long lastId = 0;
+        boolean hasMore = false;
+
+        try (PooledConnection conn = getConnection()) {
+            PreparedStatement pstmt = conn.prepareCached(sql);
+            int index = bindFilters(pstmt, query);
+            // Read one extra row to learn whether another page follows
+            pstmt.setInt(index, query.getLimit() + 1);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (tasks.size() == query.getLimit()) {
+                        hasMore = true;
+                        break;
+                    }
+                    lastId = rs.getLong("id");
+                    tasks.add(mapRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            StatementKind.SELECT_PAGE.errors.increment();
+            Logger.error("Failed to retrieve task page", e);
+        }
+        StatementKind.SELECT_PAGE.latency.recordSince(start);
+
+        return new TaskPage(tasks, hasMore ? Long.toString(lastId) : null);
+    }
+
+    /**
+     * Walks every task matching the query's filters row by row, in id order,
+     * without materializing the result. The query's limit is ignored.
+     * 
+     * Rows are read in keyset pages of STREAM_PAGE rows: each page is copied
+     * out and its connection returned to the pool before the visitor sees the
+     * rows, and the next page starts after the last id. A slow visitor, such
+     * as a client reading a response slowly, therefore never holds a
+     * connection or an open cursor.
+     * 
+     * @param query   The filters and starting cursor
+     * @param visitor Receives each row as it is read
+     * @return number of rows visited
+     * @throws IOException if the visitor fails or the query cannot be run
+     */
+    public static int streamTasks(TaskQuery query, TaskRowVisitor visitor) throws IOException {
+        String sql = filterSql(query) + " ORDER BY id LIMIT ?";
+        long[] ids = new long[STREAM_PAGE];
+        long[] versions = new long[STREAM_PAGE];
+        String[] names = new String[STREAM_PAGE];
+        String[] dueDates = new String[STREAM_PAGE];
+        boolean[] completed = new boolean[STREAM_PAGE];
+        long afterId = query.getAfterId();
+        int rows = 0;
+
+        while (true) {
+            int count = 0;
+            long start = System.nanoTime();
+            try (PooledConnection conn = getConnection()) {
+                PreparedStatement pstmt = conn.prepareCached(sql);
+                int index = bindFilters(pstmt, query, afterId);
+                pstmt.setInt(index, STREAM_PAGE);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids[count] = rs.getLong(1);
+                        versions[count] = rs.getLong(2);
+                        names[count] = rs.getString(3);
+                        dueDates[count] = rs.getString(4);
+                        completed[count] = rs.getInt(5) == 1;
+                        count++;
+                    }
+                }
+            } catch (SQLException e) {
+                StatementKind.SELECT_STREAM.errors.increment();
+                Logger.error("Failed to stream tasks after " + rows + " row(s)", e);
+                throw new IOException("Failed to stream tasks", e);
+            } finally {
+                StatementKind.SELECT_STREAM.latency.recordSince(start);
+            }
+
+            for (int i = 0; i < count; i++) {
+                visitor.visit(ids[i], versions[i], names[i], dueDates[i], completed[i]);
+            }
+            rows += count;
+            if (count < STREAM_PAGE) {
+                return rows;
+            }
+            afterId = ids[count - 1];
+        }
+    }
+
+    /**
+     * Builds the SELECT and WHERE clause for a query's filters
+     * 
+     * @param query The filters
+     * @return the SQL without ORDER BY or LIMIT
+     */
+    private static String filterSql(TaskQuery query) {
+        StringBuilder sql = new StringBuilder("SELECT id, version, name, dueDate, completed, dueDay FROM tasks WHERE id > ?");
+        if (query.getCompleted() != null) {
+            sql.append(" AND completed = ?");
+        }
+        if (query.getDueBefore() != null) {
+            sql.append(" AND dueDay < ?");
+        }
+        if (query.getDueAfter() != null) {
+            sql.append(" AND dueDay > ?");
+        }
+        if (query.getNamePrefix() != null) {
+            sql.append(" AND name LIKE ? ESCAPE '\\'");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Binds a query's filters to a statement built by filterSql
+     * 
+     * @param pstmt The statement
+     * @param query The filters
+     * @return the index of the next unbound placeholder
+     * @throws SQLException if a value cannot be bound
+     */
+    private static int bindFilters(PreparedStatement pstmt, TaskQuery query) throws SQLException {
+        return bindFilters(pstmt, query, query.getAfterId());
+    }
+
+    /**
+     * Binds a query's filters to a statement built by filterSql, starting
+     * after another id than the query's cursor
+     * 
+     * @param pstmt   The statement
+     * @param query   The filters
+     * @param afterId The id the rows start after
+     * @return the index of the next unbound placeholder
+     * @throws SQLException if a value cannot be bound
+     */
+    private static int bindFilters(PreparedStatement pstmt, TaskQuery query, long afterId) throws SQLException {
+        int index = 1;
+        pstmt.setLong(index++, afterId);
+        if (query.getCompleted() != null) {
+            StatementBinder.setFlag(pstmt, index++, query.getCompleted());
+        }
+        if (query.getDueBefore() != null) {
+            pstmt.setLong(index++, query.getDueBefore().toEpochDay());
+        }
+        if (query.getDueAfter() != null) {
+            pstmt.setLong(index++, query.getDueAfter().toEpochDay());
+        }
+        if (query.getNamePrefix() != null) {
+            pstmt.setString(index++, escapeLike(query.getNamePrefix()) + "%");
+        }
+        return index;
+    }
+
+    /**
+     * Escapes the LIKE wildcards in a literal prefix
+     * 
+     * @param prefix The literal text
+     * @return the text with %, _ and the escape character escaped
+     */
+    private static String escapeLike(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Builds a TaskItem from the current row of a result set. The due date is
+     * taken from the pre-computed dueDay column, so nothing is parsed; only a
+     * row without dueDay falls back to parsing its MM-dd-yyyy text.
+     * 
+     * @param rs The result set positioned on a task row
+     * @return the TaskItem
+     * @throws SQLException if a column cannot be read
+     */
+    private static TaskItem mapRow(ResultSet rs) throws SQLException {
+        long id = rs.getLong("id");
+        long version = rs.getLong("version");
+        String name = rs.getString("name");
+        boolean completed = rs.getInt("completed") == 1;
+        int dueDay = rs.getInt("dueDay");
+        if (!rs.wasNull()) {
+            return TaskItem.ofTrusted(id, version, name, dueDay, true, completed);
+        }
+
+        String dueDate = rs.getString("dueDate");
+        if (dueDate != null) {
+            try {
+                TaskItem task = new TaskItem(name, dueDate, completed);
+                task.assignId(id);
+                task.assignVersion(version);
+                return task;
+            } catch (IllegalArgumentException e) {
+                Logger.warn("Task '%s' has an invalid due date: %s", name, dueDate);
+            }
+        }
+        return TaskItem.ofTrusted(id, version, name, 0, false, completed);
+    }
+
+    /**
+     * Retrieves the task stored under a row id
+     * 
+     * @param id The row id
+     * @return the task, or null if no row has the id
+     */
+    public static TaskItem getTaskById(long id) {
+        String SQL = "SELECT * FROM tasks WHERE id = ?";
+        long start = System.nanoTime();
+        TaskItem task = null;
+        try (PooledConnection conn = getConnection()) {
+            PreparedStatement pstmt = conn.prepareCached(SQL);
+            pstmt.setLong(1, id);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    task = mapRow(rs);
+                }
+            }
+        } catch (SQLException e) {
+            StatementKind.SELECT_BY_ID.errors.increment();
+            Logger.error("Failed to read task " + id, e);
+        }
+        StatementKind.SELECT_BY_ID.latency.recordSince(start);
+        return task;
+    }
+
     public static TaskItem getTaskByName(String name){
-        String SQL = "SELECT * FROM tasks WHERE name = ?";
-        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(SQL)) {
+        String SQL = "SELECT * FROM tasks WHERE name = ? COLLATE NOCASE";
+        long start = System.nanoTime();
+        TaskItem task = null;
+        try (PooledConnection conn = getConnection()) {
+            PreparedStatement pstmt = conn.prepareCached(SQL);
             pstmt.setString(1, name);
 
             try(ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new TaskItem(
-                        rs.getString("name"),
-                        rs.getString("dueDate"),
-                        rs.getInt("completed") == 1
-                    );
+                    task = mapRow(rs);
                 }
             } 
 
         } catch (SQLException e) {
+            StatementKind.SELECT_BY_NAME.errors.increment();
             e.printStackTrace();
         }
-        return null;
+        StatementKind.SELECT_BY_NAME.latency.recordSince(start);
+        return task;
     }
 
 }
@@ -0,0 +1,25 @@
+package com.example;
+
+import java.io.IOException;
+
+/**
+ * Receives task rows one at a time while TaskRepository streams a result set
+ *
+ * Rows are handed over as plain column values, so streaming a table does not
+ * build a TaskItem or a list for every row.
+ */
+@FunctionalInterface
+public interface TaskRowVisitor {
+
+    /**
+     * Handles one task row
+     *
+     * @param id        - The row id
+     * @param version   - The version of the task
+     * @param name      - The name of the task
+     * @param dueDate   - The due date in MM-dd-yyyy format
+     * @param completed - The completion status
+     * @throws IOException if the row cannot be written out; stops the stream
+     */
+    void visit(long id, long version, String name, String dueDate, boolean completed) throws IOException;
+}
@@ -0,0 +1,110 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * TaskStore is the in-memory storage engine behind TaskManager
+ *
+ * Tasks are addressed by their normalized (lower-case) name. TaskManager
+ * serializes writers of the same name with its stripe locks; a store must
+ * still be safe to read while other names are written.
+ */
+interface TaskStore {
+
+    /**
+     * Checks if a task with the name is stored
+     *
+     * @param key the normalized name
+     * @return true if the task is stored
+     */
+    boolean contains(String key);
+
+    /**
+     * Gets a stored task
+     *
+     * @param key the normalized name
+     * @return the task, or null if none is stored under the name
+     */
+    TaskItem get(String key);
+
+    /**
+     * Gets a stored task by its id
+     *
+     * @param id the id of the task
+     * @return the task, or null if no stored task has the id
+     */
+    TaskItem getById(long id);
+
+    /**
+     * Stores a task after every task stored so far
+     *
+     * @param key  the normalized name
+     * @param task the task
+     */
+    void put(String key, TaskItem task);
+
+    /**
+     * Replaces a stored task, keeping its place in the order
+     *
+     * @param key    the normalized name the task is stored under
+     * @param newKey the normalized name of the new task; another task must
+     *               not be stored under it
+     * @param task   the new task
+     */
+    void replace(String key, String newKey, TaskItem task);
+
+    /**
+     * Removes a task
+     *
+     * @param key the normalized name
+     * @return true if a task was removed
+     */
+    boolean remove(String key);
+
+    /**
+     * Checks if a task is the one stored under its name. Stores that create
+     * TaskItem views on demand only compare names.
+     *
+     * @param key  the normalized name
+     * @param task the task to check
+     * @return true if the task is managed by this store
+     */
+    boolean isManaged(String key, TaskItem task);
+
+    /**
+     * Gets the number of stored tasks
+     *
+     * @return task count
+     */
+    int size();
+
+    /**
+     * Copies the stored tasks, in the order they were added
+     *
+     * @return a new list of the tasks
+     */
+    List<TaskItem> toList();
+
+    /**
+     * Gets the stored tasks due in a range of days from the store's due date
+     * index; tasks due on the same day come in the order they were added
+     *
+     * @param fromDay  first epoch day, inclusive
+     * @param toDay    last epoch day, inclusive
+     * @param openOnly whether to skip completed tasks
+     * @param limit    the maximum number of tasks
+     * @return the tasks, in due date order; empty if fromDay is after toDay
+     */
+    List<TaskItem> dueBetween(int fromDay, int toDay, boolean openOnly, int limit);
+
+    /**
+     * Finds stored tasks by the start of their name or of any word in it,
+     * ignoring case, from the store's search index; see SearchIndex for the
+     * ranking
+     *
+     * @param query the search text
+     * @param limit the maximum number of tasks
+     * @return up to limit tasks, best matches first; empty for a blank query
+     */
+    List<TaskItem> search(String query, int limit);
+}
@@ -0,0 +1,32 @@
+package com.example;
+
+/**
+ * Thrown when a conditional write finds the task at another version than the
+ * one the writer read, because someone else changed it in between
+ */
+public class VersionConflictException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long currentVersion;
+
+    /**
+     * Creates the exception
+     *
+     * @param id             - The id of the task
+     * @param currentVersion - The version the task is at now
+     */
+    public VersionConflictException(long id, long currentVersion) {
+        super("Task " + id + " was changed by someone else; it is at version " + currentVersion + ".");
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Gets the version the task is at now
+     *
+     * @return the current version
+     */
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
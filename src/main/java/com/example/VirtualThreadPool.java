@@ -0,0 +1,104 @@
+package com.example;
+
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreadPool is a Jetty thread pool that runs request handling on
+ * virtual threads
+ *
+ * Jetty marks the connection callbacks that read and handle a request as
+ * Invocable with a BLOCKING invocation type. Those jobs get a new virtual
+ * thread each, so a handler blocked on JDBC only parks its virtual thread.
+ * Everything else, such as the acceptor and selector loops that run for the
+ * lifetime of the server, stays on a small pool of platform threads: a
+ * selector parked in Selector.select() would otherwise pin a carrier thread.
+ */
+public final class VirtualThreadPool extends ContainerLifeCycle implements ThreadPool {
+
+    private final QueuedThreadPool platform;
+    private final ExecutorService virtual;
+    private final AtomicInteger activeVirtual = new AtomicInteger();
+
+    /**
+     * Creates a pool with a platform pool for Jetty's own threads
+     *
+     * @param maxPlatformThreads - The maximum number of platform threads for acceptors and selectors
+     */
+    public VirtualThreadPool(int maxPlatformThreads) {
+        this.platform = new QueuedThreadPool(maxPlatformThreads, Math.min(4, maxPlatformThreads));
+        this.platform.setName("jetty-platform");
+        this.virtual = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("jetty-virtual-", 0).factory());
+        addBean(platform);
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        if (job instanceof Invocable invocable
+                && invocable.getInvocationType() == Invocable.InvocationType.BLOCKING) {
+            virtual.execute(() -> {
+                activeVirtual.incrementAndGet();
+                try {
+                    job.run();
+                } finally {
+                    activeVirtual.decrementAndGet();
+                }
+            });
+        } else {
+            platform.execute(job);
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        virtual.shutdown();
+        virtual.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        platform.join();
+    }
+
+    /**
+     * Gets the number of threads in use: platform threads plus running virtual threads
+     *
+     * @return thread count
+     */
+    @Override
+    public int getThreads() {
+        return platform.getThreads() + activeVirtual.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return platform.getIdleThreads();
+    }
+
+    /**
+     * Virtual threads are never short, so only the platform pool can run low
+     *
+     * @return true if the platform pool is low on threads
+     */
+    @Override
+    public boolean isLowOnThreads() {
+        return platform.isLowOnThreads();
+    }
+
+    /**
+     * Gets the number of virtual threads currently handling requests
+     *
+     * @return running virtual thread count
+     */
+    public int getVirtualThreads() {
+        return activeVirtual.get();
+    }
+}
@@ -0,0 +1,312 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * WireFormat holds the encodings GET /tasks can answer with besides plain JSON
+ *
+ * The binary task list is for service-to-service clients that send
+ * Accept: application/x-task-list. It is a varint format version, FORMAT_VERSION,
+ * then a varint count followed by one record per task:
+ *
+ *   varint  id, 0 for a task that is not stored
+ *   varint  version, for If-Match and patches with "version"
+ *   varint  name length in UTF-8 bytes
+ *   bytes   name
+ *   byte    flags: 1 = has a due date, 2 = completed
+ *   varint  due date as a zigzag-encoded day since 1970-01-01, if flag 1 is set
+ *
+ * A typical task takes about 16 bytes instead of about 70 as JSON, and is
+ * written without formatting a date. Either encoding can be compressed with
+ * gzip or deflate, chosen from the request's Accept-Encoding. Responses name
+ * the format version in their content type too, so a client can tell a list
+ * it cannot read before decoding it. Version 1 was the same list without the
+ * leading format version and the task versions.
+ */
+final class WireFormat {
+
+    /** Content type of the binary task list */
+    static final String BINARY_TYPE = "application/x-task-list";
+
+    /** Version of the binary task list layout; bump it whenever the layout changes */
+    static final int FORMAT_VERSION = 2;
+
+    /** Content type of binary task list responses, tagged with the format version */
+    static final String BINARY_CONTENT_TYPE = BINARY_TYPE + "; version=" + FORMAT_VERSION;
+
+    /** Bodies smaller than this are sent uncompressed; compression would not pay off */
+    static final int MIN_COMPRESS_BYTES = 1024;
+
+    /** Deflate level; fastest, since JSON task lists compress well even at level 1 */
+    static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    private static final int HAS_DUE_DATE = 1;
+    private static final int COMPLETED = 2;
+
+    /** A response content coding */
+    enum Coding {
+        IDENTITY(null), GZIP("gzip"), DEFLATE("deflate");
+
+        /** The Content-Encoding header value; null for none */
+        final String header;
+
+        Coding(String header) {
+            this.header = header;
+        }
+
+        /**
+         * Picks the coding a client prefers from its Accept-Encoding header.
+         * gzip wins a tie with deflate, and a q value of 0 rules a coding out.
+         *
+         * @param acceptEncoding the header value, may be null
+         * @return the coding to use; IDENTITY if neither is accepted
+         */
+        static Coding negotiate(String acceptEncoding) {
+            if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+                return IDENTITY;
+            }
+            double gzip = -1;
+            double deflate = -1;
+            double any = -1;
+            for (String part : acceptEncoding.split(",")) {
+                String[] fields = part.split(";");
+                String name = fields[0].trim().toLowerCase(Locale.ROOT);
+                double q = 1;
+                for (int i = 1; i < fields.length; i++) {
+                    String field = fields[i].trim();
+                    if (field.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(field.substring(2));
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                switch (name) {
+                    case "gzip", "x-gzip" -> gzip = q;
+                    case "deflate" -> deflate = q;
+                    case "*" -> any = q;
+                    default -> {
+                    }
+                }
+            }
+            gzip = gzip < 0 ? any : gzip;
+            deflate = deflate < 0 ? any : deflate;
+            if (gzip > 0 && gzip >= deflate) {
+                return GZIP;
+            }
+            return deflate > 0 ? DEFLATE : IDENTITY;
+        }
+
+        /**
+         * Wraps a stream so what is written to it is compressed with this
+         * coding. Complete it with finish(OutputStream), which also frees the
+         * compressor; closing it would close the stream under it.
+         *
+         * @param out the stream to write compressed bytes to
+         * @return the compressing stream; out itself for IDENTITY
+         * @throws IOException if the gzip header cannot be written
+         */
+        OutputStream wrap(OutputStream out) throws IOException {
+            return switch (this) {
+                case IDENTITY -> out;
+                case GZIP -> new GZIPOutputStream(out, 8192) {
+                    {
+                        def.setLevel(COMPRESSION_LEVEL);
+                    }
+
+                    @Override
+                    public void finish() throws IOException {
+                        super.finish();
+                        def.end();
+                    }
+                };
+                case DEFLATE -> new DeflaterOutputStream(out, new Deflater(COMPRESSION_LEVEL), 8192) {
+                    @Override
+                    public void finish() throws IOException {
+                        super.finish();
+                        def.end();
+                    }
+                };
+            };
+        }
+
+        /**
+         * Completes a stream from wrap() without closing the stream under it
+         *
+         * @param wrapped the stream returned by wrap()
+         * @throws IOException if the trailer cannot be written
+         */
+        static void finish(OutputStream wrapped) throws IOException {
+            if (wrapped instanceof DeflaterOutputStream deflater) {
+                deflater.finish();
+            }
+            wrapped.flush();
+        }
+    }
+
+    private WireFormat() {
+    }
+
+    /**
+     * Checks whether a client asked for the binary task list
+     *
+     * @param accept the Accept header, may be null
+     * @return true if it names the binary type
+     */
+    static boolean acceptsBinary(String accept) {
+        return accept != null && accept.contains(BINARY_TYPE);
+    }
+
+    /**
+     * Encodes tasks as a binary task list
+     *
+     * @param tasks the tasks, in order
+     * @return the encoded list
+     */
+    static byte[] encode(List<TaskItem> tasks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + tasks.size() * 24);
+        writeVarint(out, FORMAT_VERSION);
+        writeVarint(out, tasks.size());
+        for (TaskItem task : tasks) {
+            byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+            writeVarlong(out, task.getId());
+            writeVarlong(out, task.getVersion());
+            writeVarint(out, name.length);
+            out.write(name, 0, name.length);
+            int flags = (task.hasDueDate() ? HAS_DUE_DATE : 0) | (task.isCompleted() ? COMPLETED : 0);
+            out.write(flags);
+            if (task.hasDueDate()) {
+                int day = task.getDueEpochDay();
+                writeVarint(out, (day << 1) ^ (day >> 31));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a binary task list
+     *
+     * @param bytes the encoded list
+     * @return the tasks, in order
+     * @throws IllegalArgumentException if the bytes are not a valid task list
+     *                                  of this format version
+     */
+    static List<TaskItem> decode(byte[] bytes) throws IllegalArgumentException {
+        int[] pos = { 0 };
+        int formatVersion = readVarint(bytes, pos);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Task list format version " + formatVersion + " is not supported");
+        }
+        int count = readVarint(bytes, pos);
+        if (count < 0) {
+            throw new IllegalArgumentException("Task list has a negative count");
+        }
+        List<TaskItem> tasks = new ArrayList<>(Math.min(count, bytes.length));
+        for (int i = 0; i < count; i++) {
+            long id = readVarlong(bytes, pos);
+            long version = readVarlong(bytes, pos);
+            int length = readVarint(bytes, pos);
+            if (length <= 0 || length > bytes.length - pos[0] - 1) {
+                throw new IllegalArgumentException("Task list is truncated at task " + i);
+            }
+            String name = new String(bytes, pos[0], length, StandardCharsets.UTF_8);
+            pos[0] += length;
+            int flags = bytes[pos[0]++];
+            int day = 0;
+            if ((flags & HAS_DUE_DATE) != 0) {
+                int zigzag = readVarint(bytes, pos);
+                day = (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            if (name.isBlank()) {
+                throw new IllegalArgumentException("Task " + i + " has no name");
+            }
+            tasks.add(TaskItem.ofTrusted(id, version, name, day, (flags & HAS_DUE_DATE) != 0, (flags & COMPLETED) != 0));
+        }
+        if (pos[0] != bytes.length) {
+            throw new IllegalArgumentException("Task list has " + (bytes.length - pos[0]) + " trailing byte(s)");
+        }
+        return tasks;
+    }
+
+    /**
+     * Compresses a whole body
+     *
+     * @param body   the bytes to compress
+     * @param coding the coding to use
+     * @return the compressed bytes; body itself for IDENTITY
+     */
+    static byte[] compress(byte[] body, Coding coding) {
+        if (coding == Coding.IDENTITY) {
+            return body;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try {
+            OutputStream compressed = coding.wrap(out);
+            compressed.write(body);
+            Coding.finish(compressed);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory compression failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    // ------------------------
+    // Varints
+    // ------------------------
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] pos) throws IllegalArgumentException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= bytes.length) {
+                throw new IllegalArgumentException("Task list is truncated");
+            }
+            byte b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Task list has a malformed number");
+    }
+
+    private static void writeVarlong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarlong(byte[] bytes, int[] pos) throws IllegalArgumentException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (pos[0] >= bytes.length) {
+                throw new IllegalArgumentException("Task list is truncated");
+            }
+            byte b = bytes[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Task list has a malformed number");
+    }
+}
@@ -0,0 +1,395 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * WritePipeline funnels every single-row mutation through one writer thread
+ *
+ * SQLite only allows one writer at a time, so concurrent callers that each
+ * open their own transaction just queue up on the database lock. Instead,
+ * callers put their statement on a bounded queue and get a CompletableFuture
+ * back. The writer thread takes up to batchSize statements (waiting at most
+ * lingerMillis for more to arrive), runs them in a single transaction, and
+ * completes every caller's future with its row count once the transaction
+ * commits (group commit).
+ *
+ * A statement that fails only fails its own future; the rest of the batch
+ * still commits. If the commit itself fails, every future in the batch fails.
+ * Submitting and closing exclude each other, so no statement is queued behind
+ * the writer's stop marker; any statement still queued when the writer stops
+ * fails instead of waiting forever.
+ */
+public class WritePipeline implements AutoCloseable {
+
+    /** Default maximum number of statements per transaction */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /** Default time the writer waits for more statements before committing */
+    public static final long DEFAULT_LINGER_MILLIS = 1;
+
+    /** Default number of statements that may wait in the queue */
+    public static final int DEFAULT_QUEUE_DEPTH = 10_000;
+
+    /** Queued by close() to stop the writer once everything before it is written */
+    private static final WriteOp STOP = new WriteOp(null, null);
+
+    private final ConnectionSource connections;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int queueDepth;
+    private final BlockingQueue<WriteOp> queue;
+    private final Thread writer;
+    /** Submitters hold the read side while queuing; close() takes the write side */
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+
+    // METRICS
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final AtomicLong lingerNanosTotal = new AtomicLong();
+    private final AtomicLong commitNanosTotal = new AtomicLong();
+
+    /**
+     * Creates and starts a write pipeline
+     *
+     * @param connections  - Where the writer borrows its connection for each batch
+     * @param batchSize    - The maximum number of statements per transaction
+     * @param lingerMillis - How long the writer waits for more statements, 0 to commit what is queued
+     * @param queueDepth   - The maximum number of waiting statements; submit blocks when full
+     * @throws IllegalArgumentException if a setting is out of range
+     */
+    public WritePipeline(ConnectionSource connections, int batchSize, long lingerMillis, int queueDepth)
+            throws IllegalArgumentException {
+        if (batchSize < 1 || queueDepth < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Batch size and queue depth must be positive, linger not negative.");
+        }
+        this.connections = connections;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.queueDepth = queueDepth;
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.writer = new Thread(this::writeLoop, "task-write-pipeline");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a statement for the writer thread, waiting while the queue is full
+     *
+     * @param sql    The SQL statement with ? placeholders
+     * @param binder Binds values to the placeholders; runs on the writer thread
+     * @return a future completed with the number of rows affected once committed
+     */
+    public CompletableFuture<Integer> submit(String sql, StatementBinder binder) {
+        WriteOp op = new WriteOp(sql, binder);
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                op.result.completeExceptionally(new RejectedExecutionException("Write pipeline is closed"));
+                return op.result;
+            }
+            queue.put(op);
+            submitted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            op.result.completeExceptionally(e);
+        } finally {
+            closing.readLock().unlock();
+        }
+        return op.result;
+    }
+
+    /**
+     * Stops accepting statements, writes everything already queued, and stops
+     * the writer thread
+     */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // Submitters blocked on a full queue hold the read side, so the writer must keep draining
+            queue.put(STOP);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Logger.info("Write pipeline closed (%s)", getStats());
+    }
+
+    private void writeLoop() {
+        List<WriteOp> batch = new ArrayList<>(batchSize);
+        boolean stopping = false;
+
+        while (!stopping) {
+            try {
+                WriteOp first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+
+                long lingerStart = System.nanoTime();
+                long deadline = lingerStart + lingerNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    WriteOp next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                lingerNanosTotal.addAndGet(System.nanoTime() - lingerStart);
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                stopping = true;
+            } finally {
+                for (WriteOp op : batch) {
+                    op.result.completeExceptionally(new IllegalStateException("Write pipeline stopped"));
+                }
+                batch.clear();
+            }
+        }
+
+        // Only left behind if the writer was interrupted
+        for (WriteOp op; (op = queue.poll()) != null;) {
+            if (op != STOP) {
+                failed.incrementAndGet();
+                op.result.completeExceptionally(new IllegalStateException("Write pipeline stopped"));
+            }
+        }
+    }
+
+    /**
+     * Runs a batch in one transaction and completes its futures
+     *
+     * @param batch the statements to run, in submission order
+     */
+    private void writeBatch(List<WriteOp> batch) {
+        long start = System.nanoTime();
+        int[] rows = new int[batch.size()];
+        SQLException[] errors = new SQLException[batch.size()];
+
+        try (PooledConnection conn = connections.acquire()) {
+            Connection raw = conn.getRaw();
+            raw.setAutoCommit(false);
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    WriteOp op = batch.get(i);
+                    try {
+                        PreparedStatement pstmt = conn.prepareCached(op.sql);
+                        op.binder.bind(pstmt);
+                        rows[i] = pstmt.executeUpdate();
+                        op.binder.executed(pstmt, rows[i]);
+                    } catch (SQLException e) {
+                        // SQLite rolls back only the failing statement
+                        errors[i] = e;
+                    }
+                }
+                raw.commit();
+            } catch (SQLException e) {
+                raw.rollback();
+                throw e;
+            } finally {
+                raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            Logger.error("Write pipeline batch of " + batch.size() + " statement(s) failed", e);
+            failed.addAndGet(batch.size());
+            for (WriteOp op : batch) {
+                op.result.completeExceptionally(e);
+            }
+            batch.clear();
+            return;
+        }
+
+        commitNanosTotal.addAndGet(System.nanoTime() - start);
+        batches.incrementAndGet();
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors[i] != null) {
+                failed.incrementAndGet();
+                batch.get(i).result.completeExceptionally(errors[i]);
+            } else {
+                written.incrementAndGet();
+                batch.get(i).result.complete(rows[i]);
+            }
+        }
+        batch.clear();
+    }
+
+    // ------------------------
+    // Metrics
+    // ------------------------
+
+    /**
+     * Gets the configured maximum number of statements per transaction
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the configured time the writer waits for more statements
+     *
+     * @return the linger time in milliseconds
+     */
+    public long getLingerMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lingerNanos);
+    }
+
+    /**
+     * Gets the configured maximum number of waiting statements
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the number of statements currently waiting for the writer
+     *
+     * @return queued statement count
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of statements accepted by submit()
+     *
+     * @return submitted statement count
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * Gets the number of statements committed successfully
+     *
+     * @return written statement count
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Gets the number of statements whose future failed
+     *
+     * @return failed statement count
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the number of transactions committed
+     *
+     * @return committed batch count
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Gets the largest number of statements committed in one transaction
+     *
+     * @return the largest batch
+     */
+    public long getMaxBatchSize() {
+        return maxBatch.get();
+    }
+
+    /**
+     * Gets the average number of statements per committed transaction
+     *
+     * @return the average batch size; 0 if nothing was committed
+     */
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) (written.get() + failed.get()) / count;
+    }
+
+    /**
+     * Gets the total time the writer spent waiting for batches to fill
+     *
+     * @return linger time in nanoseconds
+     */
+    public long getLingerNanos() {
+        return lingerNanosTotal.get();
+    }
+
+    /**
+     * Gets the total time the writer spent running and committing batches
+     *
+     * @return commit time in nanoseconds
+     */
+    public long getCommitNanos() {
+        return commitNanosTotal.get();
+    }
+
+    /**
+     * Summarizes the pipeline metrics in one line
+     *
+     * @return the pipeline metrics
+     */
+    public String getStats() {
+        return String.format("queued=%d submitted=%d written=%d failed=%d batches=%d avgBatch=%.1f maxBatch=%d",
+                getQueuedCount(), getSubmittedCount(), getWrittenCount(), getFailedCount(), getBatchCount(),
+                getAverageBatchSize(), getMaxBatchSize());
+    }
+
+    /**
+     * Supplies the writer thread with a connection for each batch
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        PooledConnection acquire() throws SQLException;
+    }
+
+    /**
+     * One queued statement and the future its caller waits on
+     */
+    private static final class WriteOp {
+        final String sql;
+        final StatementBinder binder;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        WriteOp(String sql, StatementBinder binder) {
+            this.sql = sql;
+            this.binder = binder;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalPersistenceTest {
+
+    // ------------------------
+    // Temporary directory
+    // ------------------------
+    @TempDir
+    Path TempDir;
+
+    private final List<JournalPersistence> opened = new ArrayList<>();
+
+    @AfterEach
+    void cleanup() {
+        opened.forEach(JournalPersistence::close);
+    }
+
+    // ------------------------
+    // Helper functions
+    // ------------------------
+
+    /** Opens the journal directory; dropping the instance without close() acts as a crash */
+    private JournalPersistence open(int syncEvery, long snapshotBytes) {
+        JournalPersistence journal = new JournalPersistence(TempDir, syncEvery, snapshotBytes);
+        opened.add(journal);
+        return journal;
+    }
+
+    private JournalPersistence open() {
+        return open(1, JournalPersistence.DEFAULT_SNAPSHOT_BYTES);
+    }
+
+    private List<String> names(TaskPersistence persistence) {
+        return persistence.getAllTasks().stream().map(TaskItem::toString).toList();
+    }
+
+    private Path journalFile() throws IOException {
+        try (var files = Files.list(TempDir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                    .max(Path::compareTo).orElseThrow();
+        }
+    }
+
+    // ------------------------
+    // Normal tests
+    // ------------------------
+
+    @Test
+    public void writes_ShouldSurviveReopen() {
+        JournalPersistence journal = open();
+        assertEquals(2, journal.addTasks(List.of(new TaskItem("A", "09-01-2025"), new TaskItem("B", "09-02-2025"))));
+        assertEquals(0, journal.addTask(new TaskItem("a", "09-03-2025")));
+        assertEquals(1, journal.addTask(new TaskItem("C", "09-03-2025")));
+        assertEquals(1, journal.updateTask(new TaskItem("b", "01-01-2000", true)));
+        assertEquals(1, journal.removeTask(new TaskItem("A", "09-01-2025")));
+        List<String> before = names(journal);
+        journal.close();
+
+        JournalPersistence reopened = open();
+        assertEquals(before, names(reopened));
+        TaskItem b = reopened.getTaskByName("B");
+        assertTrue(b.isCompleted());
+        assertEquals("09-02-2025", b.getDueDate());
+        assertNull(reopened.getTaskByName("A"));
+    }
+
+    @Test
+    public void crashWithoutClose_ShouldKeepWrittenRecords() {
+        JournalPersistence journal = open(0, JournalPersistence.DEFAULT_SNAPSHOT_BYTES);
+        journal.addTask(new TaskItem("Kept", "09-01-2025"));
+
+        JournalPersistence recovered = open();
+        assertEquals("Kept", recovered.getTaskByName("kept").getName());
+        assertEquals(0, journal.getSyncCount());
+    }
+
+    @Test
+    public void tornRecord_ShouldBeTruncatedAndLaterWritesKept() throws IOException {
+        JournalPersistence journal = open();
+        journal.addTask(new TaskItem("First", "09-01-2025"));
+        journal.addTask(new TaskItem("Second", "09-02-2025"));
+        long intact = Files.size(journalFile());
+
+        // A crash in the middle of a write leaves half a record behind
+        try (FileChannel channel = FileChannel.open(journalFile(), StandardOpenOption.WRITE)) {
+            channel.position(intact);
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2, 3 }));
+        }
+
+        JournalPersistence recovered = open();
+        assertEquals(List.of("First", "Second"),
+                recovered.getAllTasks().stream().map(TaskItem::getName).toList());
+        assertEquals(intact, Files.size(journalFile()));
+
+        recovered.addTask(new TaskItem("Third", "09-03-2025"));
+        recovered.close();
+        assertEquals(3, open().getAllTasks().size());
+    }
+
+    @Test
+    public void damagedRecord_ShouldEndReplay() throws IOException {
+        JournalPersistence journal = open();
+        journal.addTask(new TaskItem("First", "09-01-2025"));
+        long firstEnd = Files.size(journalFile());
+        journal.addTask(new TaskItem("Second", "09-02-2025"));
+        journal.addTask(new TaskItem("Third", "09-03-2025"));
+
+        // Flip a byte inside the second record's name
+        try (FileChannel channel = FileChannel.open(journalFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, firstEnd + 30);
+            one.put(0, (byte) (one.get(0) ^ 0xFF)).rewind();
+            channel.write(one, firstEnd + 30);
+        }
+
+        JournalPersistence recovered = open();
+        assertEquals(List.of("First"), recovered.getAllTasks().stream().map(TaskItem::getName).toList());
+    }
+
+    @Test
+    public void snapshot_ShouldCompactJournalAndRecover() throws IOException {
+        JournalPersistence journal = open();
+        for (int i = 0; i < 20; i++) {
+            journal.addTask(new TaskItem("Task " + i, "09-01-2025"));
+        }
+        journal.removeTask(new TaskItem("Task 0", "09-01-2025"));
+        journal.updateTask(new TaskItem("Task 1", "09-01-2025", true));
+        journal.snapshot();
+        assertEquals(0, journal.getJournalBytes());
+        journal.addTask(new TaskItem("After", "09-02-2025"));
+        List<String> before = names(journal);
+
+        try (var files = Files.list(TempDir)) {
+            assertEquals(2, files.count()); // the snapshot and the new journal
+        }
+
+        JournalPersistence recovered = open();
+        assertEquals(before, names(recovered));
+        assertTrue(recovered.getTaskByName("task 1").isCompleted());
+
+        // Ids keep growing across the snapshot, so pages stay in insertion order
+        TaskPage page = recovered.getTasksPage(new TaskQuery().limit(19));
+        assertEquals("Task 1", page.getTasks().get(0).getName());
+        assertEquals("After", recovered.getTasksPage(new TaskQuery().cursor(page.getNextCursor()))
+                .getTasks().get(0).getName());
+    }
+
+    @Test
+    public void journalPastThreshold_ShouldSnapshotInBackground() throws Exception {
+        JournalPersistence journal = open(0, 512);
+        for (int i = 0; i < 50; i++) {
+            journal.addTask(new TaskItem("Task " + i, "09-01-2025"));
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (journal.getSnapshotCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(journal.getSnapshotCount() > 0);
+        journal.close();
+
+        assertEquals(50, open().getAllTasks().size());
+    }
+
+    @Test
+    public void snapshotWhileDeleting_ShouldHoldTheTasksAtTheSwitchOnce() throws Exception {
+        JournalPersistence journal = open(0, JournalPersistence.DEFAULT_SNAPSHOT_BYTES);
+        List<TaskItem> tasks = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            tasks.add(new TaskItem("Task " + i, "09-01-2025"));
+        }
+        journal.addTasks(tasks);
+        List<TaskItem> stored = journal.getAllTasks();
+
+        // Deleting every other task keeps removing tree nodes with two children while the snapshot is written
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread deleter = Thread.ofPlatform().start(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 1; i < stored.size() && !done.get(); i += 2) {
+                journal.removeTaskById(stored.get(i).getId(), 0);
+            }
+        });
+        start.countDown();
+        journal.snapshot();
+        done.set(true);
+        deleter.join();
+        List<String> live = names(journal);
+        journal.close();
+
+        JournalPersistence recovered = open();
+        assertEquals(live, names(recovered));
+        recovered.close();
+
+        // Without the journal, the snapshot alone must hold as many distinct tasks as its header counts
+        Files.delete(journalFile());
+        int counted = ByteBuffer.wrap(Files.readAllBytes(TempDir.resolve(JournalPersistence.SNAPSHOT_FILE))).getInt(24);
+        assertEquals(counted, open().getAllTasks().size());
+    }
+
+    @Test
+    public void crashDuringSnapshot_ShouldIgnoreTemporaryFile() throws IOException {
+        JournalPersistence journal = open();
+        journal.addTask(new TaskItem("Safe", "09-01-2025"));
+        Files.write(TempDir.resolve(JournalPersistence.SNAPSHOT_TEMP_FILE), new byte[] { 1, 2, 3 });
+
+        JournalPersistence recovered = open();
+        assertEquals("Safe", recovered.getTaskByName("safe").getName());
+        assertFalse(Files.exists(TempDir.resolve(JournalPersistence.SNAPSHOT_TEMP_FILE)));
+    }
+
+    @Test
+    public void damagedSnapshot_ShouldRefuseToOpen() throws IOException {
+        JournalPersistence journal = open();
+        journal.addTask(new TaskItem("Task", "09-01-2025"));
+        journal.snapshot();
+        journal.close();
+
+        Path snapshot = TempDir.resolve(JournalPersistence.SNAPSHOT_FILE);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] = (byte) (bytes[bytes.length / 2] ^ 0xFF);
+        Files.write(snapshot, bytes);
+
+        assertThrows(UncheckedIOException.class, () -> open().getAllTasks());
+    }
+
+    @Test
+    public void pagesAndStreams_ShouldMatchFilters() throws IOException {
+        JournalPersistence journal = open();
+        journal.addTasks(List.of(
+                new TaskItem("Alpha", "01-01-2025"),
+                new TaskItem("Beta", "06-01-2025", true),
+                new TaskItem("alpine", "12-01-2025")));
+
+        TaskPage page = journal.getTasksPage(new TaskQuery().namePrefix("ALP").completed(false));
+        assertEquals(List.of("Alpha", "alpine"), page.getTasks().stream().map(TaskItem::getName).toList());
+        assertNull(page.getNextCursor());
+
+        List<String> streamed = new ArrayList<>();
+        int rows = journal.streamTasks(new TaskQuery().dueAfter(java.time.LocalDate.of(2025, 2, 1)),
+                (id, version, name, dueDate, completed) -> streamed.add(name + " " + dueDate));
+        assertEquals(2, rows);
+        assertEquals(List.of("Beta 06-01-2025", "alpine 12-01-2025"), streamed);
+    }
+
+    @Test
+    public void taskManager_ShouldWriteThroughJournal() {
+        TaskManager manager = new TaskManager(TaskManager.Storage.OBJECTS, open());
+        TaskItem task = new TaskItem("Managed", "09-01-2025");
+        assertTrue(manager.addTask(task));
+        assertTrue(manager.completeTask(task));
+        opened.get(0).close();
+
+        TaskManager restarted = new TaskManager(TaskManager.Storage.COLUMNAR, open());
+        assertTrue(restarted.getTask("managed").isCompleted());
+    }
+
+    @Test
+    public void idAddressing_ShouldSurviveReopen() {
+        JournalPersistence journal = open();
+        TaskItem a = new TaskItem("A", "09-01-2025");
+        TaskItem b = new TaskItem("B", "09-02-2025");
+        journal.addTasks(List.of(a, b));
+        TaskItem renamed = TaskItem.ofTrusted(a.getId(), a.getVersion(), "Alpha", 0, false, true);
+
+        assertEquals(1, journal.updateTaskFields(renamed, EnumSet.of(TaskPatch.Field.NAME)));
+        assertEquals(0, journal.updateTaskFields(TaskItem.ofTrusted(a.getId(), renamed.getVersion(), "b", 0, false,
+                false), EnumSet.of(TaskPatch.Field.NAME)));
+        assertEquals(0, journal.updateTaskFields(TaskItem.ofTrusted(a.getId(), a.getVersion(), "Stale", 0, false,
+                false), EnumSet.of(TaskPatch.Field.NAME)));
+        assertEquals(0, journal.removeTaskById(b.getId(), 2));
+        assertEquals(1, journal.removeTaskById(b.getId(), 1));
+        opened.get(0).close();
+
+        JournalPersistence reopened = open();
+        TaskItem stored = reopened.getTaskById(a.getId());
+        assertEquals("Alpha", stored.getName());
+        assertEquals(2, stored.getVersion());
+        assertEquals("09-01-2025", stored.getDueDate());
+        assertFalse(stored.isCompleted());
+        assertNull(reopened.getTaskById(b.getId()));
+        assertEquals(a.getId(), reopened.getTaskByName("alpha").getId());
+    }
+
+    // ------------------------
+    // Error tests
+    // ------------------------
+
+    @Test
+    public void closedJournal_ShouldRejectCalls() {
+        JournalPersistence journal = open();
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> journal.addTask(new TaskItem("Late", "09-01-2025")));
+    }
+
+    @Test
+    public void invalidSettings_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new JournalPersistence(TempDir, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new JournalPersistence(TempDir, 1, 0));
+    }
+}
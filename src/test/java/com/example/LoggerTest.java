@@ -0,0 +1,238 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggerTest {
+
+    private PrintStream previousOut;
+    private PrintStream previousErr;
+
+    @BeforeEach
+    void setup() {
+        assertTrue(Logger.flush(5_000));
+        previousOut = System.out;
+        previousErr = System.err;
+    }
+
+    @AfterEach
+    void restore() {
+        Logger.flush(5_000);
+        System.setOut(previousOut);
+        System.setErr(previousErr);
+        Logger.setLevel(Logger.Level.INFO);
+        Logger.setOverflowPolicy(Logger.OverflowPolicy.DROP);
+    }
+
+    // ------------------------
+    // Helper functions
+    // ------------------------
+
+    /** Collects what the writer thread prints; writes wait while the gate is closed */
+    private static final class Gate extends OutputStream {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch open = new CountDownLatch(1);
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        static Gate opened() {
+            Gate gate = new Gate();
+            gate.open.countDown();
+            return gate;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            entered.countDown();
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (bytes) {
+                bytes.write(b, off, len);
+            }
+        }
+
+        String text() {
+            synchronized (bytes) {
+                return bytes.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /** Redirects a stream the writer thread prints to */
+    private static Gate capture(boolean out, Gate gate) {
+        PrintStream stream = new PrintStream(gate, false, StandardCharsets.UTF_8);
+        if (out) {
+            System.setOut(stream);
+        } else {
+            System.setErr(stream);
+        }
+        return gate;
+    }
+
+    private static Thread start(Runnable task) {
+        Thread thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    // ------------------------
+    // Normal tests
+    // ------------------------
+
+    @Test
+    public void ringBuffer_shouldDeliverEveryEventOnceInProducerOrder() throws InterruptedException {
+        Logger.RingBuffer buffer = new Logger.RingBuffer(64);
+        int producers = 4;
+        int perProducer = 20_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            threads.add(start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    Logger.Event event = new Logger.Event(base + i, Logger.Level.INFO, null, null, null);
+                    while (!buffer.offer(event)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        long[] next = new long[producers];
+        for (int received = 0; received < producers * perProducer;) {
+            Logger.Event event = buffer.poll();
+            if (event == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) (event.timeMillis / perProducer);
+            assertEquals(next[producer]++, event.timeMillis % perProducer);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        assertEquals(producers * perProducer, buffer.consumed());
+    }
+
+    @Test
+    public void ringBuffer_whenFull_shouldRejectUntilPolled() {
+        Logger.RingBuffer buffer = new Logger.RingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(new Logger.Event(i, Logger.Level.INFO, "event " + i, null, null)));
+        }
+
+        assertFalse(buffer.offer(new Logger.Event(4, Logger.Level.INFO, "event 4", null, null)));
+        assertEquals("event 0", buffer.poll().message);
+        assertTrue(buffer.offer(new Logger.Event(4, Logger.Level.INFO, "event 4", null, null)));
+        assertEquals(5, buffer.claimed());
+    }
+
+    @Test
+    public void disabledLevel_shouldSkipFormatting() {
+        Gate out = capture(true, Gate.opened());
+        AtomicInteger formatted = new AtomicInteger();
+        Object counting = new Object() {
+            @Override
+            public String toString() {
+                return "formatted " + formatted.incrementAndGet();
+            }
+        };
+
+        Logger.setLevel(Logger.Level.WARN);
+        Logger.info("skipped %s", counting);
+        assertFalse(Logger.isEnabled(Logger.Level.INFO));
+        assertTrue(Logger.flush(5_000));
+        assertEquals(0, formatted.get());
+
+        Logger.setLevel(Logger.Level.INFO);
+        Logger.info("logged %s", counting);
+        assertTrue(Logger.flush(5_000));
+        assertEquals(1, formatted.get());
+        assertFalse(out.text().contains("skipped"));
+        assertTrue(out.text().contains("[INFO] logged formatted 1"));
+    }
+
+    @Test
+    public void mutableArgs_shouldBeFormattedWhenLogged() {
+        Gate out = capture(true, Gate.opened());
+        StringBuilder value = new StringBuilder("before");
+
+        Logger.info("value %s, count %d", value, 3);
+        value.replace(0, value.length(), "after");
+
+        assertTrue(Logger.flush(5_000));
+        assertTrue(out.text().contains("value before, count 3"));
+    }
+
+    @Test
+    public void flush_shouldWaitUntilEventsArePrinted() {
+        Gate out = capture(true, Gate.opened());
+        for (int i = 0; i < 1_000; i++) {
+            Logger.info("line %d", i);
+        }
+
+        assertTrue(Logger.flush(5_000));
+
+        assertTrue(out.text().contains("] line 999" + System.lineSeparator()));
+    }
+
+    @Test
+    public void fullBuffer_shouldDropOrBlockByPolicy_butNeverDropErrors() throws InterruptedException {
+        Gate out = capture(true, new Gate());
+        Gate err = capture(false, Gate.opened());
+        long droppedBefore = Logger.getDroppedCount();
+
+        // Hold the writer thread in its first print, then fill the buffer behind it
+        Logger.info("first");
+        assertTrue(out.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < Logger.CAPACITY; i++) {
+            Logger.info("fill %d", i);
+        }
+
+        Logger.info("overflow event");
+        assertEquals(droppedBefore + 1, Logger.getDroppedCount());
+
+        Thread error = start(() -> Logger.error("kept error"));
+        Logger.setOverflowPolicy(Logger.OverflowPolicy.BLOCK);
+        Thread info = start(() -> Logger.info("kept info"));
+        error.join(200);
+        info.join(200);
+        assertTrue(error.isAlive());
+        assertTrue(info.isAlive());
+
+        out.open.countDown();
+        error.join(5_000);
+        info.join(5_000);
+        assertFalse(error.isAlive());
+        assertFalse(info.isAlive());
+        assertTrue(Logger.flush(5_000));
+
+        assertEquals(droppedBefore + 1, Logger.getDroppedCount());
+        assertTrue(out.text().contains("] fill " + (Logger.CAPACITY - 1)));
+        assertTrue(out.text().contains("] kept info"));
+        assertFalse(out.text().contains("overflow event"));
+        assertTrue(err.text().contains("[ERROR] kept error"));
+        assertTrue(err.text().contains("Logger dropped 1 event(s)"));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    // ------------------------
+    // Helper functions
+    // ------------------------
+
+    /** Reads one sample line from the scrape output */
+    private double sample(String scrape, String series) {
+        for (String line : scrape.split("\n")) {
+            if (line.startsWith(series + " ")) {
+                return Double.parseDouble(line.substring(series.length() + 1));
+            }
+        }
+        throw new AssertionError("No sample " + series + " in:\n" + scrape);
+    }
+
+    // ------------------------
+    // Normal tests
+    // ------------------------
+
+    @Test
+    public void histogram_ShouldReadPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertEquals(5_000_000, histogram.getValueAtPercentile(50), 5_000_000 * 0.035);
+        assertEquals(9_900_000, histogram.getValueAtPercentile(99), 9_900_000 * 0.035);
+        assertEquals(9_990_000, histogram.getValueAtPercentile(99.9), 9_990_000 * 0.035);
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+        assertTrue(histogram.getValueAtPercentile(50) >= 5_000_000);
+    }
+
+    @Test
+    public void histogram_BucketsShouldCoverEveryValue() {
+        long previous = -1;
+        for (long value : new long[] { 0, 1, 63, 64, 65, 127, 128, 1_000_000, (1L << 40) - 1 }) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value);
+            assertTrue(value > previous);
+            previous = value;
+        }
+    }
+
+    @Test
+    public void scrape_ShouldRenderCountersGaugesAndSummaries() throws Exception {
+        LongAdder counter = Metrics.counter("test_events_total", "Events", "kind=\"a\"");
+        counter.add(3);
+        Metrics.gauge("test_level", "Level", null, () -> 2.5);
+        LatencyHistogram latency = Metrics.latency("test_call_seconds", "Calls", "endpoint=\"GET /x\"");
+        latency.record(2_000_000);
+
+        String scrape = Metrics.scrape();
+        assertTrue(scrape.contains("# TYPE test_events_total counter\n"));
+        assertTrue(scrape.contains("# TYPE test_call_seconds summary\n"));
+        assertEquals(3, sample(scrape, "test_events_total{kind=\"a\"}"));
+        assertEquals(2.5, sample(scrape, "test_level"));
+        assertEquals(0.002, sample(scrape, "test_call_seconds{endpoint=\"GET /x\",quantile=\"0.99\"}"), 0.0001);
+        assertEquals(1, sample(scrape, "test_call_seconds_count{endpoint=\"GET /x\"}"));
+
+        ObjectName name = new ObjectName("com.example:type=Latency,name=test_call_seconds,endpoint=\"GET /x\"");
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+    }
+
+    @Test
+    public void repositoryStatements_ShouldBeTimed() {
+        TaskRepository.setDatabase("jdbc:sqlite::memory:");
+        double before = sample(Metrics.scrape(), "tasks_db_statement_seconds_count{statement=\"insert\"}");
+
+        TaskRepository.addTask(new TaskItem("Timed", "09-01-2025"));
+
+        assertEquals(before + 1, sample(Metrics.scrape(), "tasks_db_statement_seconds_count{statement=\"insert\"}"));
+    }
+
+    // ------------------------
+    // Error tests
+    // ------------------------
+
+    @Test
+    public void sameNameWithOtherType_ShouldThrow() {
+        Metrics.counter("test_typed_total", "Typed", null);
+        assertThrows(IllegalArgumentException.class, () -> Metrics.gauge("test_typed_total", "Typed", null, () -> 0));
+    }
+}
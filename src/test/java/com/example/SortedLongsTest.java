@@ -0,0 +1,74 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortedLongsTest {
+
+    // ------------------------
+    // Helper functions
+    // ------------------------
+
+    /** Reads every value from the first one at or after a target */
+    private List<Long> from(SortedLongs list, long target) {
+        List<Long> values = new ArrayList<>();
+        list.forEachFrom(value -> Long.compare(value, target), values::add);
+        return values;
+    }
+
+    // ------------------------
+    // Normal tests
+    // ------------------------
+
+    @Test
+    public void addAndRemove_ShouldStaySortedAcrossChunks() {
+        Random random = new Random(42);
+        SortedLongs list = new SortedLongs();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 20 * SortedLongs.CHUNK; i++) {
+            long value = random.nextInt(10 * SortedLongs.CHUNK) - 5L * SortedLongs.CHUNK;
+            if (expected.add(value)) {
+                list.add(value, Long::compare);
+            } else {
+                assertTrue(list.remove(value, Long::compare));
+                expected.remove(value);
+            }
+        }
+
+        assertEquals(expected.size(), list.size());
+        assertEquals(new ArrayList<>(expected), from(list, Long.MIN_VALUE));
+        assertEquals(new ArrayList<>(expected.tailSet(17L, true)), from(list, 17));
+        assertTrue(from(list, Long.MAX_VALUE).isEmpty());
+        assertFalse(list.remove(Long.MAX_VALUE, Long::compare));
+    }
+
+    @Test
+    public void forEachFrom_ShouldStopWhenTheVisitorSaysSo() {
+        long[] values = new long[3 * SortedLongs.CHUNK];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 2L * i;
+        }
+        SortedLongs list = SortedLongs.of(values, values.length);
+
+        List<Long> visited = new ArrayList<>();
+        list.forEachFrom(value -> Long.compare(value, 2L * SortedLongs.CHUNK - 1), value -> {
+            visited.add(value);
+            return visited.size() < 3;
+        });
+
+        assertEquals(List.of(2L * SortedLongs.CHUNK, 2L * SortedLongs.CHUNK + 2, 2L * SortedLongs.CHUNK + 4), visited);
+    }
+
+    @Test
+    public void sort_ShouldUseTheGivenOrder() {
+        long[] values = { 5, -3, 9, 0, 12, -7, 4 };
+
+        SortedLongs.sort(values, values.length - 1, (a, b) -> Long.compare(b, a));
+
+        assertArrayEquals(new long[] { 12, 9, 5, 0, -3, -7, 4 }, values);
+    }
+}
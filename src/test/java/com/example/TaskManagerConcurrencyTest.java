@@ -0,0 +1,146 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskManagerConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path TempDir;
+
+    @BeforeEach
+    void setup() {
+        TaskRepository.setDatabase("jdbc:sqlite:" + TempDir.resolve("stress.db"));
+        TaskRepository.deleteAllData();
+    }
+
+    // ------------------------
+    // Helper methods
+    // ------------------------
+    private void runConcurrently(ExecutorService pool, Runnable... tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    // ------------------------
+    // Stress tests
+    // ------------------------
+    @ParameterizedTest
+    @EnumSource(TaskManager.Storage.class)
+    public void concurrentAdds_sameNames_shouldNeverDuplicate(TaskManager.Storage storage) throws Exception {
+        TaskManager manager = new TaskManager(storage);
+        int names = 50;
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        Runnable[] workers = new Runnable[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            workers[t] = () -> {
+                for (int i = 0; i < names; i++) {
+                    // Every thread races for the same names, in different cases
+                    String name = thread % 2 == 0 ? "Task" + i : "TASK" + i;
+                    if (manager.addTask(new TaskItem(name, "09-01-2025"))) {
+                        accepted.incrementAndGet();
+                    }
+                    manager.getTaskList();
+                }
+            };
+        }
+        runConcurrently(pool, workers);
+        pool.shutdown();
+
+        List<TaskItem> tasks = manager.getTaskList();
+        Set<String> unique = new HashSet<>();
+        for (TaskItem task : tasks) {
+            assertTrue(unique.add(task.getName().toLowerCase(Locale.ROOT)), "duplicate " + task.getName());
+        }
+        assertEquals(names, accepted.get());
+        assertEquals(names, tasks.size());
+        assertEquals(names, TaskRepository.getAllTasks().size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(TaskManager.Storage.class)
+    public void concurrentMutations_shouldNotLoseUpdates(TaskManager.Storage storage) throws Exception {
+        TaskManager manager = new TaskManager(storage);
+        int perThread = 40;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        Runnable[] workers = new Runnable[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            workers[t] = () -> {
+                for (int i = 0; i < perThread; i++) {
+                    TaskItem task = new TaskItem("T" + thread + "-" + i, "09-01-2025");
+                    assertTrue(manager.addTask(task));
+                    if (i % 2 == 0) {
+                        assertTrue(manager.completeTask(task));
+                    }
+                    if (i % 4 == 1) {
+                        assertTrue(manager.removeTask(task));
+                    }
+                }
+            };
+        }
+
+        // Readers run alongside the writers and must never fail
+        AtomicInteger readerErrors = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                try {
+                    for (TaskItem task : manager.getTaskList()) {
+                        manager.checkName(task.getName());
+                    }
+                } catch (RuntimeException e) {
+                    readerErrors.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        runConcurrently(pool, workers);
+        pool.shutdown();
+        reader.join();
+
+        int expected = THREADS * (perThread - perThread / 4);
+        assertEquals(0, readerErrors.get());
+        assertEquals(expected, manager.getTaskList().size());
+        assertEquals(expected, TaskRepository.getAllTasks().size());
+
+        int completed = 0;
+        for (TaskItem task : TaskRepository.getAllTasks()) {
+            if (task.isCompleted()) {
+                completed++;
+            }
+        }
+        assertEquals(THREADS * perThread / 2, completed);
+    }
+}
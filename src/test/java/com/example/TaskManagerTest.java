@@ -2,6 +2,14 @@ package com.example;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TaskManagerTest {
@@ -77,10 +85,389 @@ public class TaskManagerTest {
         TaskManager manager = managerWithTask(task);
 
         assertFalse(task.isCompleted());
+        List<TaskItem> before = manager.getTaskList();
 
+        assertTrue(manager.completeTask(task));
+
+        assertTrue(manager.getTask("test").isCompleted());
+        // The given task is shared with earlier snapshots, so it is replaced instead of changed
+        assertFalse(task.isCompleted());
+        assertFalse(before.get(0).isCompleted());
+        assertTrue(manager.getTaskList().get(0).isCompleted());
+    }
+
+    @Test
+    public void updateTask_shouldCompleteButNeverReopen() {
+        TaskManager manager = managerWithTask(testTask());
+
+        manager.updateTask(new TaskItem("test", "09-01-2025", true));
+        assertTrue(manager.getTask("test").isCompleted());
+        long version = manager.getTask("test").getVersion();
+
+        TaskItem reopen = new TaskItem("TEST", "09-01-2025", false);
+        manager.updateTask(reopen);
+
+        assertTrue(manager.getTask("test").isCompleted());
+        assertTrue(TaskRepository.getTaskByName("Test").isCompleted());
+        assertEquals(version, manager.getTask("test").getVersion());
+        assertEquals(version, reopen.getVersion());
+    }
+
+    @Test
+    public void removeTask_matchesNameIgnoringCase() {
+        TaskManager manager = managerWithTask(testTask());
+
+        assertTrue(manager.checkName("TEST"));
+        assertTrue(manager.removeTask(new TaskItem("tEsT", "09-01-2025")));
+        assertFalse(manager.checkName("Test"));
+        assertEquals(0, manager.getTaskList().size());
+    }
+
+    @Test
+    public void invalidate_shouldReloadChangesMadeOutsideManager() {
+        TaskManager manager = new TaskManager();
+        TaskRepository.addTask(testTask());
+        assertEquals(0, manager.getTaskList().size());
+
+        manager.invalidate();
+
+        assertEquals(1, manager.getTaskList().size());
+        assertEquals(1, manager.getCacheMisses());
+        assertTrue(manager.getCacheHits() >= 1);
+    }
+
+    @Test
+    public void mutations_shouldNotCountAsCacheReads() {
+        TaskItem task = testTask();
+        TaskManager manager = managerWithTask(task);
+        long hits = manager.getCacheHits();
+        long misses = manager.getCacheMisses();
+
+        assertTrue(manager.addTask(new TaskItem("Other", "09-02-2025")));
+        assertTrue(manager.completeTask(task));
+        assertTrue(manager.removeTask(task));
+
+        assertEquals(hits, manager.getCacheHits());
+        assertEquals(misses, manager.getCacheMisses());
+
+        assertTrue(manager.checkName("Other"));
+        assertEquals(hits + 1, manager.getCacheHits());
+    }
+
+    @Test
+    public void addTasks_shouldSkipDuplicates() {
+        TaskManager manager = managerWithTask(testTask());
+
+        int added = manager.addTasks(List.of(
+                new TaskItem("Batch1", "09-01-2025"),
+                new TaskItem("batch1", "09-01-2025"),
+                new TaskItem("test", "09-01-2025")));
+
+        assertEquals(1, added);
+        assertEquals(2, manager.getTaskList().size());
+    }
+
+    @Test
+    public void columnarStorage_shouldMatchObjectStorage() {
+        TaskManager manager = new TaskManager(TaskManager.Storage.COLUMNAR);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(manager.addTask(new TaskItem("Task" + i, "09-01-2025")));
+        }
+        assertFalse(manager.addTask(new TaskItem("TASK5", "09-01-2025")));
+
+        for (int i = 0; i < 80; i++) {
+            assertTrue(manager.removeTask(new TaskItem("task" + i, "09-01-2025")));
+        }
+        TaskItem task = manager.getTask("Task90");
+        assertTrue(manager.completeTask(task));
+        assertFalse(manager.completeTask(manager.getTask("task90")));
+
+        List<TaskItem> tasks = manager.getTaskList();
+        assertEquals(20, tasks.size());
+        assertEquals("Task80", tasks.get(0).getName());
+        assertEquals("09-01-2025", tasks.get(0).getDueDate());
+        assertTrue(manager.getTask("TASK90").isCompleted());
+        assertTrue(TaskRepository.getTaskByName("Task90").isCompleted());
+    }
+
+    @ParameterizedTest
+    @EnumSource(TaskManager.Storage.class)
+    public void dueDateQueries_shouldUseDueDateOrder(TaskManager.Storage storage) {
+        TaskManager manager = new TaskManager(storage);
+        manager.addTasks(List.of(
+                new TaskItem("Late", "01-15-2026"),
+                new TaskItem("Past", "12-01-2025"),
+                new TaskItem("Done", "11-01-2025", true),
+                new TaskItem("Soon", "12-20-2025"),
+                new TaskItem("Today", "12-10-2025")));
+        manager.removeTask(new TaskItem("soon", "12-20-2025"));
+        LocalDate today = LocalDate.of(2025, 12, 10);
+
+        List<TaskItem> window = manager.getTasksDueBetween(LocalDate.of(2025, 11, 1), LocalDate.of(2025, 12, 31));
+        assertEquals(List.of("Done", "Past", "Today"), window.stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Past"), manager.getOverdue(today).stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Today"), manager.getNextDue(today, 1).stream().map(TaskItem::getName).toList());
+        assertEquals(2, manager.getNextDue(today, 5).size());
+        assertTrue(manager.getTasksDueBetween(today, today.minusDays(1)).isEmpty());
+
+        assertTrue(manager.completeTask(manager.getTask("past")));
+        assertTrue(manager.getOverdue(today).isEmpty());
+        manager.updateTasks(List.of(new TaskItem("Done", "11-01-2025", false)));
+        assertEquals(List.of("Done"), manager.getOverdue(today).stream().map(TaskItem::getName).toList());
+        manager.patchTask(manager.getTask("today").getId(), new TaskPatch().completed(true));
+        assertEquals(List.of("Late"), manager.getNextDue(today, 5).stream().map(TaskItem::getName).toList());
+
+        // Tasks due on the same day keep the order they were added in, also after a reload
+        manager.addTask(new TaskItem("Zebra", "01-15-2026"));
+        manager.addTask(new TaskItem("Apple", "01-15-2026"));
+        manager.reload();
+        assertEquals(List.of("Late", "Zebra", "Apple"),
+                manager.getNextDue(today, 5).stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Late", "Zebra"), manager.getNextDue(today, 2).stream().map(TaskItem::getName).toList());
+    }
+
+    @ParameterizedTest
+    @EnumSource(TaskManager.Storage.class)
+    public void search_shouldRankNameAndWordPrefixes(TaskManager.Storage storage) {
+        TaskManager manager = new TaskManager(storage);
+        manager.addTasks(List.of(
+                new TaskItem("Pay rent", "01-01-2026"),
+                new TaskItem("Buy milk", "01-02-2026"),
+                new TaskItem("Milk", "01-03-2026"),
+                new TaskItem("Milkshake party", "01-04-2026"),
+                new TaskItem("Water plants", "01-05-2026")));
+        manager.removeTask(new TaskItem("Water plants", "01-05-2026"));
+
+        assertEquals(List.of("Milk", "Milkshake party", "Buy milk"),
+                manager.search("MILK", 10).stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Milk", "Milkshake party"),
+                manager.search("milk", 2).stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Buy milk"), manager.search("mi bu", 10).stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Pay rent"), manager.search("  pay r", 10).stream().map(TaskItem::getName).toList());
+        assertTrue(manager.search("plants", 10).isEmpty());
+        assertTrue(manager.search("ilk", 10).isEmpty());
+        assertTrue(manager.search(" ", 10).isEmpty());
+
+        // Renamed and reloaded names are found by their new words only
+        TaskItem rent = manager.getTask("pay rent");
+        manager.patchTask(rent.getId(), new TaskPatch().name("Rent rent again"));
+        manager.reload();
+        assertEquals(List.of("Rent rent again"), manager.search("again", 10).stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Rent rent again"), manager.search("rent", 10).stream().map(TaskItem::getName).toList());
+        assertTrue(manager.search("pay", 10).isEmpty());
+    }
+
+    @Test
+    public void coldManager_shouldServeFromRepositoryUntilWarm() {
+        TaskRepository.addTask(testTask());
+        TaskManager manager = TaskManager.cold(TaskManager.Storage.OBJECTS);
+
+        assertFalse(manager.isWarm());
+        assertTrue(manager.checkName("test"));
+        assertEquals(1, manager.getTaskList().size());
+        assertEquals(2, manager.getCacheMisses());
+
+        manager.warmUp(2).join();
+        assertTrue(manager.isWarm());
+        assertSame(manager.warmUp(2), manager.warmUp(4));
+        assertEquals(ChangeFeed.Type.RESET, manager.getChanges().since(0, 10).changes().get(0).type());
+        assertEquals("Test", manager.getTask("TEST").getName());
+    }
+
+    @Test
+    public void coldManager_firstMutation_shouldLoadTasks() {
+        TaskRepository.addTask(testTask());
+        TaskManager manager = TaskManager.cold(TaskManager.Storage.COLUMNAR);
+
+        assertFalse(manager.addTask(testTask()));
+        assertTrue(manager.isWarm());
+        assertEquals(1, manager.getTaskList().size());
+    }
+
+    @Test
+    public void mutations_shouldPublishSequencedChanges() {
+        TaskManager manager = new TaskManager();
+        TaskItem task = testTask();
+        manager.addTask(task);
         manager.completeTask(task);
+        manager.removeTask(task);
+
+        ChangeFeed.Batch batch = manager.getChanges().since(0, 10);
+        assertFalse(batch.reset());
+        assertEquals(3, batch.lastSeq());
+        assertEquals(List.of(ChangeFeed.Type.ADDED, ChangeFeed.Type.UPDATED, ChangeFeed.Type.REMOVED),
+                batch.changes().stream().map(ChangeFeed.Change::type).toList());
+        assertFalse(batch.changes().get(0).task().isCompleted());
+        assertTrue(batch.changes().get(1).task().isCompleted());
+        assertEquals(1, manager.getChanges().since(2, 10).changes().size());
+    }
+
+    @Test
+    public void version_shouldGrowOnChangesOnly() {
+        assertEquals(-1, TaskManager.cold(TaskManager.Storage.OBJECTS).getVersion());
+
+        TaskManager manager = new TaskManager();
+        TaskItem task = testTask();
+        long loaded = manager.getVersion();
+        manager.getTaskList();
+        manager.checkName("test");
+        assertEquals(loaded, manager.getVersion());
+
+        manager.addTask(task);
+        long added = manager.getVersion();
+        assertTrue(added > loaded);
+        assertFalse(manager.completeTask(new TaskItem("Missing", "09-01-2025")));
+        assertEquals(added, manager.getVersion());
+
+        manager.invalidate();
+        assertEquals(-1, manager.getVersion());
+        manager.getTaskList();
+        assertTrue(manager.getVersion() > added);
+    }
 
-        assertTrue(task.isCompleted());
+    @Test
+    public void patchTask_shouldChangeOnlyTheGivenFields() {
+        TaskManager manager = new TaskManager();
+        manager.addTasks(List.of(new TaskItem("First", "09-01-2025"), testTask(), new TaskItem("Last", "09-03-2025")));
+        long id = manager.getTask("test").getId();
+        long version = manager.getVersion();
+
+        assertSame(manager.getTask("test"), manager.patchTask(id, new TaskPatch().name("Test").completed(false)));
+        assertEquals(version, manager.getVersion());
+
+        TaskItem patched = manager.patchTask(id, new TaskPatch().name("Renamed").dueDate("12-24-2025"));
+        assertEquals(id, patched.getId());
+        assertFalse(manager.checkName("test"));
+        assertEquals(List.of("First", "Renamed", "Last"), manager.getTaskList().stream().map(TaskItem::getName).toList());
+        assertEquals(List.of("Renamed"), manager.search("ren", 10).stream().map(TaskItem::getName).toList());
+        assertEquals("12-24-2025", TaskRepository.getTaskById(id).getDueDate());
+        assertEquals(ChangeFeed.Type.UPDATED, manager.getChanges().since(manager.getChanges().getLastSequence() - 1, 1)
+                .changes().get(0).type());
+
+        assertThrows(IllegalStateException.class, () -> manager.patchTask(id, new TaskPatch().name("LAST")));
+        assertNull(manager.patchTask(id + 100, new TaskPatch().completed(true)));
+        assertTrue(manager.removeTaskById(id));
+        assertFalse(manager.removeTaskById(id));
+        assertEquals(2, manager.getTaskList().size());
+    }
+
+    @Test
+    public void failedWrites_shouldLeaveMemoryMatchingTheRepository(@TempDir Path dir) {
+        try (JournalPersistence journal = new JournalPersistence(dir, 0, JournalPersistence.DEFAULT_SNAPSHOT_BYTES) {
+            @Override
+            public int updateTasks(Collection<TaskItem> tasks) {
+                return 0;
+            }
+
+            @Override
+            public int removeTask(TaskItem task) {
+                return 0;
+            }
+        }) {
+            TaskManager manager = new TaskManager(TaskManager.Storage.OBJECTS, journal);
+            manager.addTasks(List.of(new TaskItem("A", "09-01-2025"), new TaskItem("B", "09-02-2025")));
+            long version = manager.getVersion();
+
+            assertEquals(0, manager.updateTasks(List.of(new TaskItem("A", "09-01-2025", true))));
+            assertFalse(manager.getTask("a").isCompleted());
+            assertTrue(manager.getVersion() > version);
+            assertFalse(manager.removeTask(new TaskItem("B", "09-02-2025")));
+            assertTrue(manager.checkName("B"));
+            assertEquals(2, manager.getTaskList().size());
+        }
+    }
+
+    @Test
+    public void versionedUpdates_shouldNotOverwriteNewerChanges() {
+        TaskManager manager = new TaskManager(TaskManager.Storage.COLUMNAR);
+        manager.addTask(testTask());
+        TaskItem read = manager.getTask("test");
+        long id = read.getId();
+
+        TaskItem patched = manager.patchTask(id, new TaskPatch().dueDate("09-02-2025").ifVersion(read.getVersion()));
+        assertEquals(read.getVersion() + 1, patched.getVersion());
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> manager.patchTask(id, new TaskPatch().name("Lost").ifVersion(read.getVersion())));
+        assertEquals(patched.getVersion(), conflict.getCurrentVersion());
+
+        TaskItem put = new TaskItem("test", "09-02-2025", true);
+        put.assignVersion(read.getVersion());
+        assertThrows(VersionConflictException.class, () -> manager.updateTask(put));
+        put.assignVersion(patched.getVersion());
+        manager.updateTask(put);
+        assertEquals(patched.getVersion() + 1, put.getVersion());
+        assertTrue(manager.getTask("test").isCompleted());
+
+        // Changed in the database behind the manager's back
+        TaskItem behind = TaskItem.ofTrusted(id, put.getVersion(), "test", 0, false, false);
+        TaskRepository.updateTaskFields(behind, EnumSet.of(TaskPatch.Field.COMPLETED));
+        assertThrows(VersionConflictException.class, () -> manager.patchTask(id, new TaskPatch().name("Lost")));
+        assertEquals(-1, manager.getVersion());
+        assertThrows(VersionConflictException.class, () -> manager.removeTaskById(id, put.getVersion()));
+        assertTrue(manager.removeTaskById(id, behind.getVersion()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(TaskManager.Storage.class)
+    public void idLookups_shouldBeServedFromMemory(TaskManager.Storage storage) {
+        TaskManager manager = new TaskManager(storage);
+        for (int i = 0; i < 40; i++) {
+            manager.addTask(new TaskItem("Task" + i, "09-01-2025"));
+        }
+        long id = manager.getTask("task7").getId();
+        long hits = manager.getCacheHits();
+
+        assertEquals("Task7", manager.getTaskById(id).getName());
+        assertNull(manager.getTaskById(-1));
+        assertEquals(hits + 2, manager.getCacheHits());
+
+        manager.patchTask(id, new TaskPatch().name("Renamed"));
+        assertEquals("Renamed", manager.getTaskById(id).getName());
+        manager.patchTask(id, new TaskPatch().completed(true));
+        assertTrue(manager.getTaskById(id).isCompleted());
+
+        for (int i = 0; i < 30; i++) {
+            if (i != 7) {
+                manager.removeTask(manager.getTask("task" + i));
+            }
+        }
+        assertEquals("Renamed", manager.getTaskById(id).getName());
+        assertEquals("Task35", manager.getTaskById(manager.getTask("task35").getId()).getName());
+        assertTrue(manager.removeTaskById(id));
+        assertNull(manager.getTaskById(id));
+        assertNull(TaskRepository.getTaskById(id));
+        assertFalse(manager.removeTaskById(id));
+    }
+
+    @Test
+    public void columnarStorage_shouldKeepIdsThroughRenames() {
+        TaskManager manager = new TaskManager(TaskManager.Storage.COLUMNAR);
+        for (int i = 0; i < 40; i++) {
+            manager.addTask(new TaskItem("Task" + i, "09-01-2025"));
+        }
+        long id = manager.getTask("task7").getId();
+        for (int i = 0; i < 50; i++) {
+            manager.patchTask(id, new TaskPatch().name("Renamed task number " + i));
+        }
+
+        assertEquals(id, manager.getTask("renamed task number 49").getId());
+        assertNull(manager.getTask("task7"));
+        assertEquals("Renamed task number 49", manager.getTaskList().get(7).getName());
+        assertEquals(40, manager.getTaskList().stream().map(TaskItem::getId).distinct().count());
+        assertEquals(manager.getTask("task39").getId(), TaskRepository.getTaskByName("Task39").getId());
+    }
+
+    @Test
+    public void changeFeed_fallingBehindRing_shouldReset() {
+        ChangeFeed feed = new ChangeFeed(2);
+        for (int i = 0; i < 5; i++) {
+            feed.publish(ChangeFeed.Type.ADDED, new TaskItem("Task" + i, "09-01-2025"));
+        }
+
+        assertTrue(feed.since(1, 10).reset());
+        assertEquals(5, feed.since(1, 10).lastSeq());
+        assertEquals(2, feed.since(3, 10).changes().size());
+        assertTrue(feed.since(6, 10).reset());
     }
 
     // ------------------------
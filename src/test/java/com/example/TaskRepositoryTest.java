@@ -4,6 +4,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TaskRepositoryTest {
@@ -22,6 +32,7 @@ public class TaskRepositoryTest {
         String dbPath = TempDir.resolve("test.db").toString();
         TaskRepository.setDatabase("jdbc:sqlite:" + dbPath);
         TaskRepository.deleteAllData();
+        TaskRepository.setBatchChunkSize(TaskRepository.DEFAULT_BATCH_CHUNK_SIZE);
     }
 
     // ------------------------
@@ -99,6 +110,251 @@ public class TaskRepositoryTest {
         assertEquals(true, TaskRepository.getTaskByName(task.getName()).isCompleted());
     }
 
+    @Test
+    public void repeatedCalls_ShouldReusePooledConnection() {
+        TaskRepository.addTask(testTask());
+        long createdBefore = TaskRepository.getPool().getCreatedCount();
+
+        for (int i = 0; i < 10; i++) {
+            TaskRepository.containsTask(testTask());
+        }
+
+        assertEquals(createdBefore, TaskRepository.getPool().getCreatedCount());
+        assertEquals(0, TaskRepository.getPool().getActiveCount());
+    }
+
+    @Test
+    public void repeatedQueries_ShouldHitStatementCache() {
+        TaskItem task = testTask();
+        TaskRepository.addTask(task);
+        long hitsBefore = TaskRepository.getPool().getStatementCacheHits();
+
+        TaskRepository.containsTask(task);
+        TaskRepository.containsTask(task);
+
+        assertTrue(TaskRepository.getPool().getStatementCacheHits() >= hitsBefore + 1);
+        assertEquals(true, TaskRepository.containsTask(task));
+    }
+
+    @Test
+    public void addTasks_ShouldInsertAcrossChunks() {
+        TaskRepository.setBatchChunkSize(2);
+        List<TaskItem> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new TaskItem("Batch" + i, "09-01-2025"));
+        }
+
+        assertEquals(5, TaskRepository.addTasks(tasks));
+        assertEquals(5, TaskRepository.getAllTasks().size());
+
+        tasks.get(0).complete();
+        assertEquals(5, TaskRepository.updateTasks(tasks));
+        assertTrue(TaskRepository.getTaskByName("Batch0").isCompleted());
+
+        assertEquals(5, TaskRepository.removeTasks(tasks));
+        assertEquals(0, TaskRepository.getAllTasks().size());
+    }
+
+    @Test
+    public void addedTasks_ShouldCarryTheirRowIds() {
+        TaskItem single = testTask();
+        TaskRepository.addTask(single);
+        TaskItem duplicate = new TaskItem("TEST", "09-01-2025");
+        TaskRepository.addTask(duplicate);
+
+        TaskRepository.setBatchChunkSize(2);
+        List<TaskItem> batch = List.of(new TaskItem("B0", "09-01-2025"), new TaskItem("test", "09-01-2025"),
+                new TaskItem("B1", "09-01-2025"), new TaskItem("B2", "09-01-2025"));
+        assertEquals(3, TaskRepository.addTasks(batch));
+
+        assertTrue(single.getId() > 0);
+        assertEquals(0, duplicate.getId());
+        assertEquals(0, batch.get(1).getId());
+        for (TaskItem task : List.of(single, batch.get(0), batch.get(2), batch.get(3))) {
+            assertEquals(task.getName(), TaskRepository.getTaskById(task.getId()).getName());
+        }
+        assertEquals(TaskRepository.getAllTasks().stream().map(TaskItem::getId).toList(),
+                List.of(single.getId(), batch.get(0).getId(), batch.get(2).getId(), batch.get(3).getId()));
+    }
+
+    @Test
+    public void updateTaskFields_ShouldOnlyWriteGivenColumns() {
+        TaskItem task = testTask();
+        TaskRepository.addTask(task);
+        TaskRepository.addTask(new TaskItem("Other", "09-01-2025"));
+        TaskItem changed = TaskItem.ofTrusted(task.getId(), task.getVersion(), "Renamed", 20_000, true, true);
+
+        assertEquals(1, TaskRepository.updateTaskFields(changed, EnumSet.of(TaskPatch.Field.NAME)));
+        TaskItem stored = TaskRepository.getTaskById(task.getId());
+        assertEquals("Renamed", stored.getName());
+        assertEquals("09-01-2025", stored.getDueDate());
+        assertFalse(stored.isCompleted());
+
+        assertEquals(1, TaskRepository.updateTaskFields(changed,
+                EnumSet.of(TaskPatch.Field.DUE_DATE, TaskPatch.Field.COMPLETED)));
+        stored = TaskRepository.getTaskById(task.getId());
+        assertEquals(20_000, stored.getDueEpochDay());
+        assertTrue(stored.isCompleted());
+
+        TaskItem clash = TaskItem.ofTrusted(task.getId(), changed.getVersion(), "other", 0, false, false);
+        assertEquals(0, TaskRepository.updateTaskFields(clash, EnumSet.of(TaskPatch.Field.NAME)));
+        assertEquals(1, TaskRepository.removeTaskById(task.getId(), 0));
+        assertNull(TaskRepository.getTaskById(task.getId()));
+        assertEquals(0, TaskRepository.removeTaskById(task.getId(), 0));
+    }
+
+    @Test
+    public void conditionalWrites_ShouldRejectStaleVersions() {
+        TaskItem task = testTask();
+        TaskRepository.addTask(task);
+        assertEquals(1, task.getVersion());
+        TaskItem first = TaskItem.ofTrusted(task.getId(), 1, "First", 0, false, false);
+        TaskItem second = TaskItem.ofTrusted(task.getId(), 1, "Second", 0, false, false);
+
+        assertEquals(1, TaskRepository.updateTaskFields(first, EnumSet.of(TaskPatch.Field.NAME)));
+        assertEquals(2, first.getVersion());
+        assertEquals(0, TaskRepository.updateTaskFields(second, EnumSet.of(TaskPatch.Field.NAME)));
+        assertEquals("First", TaskRepository.getTaskById(task.getId()).getName());
+
+        // By name, the version only moves on when the status changes
+        TaskRepository.updateTask(new TaskItem("first", "09-01-2025", false));
+        assertEquals(2, TaskRepository.getTaskById(task.getId()).getVersion());
+        TaskRepository.updateTask(new TaskItem("first", "09-01-2025", true));
+        assertEquals(3, TaskRepository.getTaskById(task.getId()).getVersion());
+
+        assertEquals(0, TaskRepository.removeTaskById(task.getId(), 2));
+        assertEquals(1, TaskRepository.removeTaskById(task.getId(), 3));
+    }
+
+    @Test
+    public void getTasksPage_ShouldFilterAndFollowCursor() {
+        List<TaskItem> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new TaskItem("Page" + i, "09-0" + (i + 1) + "-2025", i % 2 == 0));
+        }
+        tasks.add(new TaskItem("Other_1", "09-01-2025"));
+        TaskRepository.addTasks(tasks);
+
+        TaskPage first = TaskRepository.getTasksPage(new TaskQuery().namePrefix("page").limit(3));
+        assertEquals(3, first.getTasks().size());
+        assertNotNull(first.getNextCursor());
+
+        TaskPage second = TaskRepository.getTasksPage(
+                new TaskQuery().namePrefix("page").limit(3).cursor(first.getNextCursor()));
+        assertEquals(2, second.getTasks().size());
+        assertNull(second.getNextCursor());
+        assertEquals("Page4", second.getTasks().get(1).getName());
+
+        TaskPage filtered = TaskRepository.getTasksPage(new TaskQuery()
+                .completed(true)
+                .dueAfter(LocalDate.of(2025, 9, 1))
+                .dueBefore(LocalDate.of(2025, 9, 5)));
+        assertEquals(1, filtered.getTasks().size());
+        assertEquals("Page2", filtered.getTasks().get(0).getName());
+
+        assertEquals(0, TaskRepository.getTasksPage(new TaskQuery().namePrefix("Other%")).getTasks().size());
+    }
+
+    @Test
+    public void streamTasks_ShouldVisitEveryMatchingRowInOrder() throws Exception {
+        TaskRepository.addTask(new TaskItem("Stream1", "09-01-2025"));
+        TaskRepository.addTask(new TaskItem("Stream2", "09-02-2025", true));
+        TaskRepository.addTask(new TaskItem("Stream3", "09-03-2025"));
+        List<String> names = new ArrayList<>();
+
+        int rows = TaskRepository.streamTasks(new TaskQuery().completed(false),
+                (id, version, name, dueDate, completed) -> names.add(name));
+
+        assertEquals(2, rows);
+        assertEquals(List.of("Stream1", "Stream3"), names);
+    }
+
+    @Test
+    public void streamTasks_ShouldReleaseTheConnectionBetweenPages() throws Exception {
+        List<TaskItem> tasks = new ArrayList<>();
+        for (int i = 0; i < 2 * TaskRepository.STREAM_PAGE + 5; i++) {
+            tasks.add(new TaskItem("Paged" + i, "09-01-2025"));
+        }
+        TaskRepository.addTasks(tasks);
+        TaskRepository.configurePool(1, 500);
+        try {
+            List<Long> ids = new ArrayList<>();
+
+            // With one connection, the lookups only succeed if the stream is not holding it
+            int rows = TaskRepository.streamTasks(new TaskQuery(), (id, version, name, dueDate, completed) -> {
+                if (ids.size() % 500 == 0) {
+                    assertEquals(name, TaskRepository.getTaskById(id).getName());
+                }
+                ids.add(id);
+            });
+
+            assertEquals(tasks.size(), rows);
+            assertEquals(tasks.size(), ids.stream().distinct().count());
+            assertEquals(ids.stream().sorted().toList(), ids);
+        } finally {
+            TaskRepository.configurePool(ConnectionPool.DEFAULT_MAX_SIZE, ConnectionPool.DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+        }
+    }
+
+    @Test
+    public void writePipeline_ConcurrentAdds_ShouldGroupCommit() throws Exception {
+        TaskRepository.enableWritePipeline(64, 5, 1000);
+        try {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t * 25;
+                writers.add(new Thread(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        TaskRepository.addTask(new TaskItem("Piped" + (offset + i), "09-01-2025"));
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            WritePipeline pipeline = TaskRepository.getWritePipeline();
+            assertEquals(200, TaskRepository.getAllTasks().size());
+            assertEquals(200, pipeline.getWrittenCount());
+            assertTrue(pipeline.getBatchCount() < 200);
+            assertEquals(0, TaskRepository.addTask(new TaskItem("piped0", "09-01-2025")));
+            assertEquals(1, TaskRepository.removeTask(new TaskItem("Piped0", "09-01-2025")));
+        } finally {
+            TaskRepository.disableWritePipeline();
+        }
+        assertNull(TaskRepository.getWritePipeline());
+    }
+
+    @Test
+    public void writePipeline_CloseWhileSubmitting_ShouldCompleteEveryFuture() throws Exception {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 1, 1000);
+        try {
+            WritePipeline pipeline = new WritePipeline(pool::acquire, 8, 0, 4);
+            List<CompletableFuture<Integer>> results = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                submitters.add(new Thread(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        results.add(pipeline.submit("CREATE TABLE IF NOT EXISTS piped(x)", StatementBinder.NONE));
+                    }
+                }));
+            }
+            submitters.forEach(Thread::start);
+            pipeline.close();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+
+            assertEquals(800, results.size());
+            for (CompletableFuture<Integer> result : results) {
+                assertTrue(result.handle((rows, e) -> true).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
     // ------------------------
     // Edge case tests
     // ------------------------
@@ -117,9 +373,73 @@ public class TaskRepositoryTest {
     public void addTask_DuplicateTask_ShouldAllowOrReject() {
         TaskItem task = testTask();
         TaskRepository.addTask(task);
-        int rowsAdded = TaskRepository.addTask(task); 
-        assertTrue(rowsAdded >= 1);
-        assertEquals(2, TaskRepository.getAllTasks().size());
+        int rowsAdded = TaskRepository.addTask(new TaskItem("TEST", "09-01-2025"));
+        assertEquals(0, rowsAdded);
+        assertEquals(1, TaskRepository.getAllTasks().size());
+    }
+
+    @Test
+    public void setDatabase_ShouldApplyAllMigrations() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TempDir.resolve("test.db"))) {
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(conn));
+            assertEquals(0, SchemaMigrations.migrate(conn));
+        }
+    }
+
+    @Test
+    public void setDatabase_UpgradingDuplicateNames_ShouldRenameInsteadOfDeleting() throws Exception {
+        String url = "jdbc:sqlite:" + TempDir.resolve("legacy.db");
+        try (Connection conn = DriverManager.getConnection(url)) {
+            Statement stmt = conn.createStatement();
+            stmt.execute("CREATE TABLE tasks (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, "
+                    + "dueDate TEXT, completed INTEGER DEFAULT 0)");
+            stmt.execute("CREATE TABLE schema_version (version INTEGER PRIMARY KEY, description TEXT, "
+                    + "appliedAt TEXT DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("INSERT INTO schema_version(version, description) VALUES(1, 'Create tasks table')");
+            stmt.execute("INSERT INTO tasks(name, dueDate, completed) VALUES('Homework', '09-01-2025', 0), "
+                    + "('homework', '09-02-2025', 1), ('Chores', NULL, 0), ('HOMEWORK', '09-03-2025', 0)");
+        }
+
+        TaskRepository.setDatabase(url);
+
+        assertEquals(List.of("Homework", "homework (2)", "Chores", "HOMEWORK (4)"),
+                TaskRepository.getAllTasks().stream().map(TaskItem::getName).toList());
+        assertTrue(TaskRepository.getTaskByName("homework (2)").isCompleted());
+        assertEquals(0, TaskRepository.addTask(new TaskItem("HOMEWORK", "09-04-2025")));
+        try (Connection conn = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(conn));
+        }
+    }
+
+    @Test
+    public void getAllTasks_ShouldRestoreDueDateFromEpochDay() throws Exception {
+        TaskRepository.addTask(new TaskItem("Leap", "02-29-2024", true));
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TempDir.resolve("test.db"))) {
+            conn.createStatement().executeUpdate(
+                    "INSERT INTO tasks(name, dueDate, completed) VALUES('Legacy', '12-31-1999', 0)");
+        }
+
+        TaskItem leap = TaskRepository.getTaskByName("leap");
+        assertEquals("02-29-2024", leap.getDueDate());
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), leap.getDueEpochDay());
+        assertTrue(leap.isCompleted());
+        assertEquals("12-31-1999", TaskRepository.getTaskByName("Legacy").getDueDate());
+    }
+
+    @Test
+    public void getAllTasks_InParallelRanges_ShouldMatchSequentialRead() {
+        List<TaskItem> tasks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tasks.add(new TaskItem("Task " + i, "09-01-2025", i % 3 == 0));
+        }
+        TaskRepository.addTasks(tasks);
+        TaskRepository.removeTasks(tasks.subList(10, 20));
+
+        List<String> expected = TaskRepository.getAllTasks().stream().map(TaskItem::getName).toList();
+        List<String> parallel = TaskRepository.getAllTasks(3, 7).stream().map(TaskItem::getName).toList();
+        assertEquals(40, parallel.size());
+        assertEquals(expected, parallel);
+        assertThrows(IllegalArgumentException.class, () -> TaskRepository.getAllTasks(0, 7));
     }
 
     @Test
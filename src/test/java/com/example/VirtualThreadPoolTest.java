@@ -0,0 +1,77 @@
+package com.example;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.Test;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadPoolTest {
+
+    // ------------------------
+    // Helper functions
+    // ------------------------
+
+    /** Serves one request on the given pool and returns the thread its handler ran on */
+    private Thread handlerThread(Server server) throws Exception {
+        AtomicReference<Thread> handler = new AtomicReference<>();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request base, HttpServletRequest request, HttpServletResponse response) {
+                handler.set(Thread.currentThread());
+                response.setStatus(200);
+                base.setHandled(true);
+            }
+        });
+        server.start();
+        try {
+            HttpResponse<Void> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/tasks")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertEquals(200, response.statusCode());
+        } finally {
+            server.stop();
+        }
+        return handler.get();
+    }
+
+    // ------------------------
+    // Normal tests
+    // ------------------------
+
+    @Test
+    public void handler_ShouldRunOnVirtualThread() throws Exception {
+        Thread thread = handlerThread(new Server(new VirtualThreadPool(8)));
+
+        assertNotNull(thread);
+        assertTrue(thread.isVirtual(), "Handler ran on " + thread);
+    }
+
+    @Test
+    public void executionMode_ShouldDefaultToPlatformThreads() {
+        String previous = System.clearProperty("tasks.threads");
+        try {
+            assertEquals(ApiServer.ExecutionMode.PLATFORM, ApiServer.ExecutionMode.fromSystemProperty());
+
+            System.setProperty("tasks.threads", "virtual");
+            assertEquals(ApiServer.ExecutionMode.VIRTUAL, ApiServer.ExecutionMode.fromSystemProperty());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("tasks.threads");
+            } else {
+                System.setProperty("tasks.threads", previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireFormatTest {
+
+    // ------------------------
+    // Helper functions
+    // ------------------------
+    private List<TaskItem> tasks() {
+        List<TaskItem> tasks = new ArrayList<>();
+        tasks.add(new TaskItem("Plain", "09-01-2025"));
+        tasks.add(new TaskItem("Done and dusted", "01-01-1960", true));
+        tasks.add(new TaskItem("Ünïcödé ✓", "12-31-9999"));
+        tasks.add(TaskItem.ofTrusted(Long.MAX_VALUE, 0, "No due date", 0, false, true));
+        tasks.add(TaskItem.ofTrusted(42, Long.MAX_VALUE, "Edited often", 0, false, false));
+        return tasks;
+    }
+
+    /** Many similar tasks, like a real listing */
+    private List<TaskItem> manyTasks(int count) {
+        List<TaskItem> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new TaskItem("task-" + i, "09-01-2025", i % 2 == 0));
+        }
+        return tasks;
+    }
+
+    private List<String> strings(List<TaskItem> tasks) {
+        return tasks.stream().map(TaskItem::toString).toList();
+    }
+
+    // ------------------------
+    // Normal tests
+    // ------------------------
+
+    @Test
+    public void binaryList_ShouldRoundTrip() {
+        List<TaskItem> tasks = tasks();
+        List<TaskItem> decoded = WireFormat.decode(WireFormat.encode(tasks));
+
+        assertEquals(strings(tasks), strings(decoded));
+        assertFalse(decoded.get(3).hasDueDate());
+        assertEquals(Long.MAX_VALUE, decoded.get(3).getId());
+        assertEquals(0, decoded.get(0).getId());
+        assertEquals(Long.MAX_VALUE, decoded.get(4).getVersion());
+        assertEquals(42, decoded.get(4).getId());
+        assertEquals(List.of(), WireFormat.decode(WireFormat.encode(List.of())));
+    }
+
+    @Test
+    public void compressedBodies_ShouldInflateToTheOriginal() throws IOException {
+        byte[] body = WireFormat.encode(manyTasks(500));
+
+        byte[] gzip = WireFormat.compress(body, WireFormat.Coding.GZIP);
+        byte[] deflate = WireFormat.compress(body, WireFormat.Coding.DEFLATE);
+
+        assertTrue(gzip.length < body.length / 2);
+        assertArrayEquals(body, new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes());
+        assertArrayEquals(body, new InflaterInputStream(new ByteArrayInputStream(deflate)).readAllBytes());
+        assertSame(body, WireFormat.compress(body, WireFormat.Coding.IDENTITY));
+    }
+
+    @Test
+    public void negotiate_ShouldHonourPreferenceAndQValues() {
+        assertEquals(WireFormat.Coding.IDENTITY, WireFormat.Coding.negotiate(null));
+        assertEquals(WireFormat.Coding.GZIP, WireFormat.Coding.negotiate("gzip, deflate, br"));
+        assertEquals(WireFormat.Coding.DEFLATE, WireFormat.Coding.negotiate("deflate, gzip;q=0.5"));
+        assertEquals(WireFormat.Coding.DEFLATE, WireFormat.Coding.negotiate("*, gzip;q=0"));
+        assertEquals(WireFormat.Coding.IDENTITY, WireFormat.Coding.negotiate("br, gzip;q=0"));
+        assertTrue(WireFormat.acceptsBinary("application/x-task-list, application/json;q=0.5"));
+    }
+
+    // ------------------------
+    // Error tests
+    // ------------------------
+
+    @Test
+    public void malformedBinaryList_ShouldThrow() {
+        byte[] encoded = WireFormat.encode(tasks());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> WireFormat.decode(Arrays.copyOf(encoded, encoded.length - 3)));
+        assertThrows(IllegalArgumentException.class,
+                () -> WireFormat.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.decode(new byte[] { 1, 0, 0 }));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.decode(new byte[0]));
+    }
+
+    @Test
+    public void otherFormatVersion_ShouldBeRejected() {
+        byte[] encoded = WireFormat.encode(tasks());
+        assertEquals(WireFormat.FORMAT_VERSION, encoded[0]);
+        assertEquals("application/x-task-list; version=" + WireFormat.FORMAT_VERSION, WireFormat.BINARY_CONTENT_TYPE);
+
+        // A version 1 list: count, then id, name length, name, flags
+        byte[] version1 = { 1, 7, 1, 'A', 0 };
+        encoded[0] = (byte) (WireFormat.FORMAT_VERSION + 1);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> WireFormat.decode(version1));
+        assertTrue(e.getMessage().contains("format version 1"));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.decode(encoded));
+    }
+}